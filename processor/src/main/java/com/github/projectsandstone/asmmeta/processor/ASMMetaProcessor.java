@@ -0,0 +1,461 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.processor;
+
+import com.github.projectsandstone.asmmeta.data.MetaData;
+import com.github.projectsandstone.asmmeta.element.AnnotationElement;
+import com.github.projectsandstone.asmmeta.element.ClassElement;
+import com.github.projectsandstone.asmmeta.element.ConstructorElement;
+import com.github.projectsandstone.asmmeta.element.FieldElement;
+import com.github.projectsandstone.asmmeta.element.IClassElement;
+import com.github.projectsandstone.asmmeta.element.MetaElement;
+import com.github.projectsandstone.asmmeta.element.MethodElement;
+import com.github.projectsandstone.asmmeta.resolver.Resolvers;
+import com.github.projectsandstone.asmmeta.snapshot.IndexSnapshot;
+import com.github.projectsandstone.asmmeta.value.KeyedValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveArrayValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveValue;
+import com.github.projectsandstone.asmmeta.value.Value;
+
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.SimpleAnnotationValueVisitor8;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+
+/**
+ * Writes the metadata that {@link com.github.projectsandstone.asmmeta.asm.ASMMetaClassVisitor}
+ * collects for the compiled classes to {@link IndexSnapshot#RESOURCE}.
+ *
+ * The processor only sees what the compiler models: synthetic members (bridges, lambdas, accessors),
+ * static initializers and local or anonymous classes are not indexed. Members are listed in the
+ * order of the class files, but member ids of classes with synthetic members (such as the
+ * {@code $VALUES} field of enums) differ from the ids of the same members read from class files.
+ */
+@SupportedAnnotationTypes("*")
+public class ASMMetaProcessor extends AbstractProcessor {
+
+    private static final String[] NO_INTERFACES = new String[0];
+
+    private final Map<String, TypeElement> types = new LinkedHashMap<>();
+    private final ValueVisitor valueVisitor = new ValueVisitor();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement typeElement : ElementFilter.typesIn(roundEnv.getRootElements()))
+            this.collect(typeElement);
+
+        if (roundEnv.processingOver() && !roundEnv.errorRaised())
+            this.write();
+
+        return false;
+    }
+
+    private void collect(TypeElement typeElement) {
+        this.types.put(this.internalName(typeElement), typeElement);
+
+        for (TypeElement memberType : ElementFilter.typesIn(typeElement.getEnclosedElements()))
+            this.collect(memberType);
+    }
+
+    private void write() {
+        List<IClassElement> classes = new ArrayList<>(this.types.size());
+
+        for (TypeElement typeElement : this.types.values())
+            classes.add(this.createClass(typeElement));
+
+        try (OutputStream out = this.processingEnv.getFiler()
+                .createResource(StandardLocation.CLASS_OUTPUT, "", IndexSnapshot.RESOURCE)
+                .openOutputStream()) {
+            IndexSnapshot.write(classes, out);
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Failed to write " + IndexSnapshot.RESOURCE + ": " + e);
+        }
+    }
+
+    private IClassElement createClass(TypeElement typeElement) {
+        ElementKind kind = typeElement.getKind();
+        boolean isInterface = kind.isInterface();
+
+        String superClass = null;
+
+        if (isInterface) {
+            superClass = "java/lang/Object";
+        } else if (typeElement.getSuperclass().getKind() == TypeKind.DECLARED) {
+            superClass = this.internalName(typeElement.getSuperclass());
+        }
+
+        List<? extends TypeMirror> interfaceTypes = typeElement.getInterfaces();
+        String[] interfaces = interfaceTypes.isEmpty() ? NO_INTERFACES : new String[interfaceTypes.size()];
+
+        for (int i = 0; i < interfaces.length; ++i)
+            interfaces[i] = this.internalName(interfaceTypes.get(i));
+
+        ClassElement classElement = new ClassElement(
+                null,
+                this.classAccess(typeElement),
+                this.internalName(typeElement),
+                "",
+                new MetaData(),
+                Resolvers.DEFAULT.getClassResolver(),
+                superClass,
+                interfaces);
+
+        this.addAnnotations(classElement, typeElement);
+
+        List<? extends Element> enclosed = typeElement.getEnclosedElements();
+        List<VariableElement> fields = ElementFilter.fieldsIn(enclosed);
+        List<ExecutableElement> executables = new ArrayList<>(enclosed.size() - fields.size());
+
+        for (Element element : enclosed) {
+            if (element.getKind() == ElementKind.CONSTRUCTOR || element.getKind() == ElementKind.METHOD)
+                executables.add((ExecutableElement) element);
+        }
+
+        classElement.ensureChildCapacity(fields.size() + executables.size());
+
+        // Class files list fields before methods, both in declaration order. javac declares the
+        // implicit members (default constructor, values and valueOf of enums) first.
+        for (VariableElement field : fields) {
+            FieldElement fieldElement = new FieldElement(classElement,
+                    this.memberAccess(field),
+                    field.getSimpleName().toString(),
+                    this.descriptor(field.asType()),
+                    new MetaData(),
+                    Resolvers.DEFAULT.getFieldResolver());
+
+            this.addMember(classElement, fieldElement, field);
+        }
+
+        for (ExecutableElement executable : executables) {
+            MetaElement<?> member;
+
+            if (executable.getKind() == ElementKind.CONSTRUCTOR) {
+                member = new ConstructorElement(classElement,
+                        this.memberAccess(executable),
+                        "<init>",
+                        this.constructorDescriptor(typeElement, executable),
+                        new MetaData(),
+                        Resolvers.DEFAULT.getConstructorResolver());
+            } else {
+                member = new MethodElement(classElement,
+                        this.memberAccess(executable),
+                        executable.getSimpleName().toString(),
+                        this.methodDescriptor("", executable),
+                        new MetaData(),
+                        Resolvers.DEFAULT.getMethodResolver());
+            }
+
+            this.addMember(classElement, member, executable);
+        }
+
+        classElement.immutate();
+
+        return classElement;
+    }
+
+    private void addMember(ClassElement classElement, MetaElement<?> member, Element element) {
+        this.addAnnotations(member, element);
+        member.immutate();
+        classElement.getChildElements().add(member);
+    }
+
+    private void addAnnotations(MetaElement<?> metaElement, Element element) {
+        for (AnnotationMirror annotationMirror : element.getAnnotationMirrors()) {
+            Retention retention = annotationMirror.getAnnotationType().asElement().getAnnotation(Retention.class);
+
+            // Source annotations are not written to class files.
+            if (retention != null && retention.value() == RetentionPolicy.SOURCE)
+                continue;
+
+            metaElement.getMetaData().getAnnotationList().add(this.createAnnotation(metaElement, annotationMirror));
+        }
+    }
+
+    private AnnotationElement createAnnotation(MetaElement<?> enclosing, AnnotationMirror annotationMirror) {
+        String desc = this.descriptor(annotationMirror.getAnnotationType());
+
+        AnnotationElement annotationElement = new AnnotationElement(enclosing, 0, desc, desc, new MetaData(),
+                Resolvers.DEFAULT.getAnnotationResolver());
+
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotationMirror.getElementValues().entrySet()) {
+            String key = entry.getKey().getSimpleName().toString();
+            Object value = entry.getValue().accept(this.valueVisitor, annotationElement);
+
+            if (value == null)
+                continue;
+
+            // Same shapes as the class visitor: unboxed scalars and non empty primitive arrays.
+            Object array = this.primitiveArray(entry.getKey().getReturnType(), value);
+
+            if (array != null)
+                annotationElement.getValues().add(new PrimitiveArrayValue(key, array));
+            else if (PrimitiveValue.isPrimitive(value))
+                annotationElement.getValues().add(new PrimitiveValue(key, value));
+            else
+                annotationElement.getValues().add(new KeyedValue<>(key, value));
+        }
+
+        annotationElement.immutate();
+
+        return annotationElement;
+    }
+
+    private int classAccess(TypeElement typeElement) {
+        Set<Modifier> modifiers = typeElement.getModifiers();
+        ElementKind kind = typeElement.getKind();
+        int access = 0;
+
+        // Class files only know public and package-private classes.
+        if (modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.PROTECTED))
+            access |= Opcodes.ACC_PUBLIC;
+
+        if (modifiers.contains(Modifier.FINAL))
+            access |= Opcodes.ACC_FINAL;
+
+        if (kind.isInterface()) {
+            access |= Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT;
+
+            if (kind == ElementKind.ANNOTATION_TYPE)
+                access |= Opcodes.ACC_ANNOTATION;
+        } else {
+            access |= Opcodes.ACC_SUPER;
+
+            if (modifiers.contains(Modifier.ABSTRACT))
+                access |= Opcodes.ACC_ABSTRACT;
+
+            if (kind == ElementKind.ENUM)
+                access |= Opcodes.ACC_ENUM;
+        }
+
+        if (this.processingEnv.getElementUtils().isDeprecated(typeElement))
+            access |= Opcodes.ACC_DEPRECATED;
+
+        return access;
+    }
+
+    private int memberAccess(Element element) {
+        Set<Modifier> modifiers = element.getModifiers();
+        int access = 0;
+
+        for (Modifier modifier : modifiers) {
+            switch (modifier) {
+                case PUBLIC: access |= Opcodes.ACC_PUBLIC; break;
+                case PROTECTED: access |= Opcodes.ACC_PROTECTED; break;
+                case PRIVATE: access |= Opcodes.ACC_PRIVATE; break;
+                case ABSTRACT: access |= Opcodes.ACC_ABSTRACT; break;
+                case STATIC: access |= Opcodes.ACC_STATIC; break;
+                case FINAL: access |= Opcodes.ACC_FINAL; break;
+                case TRANSIENT: access |= Opcodes.ACC_TRANSIENT; break;
+                case VOLATILE: access |= Opcodes.ACC_VOLATILE; break;
+                case SYNCHRONIZED: access |= Opcodes.ACC_SYNCHRONIZED; break;
+                case NATIVE: access |= Opcodes.ACC_NATIVE; break;
+                case STRICTFP: access |= Opcodes.ACC_STRICT; break;
+                default: break;
+            }
+        }
+
+        if (element.getKind() == ElementKind.ENUM_CONSTANT)
+            access |= Opcodes.ACC_ENUM;
+
+        if (element instanceof ExecutableElement && ((ExecutableElement) element).isVarArgs())
+            access |= Opcodes.ACC_VARARGS;
+
+        if (this.processingEnv.getElementUtils().isDeprecated(element))
+            access |= Opcodes.ACC_DEPRECATED;
+
+        return access;
+    }
+
+    private String constructorDescriptor(TypeElement typeElement, ExecutableElement constructor) {
+        // Implicit parameters that javac adds to constructors
+        if (typeElement.getKind() == ElementKind.ENUM)
+            return this.methodDescriptor("Ljava/lang/String;I", constructor);
+
+        if (typeElement.getNestingKind() == NestingKind.MEMBER
+                && !typeElement.getModifiers().contains(Modifier.STATIC)
+                && !typeElement.getKind().isInterface()
+                && typeElement.getEnclosingElement() instanceof TypeElement)
+            return this.methodDescriptor(this.descriptor(typeElement.getEnclosingElement().asType()), constructor);
+
+        return this.methodDescriptor("", constructor);
+    }
+
+    private String methodDescriptor(String prefix, ExecutableElement method) {
+        StringBuilder sb = new StringBuilder("(").append(prefix);
+
+        for (VariableElement parameter : method.getParameters())
+            sb.append(this.descriptor(parameter.asType()));
+
+        return sb.append(')').append(this.descriptor(method.getReturnType())).toString();
+    }
+
+    private String descriptor(TypeMirror type) {
+        TypeMirror erased = this.processingEnv.getTypeUtils().erasure(type);
+
+        switch (erased.getKind()) {
+            case BOOLEAN: return "Z";
+            case BYTE: return "B";
+            case CHAR: return "C";
+            case SHORT: return "S";
+            case INT: return "I";
+            case LONG: return "J";
+            case FLOAT: return "F";
+            case DOUBLE: return "D";
+            case VOID: return "V";
+            case ARRAY:
+                return "[" + this.descriptor(((ArrayType) erased).getComponentType());
+            case DECLARED:
+                return "L" + this.internalName(erased) + ";";
+            default:
+                throw new IllegalArgumentException("Unsupported type: '" + type + "'.");
+        }
+    }
+
+    private String internalName(TypeMirror type) {
+        return this.internalName((TypeElement) ((DeclaredType) this.processingEnv.getTypeUtils().erasure(type)).asElement());
+    }
+
+    private Object primitiveArray(TypeMirror type, Object value) {
+        if (type.getKind() != TypeKind.ARRAY)
+            return null;
+
+        TypeMirror component = ((ArrayType) type).getComponentType();
+        List<?> values = (List<?>) value;
+
+        if (!component.getKind().isPrimitive() || values.isEmpty())
+            return null;
+
+        Object array = Array.newInstance(this.primitiveClass(component.getKind()), values.size());
+
+        for (int i = 0; i < values.size(); i++)
+            Array.set(array, i, ((Value<?>) values.get(i)).getValue());
+
+        return array;
+    }
+
+    private Class<?> primitiveClass(TypeKind kind) {
+        switch (kind) {
+            case BOOLEAN: return boolean.class;
+            case BYTE: return byte.class;
+            case CHAR: return char.class;
+            case SHORT: return short.class;
+            case INT: return int.class;
+            case LONG: return long.class;
+            case FLOAT: return float.class;
+            case DOUBLE: return double.class;
+            default: throw new IllegalArgumentException("Not a primitive: " + kind);
+        }
+    }
+
+    private String internalName(TypeElement typeElement) {
+        return this.processingEnv.getElementUtils().getBinaryName(typeElement).toString().replace('.', '/');
+    }
+
+    private final class ValueVisitor extends SimpleAnnotationValueVisitor8<Object, AnnotationElement> {
+        @Override
+        protected Object defaultAction(Object value, AnnotationElement owner) {
+            // Boxed primitives and strings
+            return value;
+        }
+
+        @Override
+        public Object visitType(TypeMirror type, AnnotationElement owner) {
+            String name = type.getKind() == TypeKind.DECLARED
+                    ? ASMMetaProcessor.this.internalName(type)
+                    : ASMMetaProcessor.this.descriptor(type);
+
+            ClassElement classElement = new ClassElement(owner, 0, name, "", new MetaData(),
+                    Resolvers.DEFAULT.getClassResolver(), null, NO_INTERFACES);
+
+            classElement.immutate();
+
+            return classElement;
+        }
+
+        @Override
+        public Object visitEnumConstant(VariableElement constant, AnnotationElement owner) {
+            // Enum values are not collected by the class visitor either.
+            return null;
+        }
+
+        @Override
+        public Object visitAnnotation(AnnotationMirror annotationMirror, AnnotationElement owner) {
+            return ASMMetaProcessor.this.createAnnotation(owner, annotationMirror);
+        }
+
+        @Override
+        public Object visitArray(List<? extends AnnotationValue> values, AnnotationElement owner) {
+            List<Value<?>> list = new ArrayList<>(values.size());
+
+            for (AnnotationValue annotationValue : values) {
+                Object value = annotationValue.accept(this, owner);
+
+                if (value != null)
+                    list.add(new Value<>(value));
+            }
+
+            return list;
+        }
+    }
+}
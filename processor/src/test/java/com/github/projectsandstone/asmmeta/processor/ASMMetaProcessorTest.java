@@ -0,0 +1,253 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.processor;
+
+import com.github.projectsandstone.asmmeta.ASMMeta;
+import com.github.projectsandstone.asmmeta.element.IAnnotationElement;
+import com.github.projectsandstone.asmmeta.element.IClassElement;
+import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.snapshot.IndexSnapshot;
+import com.github.projectsandstone.asmmeta.util.ElementIds;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+public class ASMMetaProcessorTest {
+
+    private static final String[][] SOURCES = {
+            {"sample/Marker", "package sample;\n"
+                    + "import java.lang.annotation.*;\n"
+                    + "@Retention(RetentionPolicy.RUNTIME)\n"
+                    + "public @interface Marker {\n"
+                    + "    int value() default 0;\n"
+                    + "    int[] values() default {};\n"
+                    + "    String name() default \"\";\n"
+                    + "    Class<?> type() default Object.class;\n"
+                    + "    ElementType target() default ElementType.TYPE;\n"
+                    + "    Deprecated[] nested() default {};\n"
+                    + "}\n"},
+            {"sample/Sample", "package sample;\n"
+                    + "import java.util.List;\n"
+                    + "@Marker(value = 1, values = {1, 2}, name = \"sample\", type = String[].class)\n"
+                    + "public abstract class Sample<T extends Comparable<T>> implements Comparable<Sample<T>>, Runnable {\n"
+                    + "    @Marker(2) protected transient volatile int count;\n"
+                    + "    private final List<T> values = null;\n"
+                    + "    public static final String NAME = \"sample\";\n"
+                    + "    @Override public void run() {}\n"
+                    + "    @Marker(target = java.lang.annotation.ElementType.FIELD, nested = @Deprecated)\n"
+                    + "    protected Sample(@Marker int count) { this.count = count; }\n"
+                    + "    @Deprecated public static synchronized <E extends CharSequence> E first(E[] values, String... names) { return values[0]; }\n"
+                    + "    abstract T get(List<? super T> list, long[][] matrix) throws java.io.IOException;\n"
+                    + "    Sample() { this(0); }\n"
+                    + "    public class Inner { Inner(String name) {} }\n"
+                    + "    static class Nested { native void call(); }\n"
+                    + "    interface Callback { default double call(char c) { return c; } }\n"
+                    + "}\n"},
+            {"sample/Kind", "package sample;\n"
+                    + "public enum Kind {\n"
+                    + "    FIRST, @Deprecated SECOND(2);\n"
+                    + "    private final int weight;\n"
+                    + "    public int weight() { return this.weight; }\n"
+                    + "    Kind() { this(1); }\n"
+                    + "    Kind(int weight) { this.weight = weight; }\n"
+                    + "    static { System.out.println(); }\n"
+                    + "}\n"},
+    };
+
+    @Test
+    public void processorMatchesClassVisitor() throws IOException {
+        Path output = ASMMetaProcessorTest.compile();
+
+        try {
+            ASMMeta asmMeta = new ASMMeta(1);
+            asmMeta.indexAll(output);
+
+            IndexSnapshot snapshot;
+
+            try (InputStream in = Files.newInputStream(output.resolve(IndexSnapshot.RESOURCE))) {
+                snapshot = IndexSnapshot.read(in);
+            }
+
+            Map<String, IMetaElement<?>> compiled = new TreeMap<>(asmMeta.getAllIndexexElements());
+
+            Assert.assertEquals(compiled.keySet(), new TreeSet<>(snapshot.getClassNames()));
+
+            for (Map.Entry<String, IMetaElement<?>> entry : compiled.entrySet()) {
+                Assert.assertEquals(entry.getKey(),
+                        ASMMetaProcessorTest.describe(entry.getValue()),
+                        ASMMetaProcessorTest.describe(snapshot.decode(entry.getKey())));
+            }
+
+            // Member ordinals only match for classes without synthetic members, enums have $VALUES.
+            ASMMeta loaded = new ASMMeta(1);
+            loaded.addIndex(snapshot);
+
+            for (Map.Entry<String, IMetaElement<?>> entry : compiled.entrySet()) {
+                if (ASMMetaProcessorTest.members(entry.getValue()).size() != entry.getValue().getChildElements().size())
+                    continue;
+
+                int classOrdinal = ElementIds.getClassOrdinal(asmMeta.getId(entry.getValue()));
+
+                for (IMetaElement<?> member : loaded.get(entry.getKey()).get().getChildElements()) {
+                    long id = ElementIds.of(classOrdinal, ElementIds.getMemberOrdinal(loaded.getId(member)));
+
+                    StringBuilder expected = new StringBuilder();
+                    StringBuilder actual = new StringBuilder();
+
+                    ASMMetaProcessorTest.describe(asmMeta.get(id).get(), expected);
+                    ASMMetaProcessorTest.describe(member, actual);
+
+                    Assert.assertEquals(expected.toString(), actual.toString());
+                }
+            }
+        } finally {
+            ASMMetaProcessorTest.delete(output);
+        }
+    }
+
+    @Test
+    public void loadIndexes() throws IOException {
+        Path output = ASMMetaProcessorTest.compile();
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{output.toUri().toURL()}, null)) {
+            ASMMeta asmMeta = new ASMMeta(1);
+
+            Assert.assertEquals(1, asmMeta.loadIndexes(classLoader));
+
+            Optional<IMetaElement<?>> sample = asmMeta.get("sample.Sample");
+
+            Assert.assertTrue(sample.isPresent());
+            Assert.assertEquals(8, sample.get().getChildElements().size());
+            Assert.assertEquals(3, asmMeta.getAnnotatedElements("Lsample/Marker;").size());
+            Assert.assertTrue(asmMeta.getHierarchyIndex().isSubtype("sample.Sample", "java.lang.Runnable"));
+
+            ASMMeta empty = new ASMMeta(1);
+
+            try (URLClassLoader noIndex = new URLClassLoader(new URL[0], null)) {
+                Assert.assertEquals(0, empty.loadIndexes(noIndex));
+            }
+
+            Assert.assertTrue(empty.getAllIndexexElements().isEmpty());
+        } finally {
+            ASMMetaProcessorTest.delete(output);
+        }
+    }
+
+    private static Path compile() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Path output = Files.createTempDirectory("asmmeta-processor");
+        List<JavaFileObject> sources = new ArrayList<>();
+
+        for (String[] source : SOURCES) {
+            sources.add(new SimpleJavaFileObject(URI.create("string:///" + source[0] + ".java"), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source[1];
+                }
+            });
+        }
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, null,
+                Arrays.asList("-d", output.toString(), "-source", "1.8", "-target", "1.8", "-Xlint:-options"),
+                null, sources);
+
+        task.setProcessors(Arrays.asList(new ASMMetaProcessor()));
+
+        if (!task.call())
+            Assert.fail("Compilation failed");
+
+        return output;
+    }
+
+    private static List<IMetaElement<?>> members(IMetaElement<?> element) {
+        // The processor does not see synthetic members and static initializers.
+        return element.getChildElements().stream()
+                .filter(member -> (member.getModifiers() & Opcodes.ACC_SYNTHETIC) == 0 && !member.getName().equals("<clinit>"))
+                .collect(Collectors.toList());
+    }
+
+    private static String describe(IMetaElement<?> element) {
+        StringBuilder sb = new StringBuilder();
+
+        ASMMetaProcessorTest.describe(element, sb);
+
+        if (element instanceof IClassElement) {
+            IClassElement classElement = (IClassElement) element;
+
+            sb.append(" extends ").append(classElement.getSuperClass())
+                    .append(" implements ").append(Arrays.toString(classElement.getInterfaces()));
+        }
+
+        for (IMetaElement<?> member : ASMMetaProcessorTest.members(element)) {
+            sb.append('\n');
+            ASMMetaProcessorTest.describe(member, sb);
+        }
+
+        return sb.toString();
+    }
+
+    private static void describe(IMetaElement<?> element, StringBuilder sb) {
+        sb.append(element.getClass().getInterfaces()[0].getSimpleName())
+                .append(' ').append(Integer.toHexString(element.getModifiers()))
+                .append(' ').append(element.getName())
+                .append(' ').append(element.getDesc());
+
+        for (IMetaElement<?> annotation : element.getMetaData().getAnnotationList())
+            sb.append(" @").append(annotation.getDesc()).append(((IAnnotationElement) annotation).getValues());
+    }
+
+    private static void delete(Path root) throws IOException {
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
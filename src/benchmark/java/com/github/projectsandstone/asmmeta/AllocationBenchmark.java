@@ -0,0 +1,140 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures bytes allocated per class by {@link ASMMeta#read(byte[])} and compares them with the
+ * estimated size of the elements it retains ({@link ASMMeta#getMemoryFootprint()}), with the bytes
+ * {@link ClassReader} allocates by itself and with a new visitor per class, as classes were read
+ * before visitors were reused.
+ *
+ * Run with {@code gradle benchmark}, the first argument is the directory of classes to read.
+ * Needs a JVM which reports allocated bytes per thread ({@code com.sun.management.ThreadMXBean}).
+ */
+public final class AllocationBenchmark {
+
+    private static final int WARMUP = 500;
+    private static final int ITERATIONS = 2000;
+    private static final int FLAGS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+    private AllocationBenchmark() {
+        throw new IllegalStateException();
+    }
+
+    public static void main(String[] args) throws IOException {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()) {
+            System.out.println("Allocated bytes per thread are not reported by this JVM.");
+            return;
+        }
+
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threadMXBean;
+        List<byte[]> classes;
+
+        try (Stream<Path> walk = Files.walk(Paths.get(args.length == 0 ? "build/classes/main" : args[0]))) {
+            classes = walk.filter(path -> path.toString().endsWith(".class"))
+                    .map(path -> {
+                        try {
+                            return Files.readAllBytes(path);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        }
+
+        ASMMeta asmMeta = new ASMMeta(1);
+
+        asmMeta.indexAll(classes.stream());
+
+        MemoryFootprint footprint = asmMeta.getMemoryFootprint();
+        long retained = 0;
+
+        // Strings are interned by the symbol table, ClassReader allocates them again anyway.
+        for (MemoryFootprint.Kind kind : MemoryFootprint.Kind.values()) {
+            if (kind != MemoryFootprint.Kind.STRINGS && kind != MemoryFootprint.Kind.INDEX)
+                retained += footprint.getBytes(kind);
+        }
+
+        double reader = measure(allocations, () -> {
+            for (byte[] bytes : classes)
+                new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM5) {
+                }, FLAGS);
+        }) / classes.size();
+
+        double pooled = measure(allocations, () -> {
+            for (byte[] bytes : classes)
+                asmMeta.read(bytes);
+        }) / classes.size();
+
+        double fresh = measure(allocations, () -> {
+            for (byte[] bytes : classes)
+                new ClassReader(bytes).accept(VisitorFactory.createVisitor(Opcodes.ASM5), FLAGS);
+        }) / classes.size();
+
+        double elements = retained / (double) classes.size();
+
+        System.out.printf("Bytes per class (%d classes):%n", classes.size());
+        System.out.printf("  ASMMeta.read:             %10.1f%n", pooled);
+        System.out.printf("  retained elements:        %10.1f%n", elements);
+        System.out.printf("  ClassReader alone:        %10.1f%n", reader);
+        System.out.printf("  not explained by either:  %10.1f (%.1f%%)%n", pooled - elements - reader, 100 * (pooled - elements - reader) / pooled);
+        System.out.printf("  new visitor per class:    %10.1f%n", fresh);
+    }
+
+    private static double measure(com.sun.management.ThreadMXBean allocations, Runnable runnable) {
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP; ++i)
+            runnable.run();
+
+        long start = allocations.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < ITERATIONS; ++i)
+            runnable.run();
+
+        return (allocations.getThreadAllocatedBytes(threadId) - start) / (double) ITERATIONS;
+    }
+}
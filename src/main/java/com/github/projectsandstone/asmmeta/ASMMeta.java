@@ -28,56 +28,1148 @@
 package com.github.projectsandstone.asmmeta;
 
 import com.github.jonathanxd.iutils.description.DescriptionUtil;
+import com.github.projectsandstone.asmmeta.data.AnnotationPayloads;
 import com.github.projectsandstone.asmmeta.element.MetaElement;
 import com.github.projectsandstone.asmmeta.asm.ASMMetaClassVisitor;
+import com.github.projectsandstone.asmmeta.asm.AnnotationPrefilter;
 import com.github.projectsandstone.asmmeta.element.IClassElement;
 import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.element.LazyClassElement;
+import com.github.projectsandstone.asmmeta.index.AnnotationIndex;
+import com.github.projectsandstone.asmmeta.index.HierarchyIndex;
+import com.github.projectsandstone.asmmeta.index.ModifierIndex;
+import com.github.projectsandstone.asmmeta.index.PackageIndex;
+import com.github.projectsandstone.asmmeta.snapshot.IndexSnapshot;
+import com.github.projectsandstone.asmmeta.source.ClassEntry;
+import com.github.projectsandstone.asmmeta.source.ClassSource;
+import com.github.projectsandstone.asmmeta.source.ClassSources;
+import com.github.projectsandstone.asmmeta.source.CompressedClassEntry;
+import com.github.projectsandstone.asmmeta.store.ColumnarElementStore;
+import com.github.projectsandstone.asmmeta.store.ElementStore;
+import com.github.projectsandstone.asmmeta.store.MapElementStore;
+import com.github.projectsandstone.asmmeta.util.ElementIds;
+import com.github.projectsandstone.asmmeta.util.FrozenList;
+import com.github.projectsandstone.asmmeta.util.LongObjectMap;
+import com.github.projectsandstone.asmmeta.util.ObjectSizes;
+import com.github.projectsandstone.asmmeta.util.SymbolTable;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Opcodes;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public class ASMMeta {
 
-    private final Map<String, IMetaElement<?>> index = new HashMap<>();
-    private final Map<String, IMetaElement<?>> unmodIndex = Collections.unmodifiableMap(this.index);
+    private static final int UNKNOWN_ORIGIN = 0;
+
+    private final ElementStore store;
+    private final List<IndexSnapshot> shards = new CopyOnWriteArrayList<>();
+    private final Queue<IndexSnapshot> pendingShards = new ConcurrentLinkedQueue<>();
+    private final Set<String> removedShardClasses = ConcurrentHashMap.newKeySet();
+    private final Set<String> indexedShardClasses = ConcurrentHashMap.newKeySet();
+    private volatile int parallelism;
+    private volatile AnnotationPrefilter prefilter;
+    private volatile boolean lazy;
+    private final SymbolTable symbolTable;
+    private final AnnotationPayloads annotationPayloads = new AnnotationPayloads();
+    private final LongAdder freezeSavings = new LongAdder();
+    private volatile VisitorPool visitors;
+    private final SymbolTable classOrdinals = new SymbolTable();
+    private final LongObjectMap<IMetaElement<?>> classesById = new LongObjectMap<>();
+    private volatile ResidentClasses residentClasses;
+    // Source of each class, by class ordinal.
+    private final SymbolTable sourceNames = new SymbolTable();
+    private final Origins origins = new Origins();
+    private final Map<IndexSnapshot, String> shardSources = new ConcurrentHashMap<>();
+    private final AnnotationIndex annotationIndex = new AnnotationIndex();
+    private final ModifierIndex modifierIndex = new ModifierIndex();
+    // Ordinals of lazy classes whose members are not indexed yet.
+    private final Set<Integer> unindexedMembers = ConcurrentHashMap.newKeySet();
+    private final HierarchyIndex hierarchyIndex = new HierarchyIndex();
+    private final PackageIndex packageIndex = new PackageIndex();
+
+    public ASMMeta() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an index which uses {@code parallelism} threads for bulk indexing.
+     *
+     * @param parallelism Amount of threads used by {@code indexAll}.
+     */
+    public ASMMeta(int parallelism) {
+        this(parallelism, new MapElementStore());
+    }
+
+    /**
+     * Creates an index which uses {@code parallelism} threads for bulk indexing and keeps classes
+     * in {@code store}, for example a {@link ColumnarElementStore} for very large indexes.
+     *
+     * @param parallelism Amount of threads used by {@code indexAll}.
+     * @param store       Store of indexed classes.
+     */
+    public ASMMeta(int parallelism, ElementStore store) {
+        this.setParallelism(parallelism);
+        this.store = Objects.requireNonNull(store);
+        this.symbolTable = store.getSymbolTable();
+        this.visitors = new VisitorPool(() -> VisitorFactory.createVisitor(Opcodes.ASM5), this);
+        this.sourceNames.id(MemoryFootprint.UNKNOWN_SOURCE);
+    }
+
+    public ElementStore getStore() {
+        return this.store;
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive, found: " + parallelism + "!");
+
+        this.parallelism = parallelism;
+    }
+
+    public AnnotationPrefilter getPrefilter() {
+        return this.prefilter;
+    }
+
+    /**
+     * Sets the prefilter used by {@code index} and {@code indexAll}, classes rejected by the
+     * prefilter are not parsed nor indexed.
+     *
+     * @param prefilter Prefilter, or {@code null} to index all classes.
+     */
+    public void setPrefilter(AnnotationPrefilter prefilter) {
+        this.prefilter = prefilter;
+    }
+
+    public boolean isLazy() {
+        return this.lazy;
+    }
+
+    /**
+     * Sets whether classes are read lazily. Lazy classes ({@link LazyClassElement}) only read
+     * their header up front and keep a compressed copy of their bytes, members are read on first
+     * access to {@link IMetaElement#getChildElements()}.
+     *
+     * Lazy classes cannot be kept by a {@link ColumnarElementStore}, which writes all members of
+     * a class when it is stored.
+     *
+     * @param lazy True to read classes lazily.
+     * @throws IllegalStateException If classes are kept by a {@link ColumnarElementStore}.
+     */
+    public void setLazy(boolean lazy) {
+        if (lazy && this.store instanceof ColumnarElementStore)
+            throw new IllegalStateException("Lazy classes cannot be kept by a columnar store.");
+
+        this.lazy = lazy;
+    }
+
+    public int getMaxResidentClasses() {
+        ResidentClasses residentClasses = this.residentClasses;
+
+        return residentClasses == null ? Integer.MAX_VALUE : residentClasses.getMaximum();
+    }
+
+    /**
+     * Bounds the amount of classes held in memory. When more classes are indexed, the least
+     * recently requested classes are evicted and read again from their source on the next lookup:
+     * entries of class directories are read from their file, classes of {@link
+     * #addIndex(IndexSnapshot) added indexes} are decoded again and other classes are read from a
+     * compressed copy of their bytes (see {@link CompressedClassEntry}).
+     *
+     * Classes indexed as elements ({@link #index(IClassElement)}) have no source and are never
+     * evicted. {@link #getAllIndexexElements()} only returns the classes held in memory.
+     *
+     * Must be set before classes are indexed. Indexes using a {@link ColumnarElementStore} cannot
+     * be bounded, the rows of evicted classes would not be reclaimed.
+     *
+     * @param maxResidentClasses Maximum amount of classes held in memory, or {@link
+     *                           Integer#MAX_VALUE} to keep all classes.
+     * @throws IllegalStateException If classes were already indexed, or if this index uses a
+     *                               columnar store.
+     */
+    public void setMaxResidentClasses(int maxResidentClasses) {
+        if (maxResidentClasses < 1)
+            throw new IllegalArgumentException("Maximum of resident classes must be positive, found: " + maxResidentClasses + "!");
+
+        if (this.classOrdinals.size() != 0)
+            throw new IllegalStateException("Cannot bound an index that already has classes.");
+
+        if (maxResidentClasses != Integer.MAX_VALUE && this.store instanceof ColumnarElementStore)
+            throw new IllegalStateException("Classes kept by a columnar store cannot be evicted.");
+
+        this.residentClasses = maxResidentClasses == Integer.MAX_VALUE ? null : new ResidentClasses(maxResidentClasses);
+    }
+
+    /**
+     * Gets the eviction counters of this index.
+     *
+     * @return Eviction counters, or empty if the amount of resident classes is not bounded.
+     */
+    public Optional<ResidencyStats> getResidencyStats() {
+        ResidentClasses residentClasses = this.residentClasses;
+
+        return residentClasses == null ? Optional.empty() : Optional.of(residentClasses.getStats());
+    }
+
+    public Supplier<ASMMetaClassVisitor> getVisitorFactory() {
+        return this.visitors.factory;
+    }
+
+    /**
+     * Sets the factory of visitors used to read classes, for example to read classes with a
+     * {@link VisitorFactory#createSparseVisitor(int, java.util.Set) sparse visitor}.
+     *
+     * Created visitors are {@link ASMMetaClassVisitor#reset() reset} and reused by the thread
+     * that created them.
+     *
+     * @param visitorFactory Factory of visitors.
+     */
+    public void setVisitorFactory(Supplier<ASMMetaClassVisitor> visitorFactory) {
+        this.visitors = new VisitorPool(Objects.requireNonNull(visitorFactory), this);
+    }
 
     public void index(byte[] classBytes) {
-        IClassElement read = this.read(classBytes);
+        this.tryIndex(classBytes, 0, classBytes.length);
+    }
+
+    /**
+     * Indexes the class in range {@code [offset, offset + length)} of {@code bytes}. The array is
+     * not retained, so it may be a reused buffer.
+     *
+     * @param bytes  Array containing the class bytes.
+     * @param offset Offset of the class in {@code bytes}.
+     * @param length Length of the class.
+     */
+    public void index(byte[] bytes, int offset, int length) {
+        this.tryIndex(bytes, offset, length);
+    }
+
+    /**
+     * Indexes {@code classBytes} unless the class is rejected by the {@link #getPrefilter()
+     * prefilter}.
+     *
+     * @param classBytes Class bytes.
+     * @return False if the class was rejected by the prefilter.
+     */
+    public boolean tryIndex(byte[] classBytes) {
+        return this.tryIndex(classBytes, 0, classBytes.length);
+    }
+
+    /**
+     * Indexes the class in range {@code [offset, offset + length)} of {@code bytes} unless it is
+     * rejected by the {@link #getPrefilter() prefilter}, see {@link #index(byte[], int, int)}.
+     *
+     * @param bytes  Array containing the class bytes.
+     * @param offset Offset of the class in {@code bytes}.
+     * @param length Length of the class.
+     * @return False if the class was rejected by the prefilter.
+     */
+    public boolean tryIndex(byte[] bytes, int offset, int length) {
+        return this.read(bytes, offset, length, element -> this.put(element, this.sourceOf(null, element, bytes, offset, length), UNKNOWN_ORIGIN));
+    }
+
+    /**
+     * Indexes an already read class, for example a class decoded from an
+     * {@link com.github.projectsandstone.asmmeta.snapshot.IndexSnapshot snapshot}.
+     *
+     * @param element Class to index.
+     */
+    public void index(IClassElement element) {
+        this.put(element, null, UNKNOWN_ORIGIN);
+    }
+
+    /**
+     * Gets the table that interns names and descriptors of all indexed elements.
+     *
+     * @return Symbol table of this index.
+     */
+    public SymbolTable getSymbolTable() {
+        return this.symbolTable;
+    }
+
+    /**
+     * Gets the cache that shares identical annotation payloads between indexed annotations.
+     *
+     * @return Annotation payload cache of this index.
+     */
+    public AnnotationPayloads getAnnotationPayloads() {
+        return this.annotationPayloads;
+    }
+
+    /**
+     * Gets the estimated amount of bytes saved by freezing the lists of classes read by this
+     * index, see {@link FrozenList}. Classes of {@link #addIndex(IndexSnapshot) added indexes}
+     * and classes indexed as elements are not counted.
+     *
+     * @return Estimated amount of bytes saved.
+     */
+    public long getFreezeSavings() {
+        return this.freezeSavings.sum();
+    }
+
+    /**
+     * Adds the indexes generated at compile time ({@link IndexSnapshot#RESOURCE}) that are
+     * visible to {@code classLoader}, see {@link #addIndex(IndexSnapshot)}. Indexes are added in
+     * the order returned by {@link ClassLoader#getResources(String)}.
+     *
+     * @param classLoader Class loader to search indexes in.
+     * @return Amount of added indexes.
+     * @throws IOException If an index cannot be read.
+     */
+    public int loadIndexes(ClassLoader classLoader) throws IOException {
+        int loaded = 0;
+        Enumeration<URL> resources = classLoader.getResources(IndexSnapshot.RESOURCE);
+
+        while (resources.hasMoreElements()) {
+            URL resource = resources.nextElement();
+
+            try (InputStream in = resource.openStream()) {
+                this.addIndex(IndexSnapshot.read(in), resource.toString());
+            }
+
+            ++loaded;
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Adds a prebuilt index. Classes are decoded from the index when first requested and not
+     * copied before.
+     *
+     * If many sources contain the same class, classes indexed through this instance win over added
+     * indexes, and indexes added first win over indexes added later.
+     *
+     * @param snapshot Index to add.
+     */
+    public void addIndex(IndexSnapshot snapshot) {
+        this.addIndex(snapshot, MemoryFootprint.UNKNOWN_SOURCE);
+    }
+
+    private void addIndex(IndexSnapshot snapshot, String sourceName) {
+        int origin = this.sourceNames.id(sourceName);
+
+        snapshot.internStrings(this.symbolTable);
+
+        // Ids of the classes of the index do not depend on the order they are decoded.
+        for (String name : snapshot.getClassNames()) {
+            if (this.classOrdinals.find(name) == -1)
+                this.origins.set(this.classOrdinals.id(name), origin);
+
+            // Names are known before classes are decoded.
+            if (!this.removedShardClasses.contains(name))
+                this.packageIndex.add(name);
+        }
+
+        this.shardSources.put(snapshot, sourceName);
+        this.shards.add(snapshot);
+        this.pendingShards.add(snapshot);
+    }
 
-        String name = read.getName();
+    private void put(IClassElement element, ClassEntry source, int origin) {
+        String name = element.getName();
 
         String s = DescriptionUtil.internalToName(name);
 
-        this.index.put(s, read);
+        IMetaElement<?> stored = this.store.put(s, element);
+        int classOrdinal = this.classOrdinals.id(s);
+        ResidentClasses residentClasses = this.residentClasses;
+
+        this.origins.set(classOrdinal, origin);
+        this.addToIndexes(classOrdinal, s, element);
+
+        if (residentClasses == null)
+            this.classesById.put(ElementIds.ofClass(classOrdinal), stored);
+        else if (source == null)
+            residentClasses.forget(s);
+        else
+            this.evict(residentClasses.admit(s, source));
+
+        if (!this.shards.isEmpty())
+            this.removedShardClasses.remove(s);
+    }
+
+    /**
+     * Indexes all classes of a jar (or zip) file or a class directory.
+     *
+     * @param path Jar file or class directory.
+     * @return Indexing throughput.
+     * @throws IOException If {@code path} or one of its entries cannot be read.
+     */
+    public IndexingStats indexAll(Path path) throws IOException {
+        try (ClassSource source = ClassSources.of(path)) {
+            return this.indexAll(source);
+        }
+    }
+
+    /**
+     * Indexes all classes of {@code source}, entries are read and indexed in parallel.
+     *
+     * @param source Source of classes.
+     * @return Indexing throughput.
+     * @throws IOException If {@code source} or one of its entries cannot be read.
+     */
+    public IndexingStats indexAll(ClassSource source) throws IOException {
+        int origin = this.sourceNames.id(source.getName());
+
+        return this.forEach(source, (entry, bytes, offset, length) ->
+                this.read(bytes, offset, length, element -> this.put(element, this.sourceOf(entry, element, bytes, offset, length), origin)));
+    }
+
+    /**
+     * Indexes all classes of {@code classes} in parallel, using {@link #getParallelism()} threads.
+     *
+     * @param classes Stream of class bytes.
+     * @return Indexing throughput.
+     */
+    public IndexingStats indexAll(Stream<byte[]> classes) {
+        return this.forEach(classes, (bytes, counters) -> counters.add(this.tryIndex(bytes), bytes.length));
+    }
+
+    /**
+     * Reads all classes of {@code source} and pushes them to {@code sink} instead of indexing them,
+     * so classes can be scanned in bounded memory. Like {@code indexAll}, entries are read in
+     * parallel, so {@code sink} is called concurrently when {@link #getParallelism()} is greater
+     * than 1. The {@link #getPrefilter() prefilter} and {@link #getVisitorFactory() visitor
+     * factory} of this instance are used to read classes.
+     *
+     * @param source Source of classes.
+     * @param sink   Receiver of read classes.
+     * @return Reading throughput.
+     * @throws IOException If {@code source} or one of its entries cannot be read.
+     */
+    public IndexingStats forEach(ClassSource source, Consumer<? super IClassElement> sink) throws IOException {
+        return this.forEach(source, (entry, bytes, offset, length) -> this.read(bytes, offset, length, sink));
+    }
+
+    private IndexingStats forEach(ClassSource source, EntryReader reader) throws IOException {
+        List<ClassEntry> entries = source.getEntries();
+
+        try {
+            return this.forEach(entries.stream(), (entry, counters) -> {
+                // Entries may skip the consumer (see ClasspathScanner), such entries are not counted.
+                try {
+                    entry.read((bytes, offset, length) -> counters.add(reader.read(entry, bytes, offset, length), length));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot read entry '" + entry.getName() + "' of '" + source + "'.", e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reads all classes of {@code classes} and pushes them to {@code sink} instead of indexing
+     * them, see {@link #forEach(ClassSource, Consumer)}.
+     *
+     * @param classes Stream of class bytes.
+     * @param sink    Receiver of read classes.
+     * @return Reading throughput.
+     */
+    public IndexingStats forEach(Stream<byte[]> classes, Consumer<? super IClassElement> sink) {
+        return this.forEach(classes, (bytes, counters) -> counters.add(this.read(bytes, 0, bytes.length, sink), bytes.length));
+    }
+
+    /**
+     * Creates a lazy stream of the classes of {@code source}, entries are only read when the
+     * stream is consumed and read classes are not indexed. Classes rejected by the {@link
+     * #getPrefilter() prefilter} are not part of the stream.
+     *
+     * @param source Source of classes, must stay open while the stream is consumed.
+     * @return Lazy stream of the classes of {@code source}.
+     * @throws IOException If {@code source} cannot be listed.
+     */
+    public Stream<IClassElement> stream(ClassSource source) throws IOException {
+        return source.getEntries().stream()
+                .flatMap(entry -> {
+                    IClassElement[] read = new IClassElement[1];
+
+                    try {
+                        entry.read((bytes, offset, length) -> this.read(bytes, offset, length, element -> read[0] = element));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Cannot read entry '" + entry.getName() + "' of '" + source + "'.", e);
+                    }
+
+                    return read[0] == null ? Stream.empty() : Stream.of(read[0]);
+                });
+    }
+
+    private <T> IndexingStats forEach(Stream<T> classes, BiConsumer<T, Counters> indexer) {
+        int parallelism = this.parallelism;
+        Counters counters = new Counters();
+
+        long start = System.nanoTime();
+
+        Stream<T> stream = parallelism == 1 ? classes.sequential() : classes.parallel();
+
+        Runnable task = () -> stream.forEach(element -> indexer.accept(element, counters));
+
+        if (parallelism == 1) {
+            task.run();
+        } else {
+            // Parallel streams run their tasks in the pool of the worker that started them.
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+            try {
+                pool.submit(task).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while indexing.", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+
+                if (cause instanceof Error)
+                    throw (Error) cause;
+
+                throw new IllegalStateException(cause);
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        return new IndexingStats(counters.classes.sum(), counters.skipped.sum(), counters.bytes.sum(), System.nanoTime() - start, parallelism);
+    }
+
+    private ClassEntry sourceOf(ClassEntry entry, IClassElement element, byte[] bytes, int offset, int length) {
+        if (this.residentClasses == null)
+            return null;
+
+        if (entry != null && entry.isDetached())
+            return entry;
+
+        return CompressedClassEntry.of(element.getName() + ".class", bytes, offset, length);
+    }
+
+    private void evict(List<String> names) {
+        for (String name : names) {
+            // The source is kept, so the class is read again by the next lookup.
+            this.store.remove(name);
+        }
     }
 
     public IClassElement read(byte[] bytes) {
-        ASMMetaClassVisitor asmMetaClassVisitor = VisitorFactory.createVisitor(Opcodes.ASM5);
+        return this.read(bytes, 0, bytes.length);
+    }
+
+    private boolean read(byte[] bytes, int offset, int length, Consumer<? super IClassElement> sink) {
+        AnnotationPrefilter prefilter = this.prefilter;
+
+        if (prefilter != null && !prefilter.test(bytes, offset, length))
+            return false;
+
+        sink.accept(this.read(bytes, offset, length));
+
+        return true;
+    }
+
+    public IClassElement read(byte[] bytes, int offset, int length) {
+        VisitorPool visitors = this.visitors;
+        ASMMetaClassVisitor asmMetaClassVisitor = visitors.acquire();
+
+        try {
+            ClassReader cr = new ClassReader(bytes, offset, length);
+
+            if (this.lazy)
+                asmMetaClassVisitor.readHeader(CompressedClassEntry.of(cr.getClassName() + ".class", bytes, offset, length), this::loadMembers);
+            else
+                asmMetaClassVisitor.setExpectedMembers(ASMMetaClassVisitor.countMembers(cr));
+
+            cr.accept(asmMetaClassVisitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
 
-        ClassReader cr = new ClassReader(bytes);
+            MetaElement<?> current = asmMetaClassVisitor.getCurrent();
 
-        cr.accept(asmMetaClassVisitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            if (!(current instanceof IClassElement)) {
+                throw new IllegalStateException("Byte array is not a class!");
+            }
 
-        MetaElement<?> current = asmMetaClassVisitor.getCurrent();
+            return (IClassElement) current;
+        } finally {
+            visitors.release(asmMetaClassVisitor);
+        }
+    }
+
+
+    /**
+     * Removes the class {@code name} from the index.
+     *
+     * @param name Binary name of the class.
+     * @return True if the class was indexed.
+     */
+    public boolean remove(String name) {
+        boolean removed = this.store.remove(name);
+        ResidentClasses residentClasses = this.residentClasses;
+
+        if (residentClasses != null)
+            residentClasses.forget(name);
+
+        int classOrdinal = this.classOrdinals.find(name);
+
+        if (classOrdinal != -1) {
+            this.classesById.remove(ElementIds.ofClass(classOrdinal));
+            this.annotationIndex.remove(classOrdinal);
+            this.modifierIndex.remove(classOrdinal);
+            this.unindexedMembers.remove(classOrdinal);
+        }
+
+        this.hierarchyIndex.remove(name);
+        this.packageIndex.remove(name);
+        this.indexedShardClasses.remove(name);
 
-        if (!(current instanceof IClassElement)) {
-            throw new IllegalStateException("Byte array is not a class!");
+        for (IndexSnapshot shard : this.shards) {
+            if (shard.contains(name)) {
+                // Otherwise the class would be decoded again by the next lookup.
+                return this.removedShardClasses.add(name) || removed;
+            }
         }
 
-        return (IClassElement) current;
+        return removed;
     }
 
+    private void loadMembers(LazyClassElement element, ClassEntry source) throws IOException {
+        VisitorPool visitors = this.visitors;
+        ASMMetaClassVisitor asmMetaClassVisitor = visitors.acquire();
+
+        try {
+            source.read((bytes, offset, length) -> {
+                ClassReader cr = new ClassReader(bytes, offset, length);
+
+                asmMetaClassVisitor.readMembers(element);
+
+                if (asmMetaClassVisitor.getRetainedAnnotations() == null)
+                    element.ensureChildCapacity(ASMMetaClassVisitor.countMembers(cr));
+
+                cr.accept(asmMetaClassVisitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            });
+        } finally {
+            visitors.release(asmMetaClassVisitor);
+        }
+    }
 
     public Optional<IMetaElement<?>> get(String name) {
-        return Optional.ofNullable(this.index.get(name));
+        IMetaElement<?> element = this.store.get(name);
+        ResidentClasses residentClasses = this.residentClasses;
+
+        if (residentClasses != null) {
+            if (element != null)
+                residentClasses.hit(name);
+            else
+                element = this.reload(residentClasses, name);
+        }
+
+        if (element == null && !this.shards.isEmpty())
+            element = this.decodeFromShards(name);
+
+        return Optional.ofNullable(element);
+    }
+
+    private IMetaElement<?> reload(ResidentClasses residentClasses, String name) {
+        ClassEntry source = residentClasses.getSource(name);
+
+        if (source == null)
+            return null;
+
+        IClassElement element;
+
+        try {
+            element = this.read(source.read());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read evicted class '" + name + "' from '" + source.getName() + "'.", e);
+        }
+
+        IMetaElement<?> stored = this.store.putIfAbsent(name, element);
+
+        this.evict(residentClasses.admit(name, source));
+
+        return stored;
     }
 
+    /**
+     * Estimates the heap retained by this index, by element kind and by source (the path of the
+     * jar or directory classes were indexed from, or the URL of an index loaded by {@link
+     * #loadIndexes(ClassLoader)}). Classes of added indexes that were not requested yet are
+     * counted as part of the encoded index.
+     *
+     * The whole index is walked, so this is meant for diagnostics and not for frequent calls.
+     *
+     * @return Estimated footprint of this index.
+     */
+    public MemoryFootprint getMemoryFootprint() {
+        MemoryFootprint.Builder footprint = new MemoryFootprint.Builder();
+
+        this.store.measure(footprint, this::getSourceName);
+
+        ResidentClasses residentClasses = this.residentClasses;
+
+        if (residentClasses != null) {
+            for (Map.Entry<String, ClassEntry> entry : residentClasses.getSources().entrySet()) {
+                ClassEntry source = entry.getValue();
+                long size = ObjectSizes.MAP_ENTRY + ObjectSizes.sizeOf(source);
+
+                if (source instanceof CompressedClassEntry)
+                    size += ObjectSizes.sizeOfArray(byte.class, ((CompressedClassEntry) source).getCompressedSize());
+
+                footprint.add(MemoryFootprint.Kind.INDEX, this.getSourceName(entry.getKey()), size, 0);
+            }
+        }
+
+        for (IndexSnapshot shard : this.shards)
+            footprint.add(MemoryFootprint.Kind.INDEX, this.shardSources.get(shard), shard.estimateSize(), 0);
+
+        // Strings that are only referenced by symbol tables.
+        for (SymbolTable table : new SymbolTable[]{this.symbolTable, this.classOrdinals, this.sourceNames}) {
+            for (int i = 0; i < table.size(); ++i)
+                footprint.addString(table.get(i), MemoryFootprint.INDEX_SOURCE);
+
+            footprint.add(MemoryFootprint.Kind.INDEX, MemoryFootprint.INDEX_SOURCE, table.estimateSize(), 0);
+        }
+
+        footprint.add(MemoryFootprint.Kind.INDEX, MemoryFootprint.INDEX_SOURCE,
+                this.classesById.estimateSize() + this.origins.estimateSize()
+                        + this.annotationIndex.estimateSize() + this.hierarchyIndex.estimateSize() + this.packageIndex.estimateSize()
+                        + this.modifierIndex.estimateSize(), 0);
+
+        return footprint.build();
+    }
+
+    private String getSourceName(String className) {
+        int classOrdinal = this.classOrdinals.find(className);
+
+        return this.sourceNames.get(classOrdinal == -1 ? UNKNOWN_ORIGIN : this.origins.get(classOrdinal));
+    }
+
+    /**
+     * Gets the id of {@code element}, see {@link ElementIds}. Ids are assigned to classes when they
+     * are first indexed and are kept when classes are removed and indexed again, so ids are stable
+     * for the lifetime of this instance. Classes of {@link #addIndex(IndexSnapshot) added
+     * indexes} get their ids when the index is added, in the order of the index.
+     *
+     * Ordinals of classes read in parallel depend on the order they were read, ids are only
+     * repeatable across runs if classes are indexed with a {@link #getParallelism() parallelism}
+     * of 1 or from the same indexes. Member ordinals follow the order of the members of the class,
+     * indexes generated at compile time do not list synthetic members, so member ids of the same
+     * class read from an index and from its class file may differ.
+     *
+     * @param element Class or member of an indexed class.
+     * @return Id of {@code element}, or {@link ElementIds#NONE} if its class is not indexed.
+     */
+    public long getId(IMetaElement<?> element) {
+        if (element instanceof IClassElement) {
+            int classOrdinal = this.classOrdinals.find(DescriptionUtil.internalToName(element.getName()));
+
+            return classOrdinal == -1 ? ElementIds.NONE : ElementIds.ofClass(classOrdinal);
+        }
+
+        IMetaElement<?> enclosing = element.getEnclosingElement();
+
+        if (!(enclosing instanceof IClassElement))
+            return ElementIds.NONE;
+
+        long classId = this.getId(enclosing);
+
+        if (classId == ElementIds.NONE)
+            return ElementIds.NONE;
+
+        List<IMetaElement<?>> members = enclosing.getChildElements();
+
+        for (int i = 0; i < members.size(); ++i) {
+            IMetaElement<?> member = members.get(i);
+
+            // Names and descriptors are unique among the members of a class.
+            if (member == element || (member.getName().equals(element.getName()) && member.getDesc().equals(element.getDesc())))
+                return ElementIds.of(ElementIds.getClassOrdinal(classId), i);
+        }
+
+        return ElementIds.NONE;
+    }
+
+    /**
+     * Gets the element with id {@code id}, see {@link #getId(IMetaElement)}. Classes are found
+     * without hashing their names, unless the amount of {@link #setMaxResidentClasses(int) resident
+     * classes} is bounded.
+     *
+     * @param id Id of the element.
+     * @return Element with id {@code id}.
+     */
+    public Optional<IMetaElement<?>> get(long id) {
+        int classOrdinal = ElementIds.getClassOrdinal(id);
+
+        if (classOrdinal < 0 || id == ElementIds.NONE)
+            return Optional.empty();
+
+        IMetaElement<?> element = this.classesById.get(ElementIds.getClassId(id));
+
+        if (element == null) {
+            // Not decoded from an added index yet.
+            if (classOrdinal >= this.classOrdinals.size())
+                return Optional.empty();
+
+            element = this.get(this.classOrdinals.get(classOrdinal)).orElse(null);
+
+            if (element == null)
+                return Optional.empty();
+        }
+
+        int memberOrdinal = ElementIds.getMemberOrdinal(id);
+
+        if (memberOrdinal == -1)
+            return Optional.of(element);
+
+        List<IMetaElement<?>> members = element.getChildElements();
+
+        return memberOrdinal < members.size() ? Optional.of(members.get(memberOrdinal)) : Optional.empty();
+    }
+
+    /**
+     * Gets all indexed classes. Classes of {@link #addIndex(IndexSnapshot) added indexes} that
+     * were not requested yet are decoded first.
+     *
+     * @return Unmodifiable view of all indexed classes.
+     */
     public Map<String, IMetaElement<?>> getAllIndexexElements() {
-        return this.unmodIndex;
+        this.decodePendingShards();
+
+        return this.store.asMap();
+    }
+
+    private void decodePendingShards() {
+        if (!this.pendingShards.isEmpty()) {
+            synchronized (this.pendingShards) {
+                IndexSnapshot shard;
+
+                while ((shard = this.pendingShards.peek()) != null) {
+                    for (String name : shard.getClassNames()) {
+                        if (!this.store.contains(name))
+                            this.decodeFromShards(name);
+                    }
+
+                    this.pendingShards.poll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the elements (classes and members) annotated with {@code annotationType}, from an
+     * index of annotations maintained while classes are indexed. Classes of {@link
+     * #addIndex(IndexSnapshot) added indexes} that were not requested yet are decoded first, and
+     * members of {@link #setLazy(boolean) lazy} classes are read first.
+     *
+     * @param annotationType Annotation type.
+     * @return Annotated elements, in the order of their {@link #getId(IMetaElement) ids}.
+     */
+    public List<IMetaElement<?>> getAnnotatedElements(Class<? extends Annotation> annotationType) {
+        return this.getAnnotatedElements("L" + annotationType.getName().replace('.', '/') + ";");
+    }
+
+    /**
+     * Gets the elements annotated with the annotation type {@code annotationDesc}, see {@link
+     * #getAnnotatedElements(Class)}.
+     *
+     * @param annotationDesc Descriptor of the annotation type, for example {@code
+     *                       Ljava/lang/Deprecated;}.
+     * @return Annotated elements, in the order of their {@link #getId(IMetaElement) ids}.
+     */
+    public List<IMetaElement<?>> getAnnotatedElements(String annotationDesc) {
+        long[] ids = this.getAnnotatedIds(annotationDesc);
+        List<IMetaElement<?>> elements = new ArrayList<>(ids.length);
+
+        for (long id : ids)
+            this.get(id).ifPresent(elements::add);
+
+        return elements;
+    }
+
+    /**
+     * Gets the ids of the elements annotated with the annotation type {@code annotationDesc}, see
+     * {@link #getAnnotatedElements(Class)}.
+     *
+     * @param annotationDesc Descriptor of the annotation type.
+     * @return Sorted ids of annotated elements.
+     */
+    public long[] getAnnotatedIds(String annotationDesc) {
+        return this.getAnnotationIndex().get(annotationDesc);
+    }
+
+    /**
+     * Gets the index of annotations of this instance, after indexing the annotations of classes
+     * that were not requested yet, see {@link #getAnnotatedElements(Class)}.
+     *
+     * @return Index of annotations.
+     */
+    public AnnotationIndex getAnnotationIndex() {
+        this.indexPending();
+
+        return this.annotationIndex;
+    }
+
+    /**
+     * Gets the index of access flags and kinds of indexed elements, which filters elements by
+     * modifiers without reading them, see {@link #getAnnotationIndex()}.
+     *
+     * @return Index of access flags.
+     */
+    public ModifierIndex getModifierIndex() {
+        this.indexPending();
+
+        return this.modifierIndex;
+    }
+
+    private void indexPending() {
+        this.decodePendingShards();
+
+        if (!this.unindexedMembers.isEmpty()) {
+            for (Integer classOrdinal : this.unindexedMembers) {
+                if (!this.unindexedMembers.remove(classOrdinal))
+                    continue;
+
+                // Reads members of the class.
+                this.get(ElementIds.ofClass(classOrdinal)).ifPresent(element -> {
+                    this.annotationIndex.add(classOrdinal, element, true);
+                    this.modifierIndex.add(classOrdinal, element, true);
+                });
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the type hierarchy of indexed classes, which finds the subtypes and
+     * implementations of a type without loading classes. Classes of {@link
+     * #addIndex(IndexSnapshot) added indexes} that were not requested yet are decoded first.
+     *
+     * @return Index of the type hierarchy.
+     */
+    public HierarchyIndex getHierarchyIndex() {
+        this.decodePendingShards();
+
+        return this.hierarchyIndex;
+    }
+
+    /**
+     * Gets the sorted index of the names of indexed classes, which finds the classes of a package
+     * or with a name prefix without scanning all classes. Classes of {@link
+     * #addIndex(IndexSnapshot) added indexes} are part of the index before they are decoded.
+     *
+     * @return Index of class names.
+     */
+    public PackageIndex getPackageIndex() {
+        return this.packageIndex;
+    }
+
+    /**
+     * Gets the classes of package {@code packageName}, see {@link PackageIndex#getNames(String,
+     * boolean)}. Classes are read when the stream is consumed.
+     *
+     * @param packageName Name of the package, for example {@code com.acme.plugins}.
+     * @param subPackages True to include the classes of sub packages.
+     * @return Lazy stream of the classes of the package, in name order.
+     */
+    public Stream<IMetaElement<?>> getClasses(String packageName, boolean subPackages) {
+        return this.packageIndex.getNames(packageName, subPackages)
+                .<IMetaElement<?>>map(name -> this.get(name).orElse(null))
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Plans {@code query}, see {@link QueryPlan}. Plans are not cached and should be run soon, the
+     * chosen index is based on the current contents of this index.
+     *
+     * @param query Query.
+     * @param <T>   Type of queried elements.
+     * @return Plan of {@code query}.
+     */
+    public <T extends IMetaElement<?>> QueryPlan<T> plan(Query<T> query) {
+        return new QueryPlan<>(this, query);
+    }
+
+    /**
+     * Runs {@code query}, see {@link #plan(Query)}.
+     *
+     * @param query Query.
+     * @param <T>   Type of queried elements.
+     * @return Lazy stream of the elements matching {@code query}.
+     */
+    public <T extends IMetaElement<?>> Stream<T> query(Query<T> query) {
+        return this.plan(query).stream();
+    }
+
+    int findClassOrdinal(String name) {
+        return this.classOrdinals.find(name);
+    }
+
+    String getClassName(int classOrdinal) {
+        return this.classOrdinals.get(classOrdinal);
+    }
+
+    int getClassCount() {
+        return this.classOrdinals.size();
+    }
+
+    private void addToIndexes(int classOrdinal, String name, IClassElement element) {
+        this.packageIndex.add(name);
+
+        // Members of lazy classes are indexed on the first query, so they are not read before.
+        boolean members = !(element instanceof LazyClassElement) || ((LazyClassElement) element).isMaterialized();
+
+        this.annotationIndex.add(classOrdinal, element, members);
+        this.modifierIndex.add(classOrdinal, element, members);
+
+        if (members)
+            this.unindexedMembers.remove(classOrdinal);
+        else
+            this.unindexedMembers.add(classOrdinal);
+
+        String superClass = element.getSuperClass();
+        String[] interfaces = element.getInterfaces().clone();
+
+        for (int i = 0; i < interfaces.length; ++i)
+            interfaces[i] = DescriptionUtil.internalToName(interfaces[i]);
+
+        this.hierarchyIndex.add(name, superClass == null ? null : DescriptionUtil.internalToName(superClass), interfaces,
+                (element.getModifiers() & Opcodes.ACC_INTERFACE) != 0);
+    }
+
+    private IMetaElement<?> decodeFromShards(String name) {
+        if (this.removedShardClasses.contains(name))
+            return null;
+
+        for (IndexSnapshot shard : this.shards) {
+            if (shard.contains(name)) {
+                IClassElement element;
+
+                try {
+                    element = shard.decode(name);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                IMetaElement<?> stored = this.store.putIfAbsent(name, element);
+                ResidentClasses residentClasses = this.residentClasses;
+                int classOrdinal = this.classOrdinals.id(name);
+
+                // Only the first decode indexes the class: classes decoded by many threads at once, or
+                // decoded again after an eviction from a bounded index, are already indexed. Index
+                // the stored class, it is not the decoded one if the class was indexed meanwhile.
+                if (this.indexedShardClasses.add(name))
+                    this.addToIndexes(classOrdinal, name, (IClassElement) stored);
+
+                if (residentClasses == null)
+                    this.classesById.put(ElementIds.ofClass(classOrdinal), stored);
+                else
+                    this.evict(residentClasses.admit(name, null));
+
+                return stored;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Keeps one visitor per thread, so reading a class does not allocate visitors.
+     */
+    private static final class VisitorPool {
+        private final Supplier<ASMMetaClassVisitor> factory;
+        private final SymbolTable symbolTable;
+        private final AnnotationPayloads annotationPayloads;
+        private final LongAdder freezeSavings;
+        private final ThreadLocal<ASMMetaClassVisitor> visitors = new ThreadLocal<>();
+
+        VisitorPool(Supplier<ASMMetaClassVisitor> factory, ASMMeta asmMeta) {
+            this.factory = factory;
+            this.symbolTable = asmMeta.symbolTable;
+            this.annotationPayloads = asmMeta.annotationPayloads;
+            this.freezeSavings = asmMeta.freezeSavings;
+        }
+
+        ASMMetaClassVisitor acquire() {
+            ASMMetaClassVisitor visitor = this.visitors.get();
+
+            if (visitor == null) {
+                visitor = this.factory.get();
+                visitor.setSymbolTable(this.symbolTable);
+                visitor.setAnnotationPayloads(this.annotationPayloads);
+                visitor.setFreezeSavings(this.freezeSavings);
+                return visitor;
+            }
+
+            // Taken while in use, so reentrant reads get a new visitor.
+            this.visitors.set(null);
+            return visitor;
+        }
+
+        void release(ASMMetaClassVisitor visitor) {
+            visitor.reset();
+            this.visitors.set(visitor);
+        }
+    }
+
+    /**
+     * Growable array of source ids, by class ordinal.
+     */
+    private static final class Origins {
+        private int[] origins = new int[256];
+
+        synchronized void set(int classOrdinal, int origin) {
+            if (classOrdinal >= this.origins.length)
+                this.origins = Arrays.copyOf(this.origins, Math.max(classOrdinal + 1, this.origins.length * 2));
+
+            this.origins[classOrdinal] = origin;
+        }
+
+        synchronized int get(int classOrdinal) {
+            return classOrdinal < this.origins.length ? this.origins[classOrdinal] : UNKNOWN_ORIGIN;
+        }
+
+        synchronized long estimateSize() {
+            return ObjectSizes.sizeOfArray(int.class, this.origins.length);
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntryReader {
+        boolean read(ClassEntry entry, byte[] bytes, int offset, int length);
+    }
+
+    private static final class Counters {
+        private final LongAdder classes = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        void add(boolean indexed, int length) {
+            (indexed ? this.classes : this.skipped).increment();
+            this.bytes.add(length);
+        }
     }
 }
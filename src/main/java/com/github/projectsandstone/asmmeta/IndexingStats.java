@@ -0,0 +1,111 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a bulk indexing operation.
+ */
+public final class IndexingStats {
+
+    private final long classes;
+    private final long skipped;
+    private final long bytes;
+    private final long elapsedNanos;
+    private final int parallelism;
+
+    public IndexingStats(long classes, long skipped, long bytes, long elapsedNanos, int parallelism) {
+        this.classes = classes;
+        this.skipped = skipped;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets the amount of indexed classes.
+     *
+     * @return Amount of indexed classes.
+     */
+    public long getClasses() {
+        return this.classes;
+    }
+
+    /**
+     * Gets the amount of classes rejected by the {@link ASMMeta#getPrefilter() prefilter}.
+     *
+     * @return Amount of classes rejected by the prefilter.
+     */
+    public long getSkipped() {
+        return this.skipped;
+    }
+
+    /**
+     * Gets the amount of class bytes read.
+     *
+     * @return Amount of class bytes read.
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(this.elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Gets the amount of classes processed (indexed or skipped) per second.
+     *
+     * @return Amount of classes processed per second.
+     */
+    public double getClassesPerSecond() {
+        return this.perSecond(this.classes + this.skipped);
+    }
+
+    public double getBytesPerSecond() {
+        return this.perSecond(this.bytes);
+    }
+
+    private double perSecond(long amount) {
+        if (this.elapsedNanos <= 0)
+            return 0;
+
+        return amount * (double) TimeUnit.SECONDS.toNanos(1) / this.elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IndexingStats[classes=%d, skipped=%d, bytes=%d, elapsed=%dms, parallelism=%d, classesPerSecond=%.1f]",
+                this.classes, this.skipped, this.bytes, this.getElapsed(TimeUnit.MILLISECONDS), this.parallelism, this.getClassesPerSecond());
+    }
+}
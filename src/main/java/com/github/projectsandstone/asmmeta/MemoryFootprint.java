@@ -0,0 +1,336 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta;
+
+import com.github.projectsandstone.asmmeta.data.IMetaData;
+import com.github.projectsandstone.asmmeta.element.IAnnotationElement;
+import com.github.projectsandstone.asmmeta.element.IClassElement;
+import com.github.projectsandstone.asmmeta.element.IConstructorElement;
+import com.github.projectsandstone.asmmeta.element.IFieldElement;
+import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.element.IMethodElement;
+import com.github.projectsandstone.asmmeta.element.LazyClassElement;
+import com.github.projectsandstone.asmmeta.source.ClassEntry;
+import com.github.projectsandstone.asmmeta.source.CompressedClassEntry;
+import com.github.projectsandstone.asmmeta.util.ObjectSizes;
+import com.github.projectsandstone.asmmeta.value.PrimitiveArrayValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveValue;
+import com.github.projectsandstone.asmmeta.value.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimated heap retained by an {@link ASMMeta index}, by element kind and by source, see {@link
+ * ASMMeta#getMemoryFootprint()}. Sizes are estimated with {@link ObjectSizes}, no heap dump is
+ * needed.
+ *
+ * Objects shared by many classes (strings, annotation payloads) are counted once and attributed
+ * to the first source that references them.
+ */
+public final class MemoryFootprint {
+
+    /**
+     * Source of classes indexed from bytes or elements.
+     */
+    public static final String UNKNOWN_SOURCE = "<unknown>";
+
+    /**
+     * Source of the structures of the index itself.
+     */
+    public static final String INDEX_SOURCE = "<index>";
+
+    private final Map<Kind, Long> bytes;
+    private final Map<Kind, Long> counts;
+    private final Map<String, Long> bytesBySource;
+
+    private MemoryFootprint(Map<Kind, Long> bytes, Map<Kind, Long> counts, Map<String, Long> bytesBySource) {
+        this.bytes = Collections.unmodifiableMap(bytes);
+        this.counts = Collections.unmodifiableMap(counts);
+        this.bytesBySource = Collections.unmodifiableMap(bytesBySource);
+    }
+
+    public long getBytes(Kind kind) {
+        return this.bytes.get(kind);
+    }
+
+    /**
+     * Gets the amount of objects of {@code kind}: elements, values or strings. Always 0 for {@link
+     * Kind#INDEX}.
+     *
+     * @param kind Kind.
+     * @return Amount of objects of {@code kind}.
+     */
+    public long getCount(Kind kind) {
+        return this.counts.get(kind);
+    }
+
+    public long getTotalBytes() {
+        long total = 0;
+
+        for (long bytes : this.bytes.values())
+            total += bytes;
+
+        return total;
+    }
+
+    /**
+     * Gets the retained bytes of each source, such as a jar path, largest first.
+     *
+     * @return Retained bytes of each source.
+     */
+    public Map<String, Long> getBytesBySource() {
+        return this.bytesBySource;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryFootprint[total=" + this.getTotalBytes() + ", bytes=" + this.bytes + ", counts=" + this.counts
+                + ", sources=" + this.bytesBySource + "]";
+    }
+
+    public enum Kind {
+        CLASSES,
+        FIELDS,
+        METHODS,
+        CONSTRUCTORS,
+        ANNOTATIONS,
+
+        /**
+         * Annotation values and arrays.
+         */
+        VALUES,
+
+        /**
+         * Names, descriptors and string values.
+         */
+        STRINGS,
+
+        /**
+         * Structures of the index: symbol tables, maps, retained class bytes and snapshots.
+         */
+        INDEX
+    }
+
+    /**
+     * Accumulates a footprint, objects are counted once however often they are added.
+     */
+    public static final class Builder {
+        private final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final long[] bytes = new long[Kind.values().length];
+        private final long[] counts = new long[Kind.values().length];
+        private final Map<String, long[]> bytesBySource = new HashMap<>();
+
+        /**
+         * Adds {@code bytes} of {@code kind} retained by {@code source}.
+         *
+         * @param kind   Kind.
+         * @param source Source.
+         * @param bytes  Amount of bytes.
+         * @param count  Amount of objects.
+         */
+        public void add(Kind kind, String source, long bytes, long count) {
+            this.bytes[kind.ordinal()] += bytes;
+            this.counts[kind.ordinal()] += count;
+            this.bytesBySource.computeIfAbsent(source, key -> new long[1])[0] += bytes;
+        }
+
+        /**
+         * Adds {@code element} and everything it references: names, annotations, values and
+         * members. Members of {@link LazyClassElement lazy classes} are not read.
+         *
+         * @param element Element.
+         * @param source  Source of the class of {@code element}.
+         */
+        public void addElement(IMetaElement<?> element, String source) {
+            if (!this.seen.add(element))
+                return;
+
+            Kind kind = Builder.kindOf(element);
+
+            this.add(kind, source, ObjectSizes.sizeOf(element), 1);
+            this.addString(element.getName(), source);
+            this.addString(element.getDesc(), source);
+
+            if (element instanceof IClassElement) {
+                IClassElement classElement = (IClassElement) element;
+                String[] interfaces = classElement.getInterfaces();
+
+                this.addString(classElement.getSuperClass(), source);
+
+                if (interfaces != null && this.seen.add(interfaces)) {
+                    this.add(kind, source, ObjectSizes.sizeOf(interfaces), 0);
+
+                    for (String name : interfaces)
+                        this.addString(name, source);
+                }
+            }
+
+            IMetaData metaData = element.getMetaData();
+
+            if (metaData != null && this.seen.add(metaData)) {
+                this.add(kind, source, ObjectSizes.sizeOf(metaData), 0);
+                this.addList(metaData.getAnnotationList(), Kind.ANNOTATIONS, source);
+
+                for (IMetaElement<?> annotation : metaData.getAnnotationList())
+                    this.addElement(annotation, source);
+            }
+
+            if (element instanceof IAnnotationElement) {
+                this.addValue(((IAnnotationElement) element).getValues(), source);
+            }
+
+            if (element instanceof LazyClassElement && !((LazyClassElement) element).isMaterialized()) {
+                ClassEntry entry = ((LazyClassElement) element).getSource();
+
+                if (entry instanceof CompressedClassEntry && this.seen.add(entry)) {
+                    this.add(Kind.INDEX, source, ObjectSizes.sizeOf(entry)
+                            + ObjectSizes.sizeOfArray(byte.class, ((CompressedClassEntry) entry).getCompressedSize()), 0);
+                }
+
+                return;
+            }
+
+            List<IMetaElement<?>> children = element.getChildElements();
+
+            this.addList(children, kind, source);
+
+            for (IMetaElement<?> child : children)
+                this.addElement(child, source);
+        }
+
+        /**
+         * Adds an annotation value: a {@link Value}, a list of values, an encoded array ({@code
+         * Object[]}), a string, a boxed primitive, a primitive array or an element. Primitive
+         * values are counted without their boxed value, which is created on each access.
+         *
+         * @param value  Value.
+         * @param source Source of the class of {@code value}.
+         */
+        public void addValue(Object value, String source) {
+            if (value == null)
+                return;
+
+            if (value instanceof String) {
+                this.addString((String) value, source);
+            } else if (value instanceof IMetaElement<?>) {
+                this.addElement((IMetaElement<?>) value, source);
+            } else if (this.seen.add(value)) {
+                this.add(Kind.VALUES, source, ObjectSizes.sizeOf(value), value instanceof Value<?> ? 1 : 0);
+
+                if (value instanceof PrimitiveArrayValue) {
+                    Object array = ((PrimitiveArrayValue) value).getArray();
+
+                    if (this.seen.add(array))
+                        this.add(Kind.VALUES, source, ObjectSizes.sizeOf(array), 0);
+
+                    // List view over the array, its elements are boxed on access.
+                    this.add(Kind.VALUES, source, ObjectSizes.sizeOf(((PrimitiveArrayValue) value).getValue()), 0);
+                } else if (value instanceof Value<?> && !(value instanceof PrimitiveValue)) {
+                    // Primitive values are unboxed, their shallow size holds the value.
+                    this.addValue(((Value<?>) value).getValue(), source);
+                } else if (value instanceof List<?>) {
+                    this.add(Kind.VALUES, source, Builder.sizeOfElements((List<?>) value), 0);
+
+                    for (Object element : (List<?>) value)
+                        this.addValue(element, source);
+                } else if (value instanceof Object[]) {
+                    for (Object element : (Object[]) value)
+                        this.addValue(element, source);
+                }
+            }
+        }
+
+        /**
+         * Adds {@code string}.
+         *
+         * @param string String, may be null.
+         * @param source Source that references {@code string}.
+         */
+        public void addString(String string, String source) {
+            if (string != null && this.seen.add(string))
+                this.add(Kind.STRINGS, source, ObjectSizes.sizeOfString(string), 1);
+        }
+
+        public MemoryFootprint build() {
+            Map<Kind, Long> bytes = new EnumMap<>(Kind.class);
+            Map<Kind, Long> counts = new EnumMap<>(Kind.class);
+
+            for (Kind kind : Kind.values()) {
+                bytes.put(kind, this.bytes[kind.ordinal()]);
+                counts.put(kind, this.counts[kind.ordinal()]);
+            }
+
+            List<Map.Entry<String, long[]>> sources = new ArrayList<>(this.bytesBySource.entrySet());
+            Map<String, Long> bytesBySource = new LinkedHashMap<>();
+
+            sources.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+
+            for (Map.Entry<String, long[]> entry : sources)
+                bytesBySource.put(entry.getKey(), entry.getValue()[0]);
+
+            return new MemoryFootprint(bytes, counts, bytesBySource);
+        }
+
+        private void addList(List<?> list, Kind kind, String source) {
+            if (this.seen.add(list))
+                this.add(kind, source, ObjectSizes.sizeOf(list) + Builder.sizeOfElements(list), 0);
+        }
+
+        private static long sizeOfElements(List<?> list) {
+            // Backing arrays are not accessible, frozen lists have exact-size arrays.
+            return list.size() > 1 ? ObjectSizes.sizeOfArray(Object.class, list.size()) : 0;
+        }
+
+        private static Kind kindOf(IMetaElement<?> element) {
+            if (element instanceof IFieldElement)
+                return Kind.FIELDS;
+
+            if (element instanceof IMethodElement)
+                return Kind.METHODS;
+
+            if (element instanceof IConstructorElement)
+                return Kind.CONSTRUCTORS;
+
+            if (element instanceof IAnnotationElement)
+                return Kind.ANNOTATIONS;
+
+            if (element instanceof IClassElement)
+                return Kind.CLASSES;
+
+            return Kind.VALUES;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta;
+
+import com.github.projectsandstone.asmmeta.element.IClassElement;
+import com.github.projectsandstone.asmmeta.element.IMetaElement;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Query over the elements of an {@link ASMMeta index}, for example the public static methods
+ * annotated with {@code @A} of the subclasses of {@code B} in package {@code p}:
+ *
+ * <pre>{@code
+ * Query<IMethodElement> query = new Query.Builder<>(IMethodElement.class)
+ *         .annotatedWith(A.class)
+ *         .inSubtypesOf("com.acme.B")
+ *         .inPackage("com.acme.p", true)
+ *         .withModifiers(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC)
+ *         .build();
+ * }</pre>
+ *
+ * All conditions must hold. Queries are planned by {@link ASMMeta#plan(Query)}, which answers the
+ * query from the most selective index.
+ *
+ * @param <T> Type of queried elements.
+ */
+public final class Query<T extends IMetaElement<?>> {
+
+    private final Class<T> type;
+    private final List<String> annotations;
+    private final List<String> supertypes;
+    private final String packageName;
+    private final boolean subPackages;
+    private final int modifiers;
+    private final int excludedModifiers;
+
+    private Query(Builder<T> builder) {
+        this.type = builder.type;
+        this.annotations = Collections.unmodifiableList(new ArrayList<>(builder.annotations));
+        this.supertypes = Collections.unmodifiableList(new ArrayList<>(builder.supertypes));
+        this.packageName = builder.packageName;
+        this.subPackages = builder.subPackages;
+        this.modifiers = builder.modifiers;
+        this.excludedModifiers = builder.excludedModifiers;
+    }
+
+    public Class<T> getType() {
+        return this.type;
+    }
+
+    /**
+     * Returns true if classes are of the queried type.
+     *
+     * @return True if classes are of the queried type.
+     */
+    public boolean isClassQuery() {
+        return this.type.isAssignableFrom(IClassElement.class);
+    }
+
+    /**
+     * Returns true if members (fields, methods, constructors and enum constants) may be of the
+     * queried type.
+     *
+     * @return True if members may be of the queried type.
+     */
+    public boolean isMemberQuery() {
+        return !IClassElement.class.isAssignableFrom(this.type);
+    }
+
+    /**
+     * Gets the descriptors of the annotation types queried elements are annotated with.
+     *
+     * @return Descriptors of required annotation types.
+     */
+    public List<String> getAnnotations() {
+        return this.annotations;
+    }
+
+    /**
+     * Gets the binary names of the types that queried classes, or the classes of queried members,
+     * are subtypes of.
+     *
+     * @return Binary names of required super types.
+     */
+    public List<String> getSupertypes() {
+        return this.supertypes;
+    }
+
+    /**
+     * Gets the package of queried classes, or of the classes of queried members.
+     *
+     * @return Name of the package, or null if any package matches.
+     */
+    public String getPackageName() {
+        return this.packageName;
+    }
+
+    public boolean isSubPackages() {
+        return this.subPackages;
+    }
+
+    /**
+     * Gets the access flags ({@link org.objectweb.asm.Opcodes Opcodes.ACC_*}) queried elements
+     * have.
+     *
+     * @return Required access flags.
+     */
+    public int getModifiers() {
+        return this.modifiers;
+    }
+
+    /**
+     * Gets the access flags queried elements do not have.
+     *
+     * @return Excluded access flags.
+     */
+    public int getExcludedModifiers() {
+        return this.excludedModifiers;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(this.type.getSimpleName());
+
+        for (String annotation : this.annotations)
+            sb.append(" annotated with ").append(annotation);
+
+        for (String supertype : this.supertypes)
+            sb.append(" in subtypes of ").append(supertype);
+
+        if (this.packageName != null)
+            sb.append(" in package ").append(this.packageName).append(this.subPackages ? ".**" : ".*");
+
+        if (this.modifiers != 0)
+            sb.append(" with modifiers 0x").append(Integer.toHexString(this.modifiers));
+
+        if (this.excludedModifiers != 0)
+            sb.append(" without modifiers 0x").append(Integer.toHexString(this.excludedModifiers));
+
+        return sb.toString();
+    }
+
+    public static final class Builder<T extends IMetaElement<?>> {
+        private final Class<T> type;
+        private final List<String> annotations = new ArrayList<>();
+        private final List<String> supertypes = new ArrayList<>();
+        private String packageName;
+        private boolean subPackages;
+        private int modifiers;
+        private int excludedModifiers;
+
+        /**
+         * Creates a builder of a query of elements of {@code type}, for example {@code
+         * IMethodElement.class} for methods or {@code IMetaElement.class} for all elements.
+         *
+         * @param type Type of queried elements.
+         */
+        public Builder(Class<T> type) {
+            this.type = Objects.requireNonNull(type);
+        }
+
+        public Builder<T> annotatedWith(Class<? extends Annotation> annotationType) {
+            return this.annotatedWith("L" + annotationType.getName().replace('.', '/') + ";");
+        }
+
+        /**
+         * Requires elements to be annotated with the annotation type {@code annotationDesc}.
+         *
+         * @param annotationDesc Descriptor of the annotation type.
+         * @return This builder.
+         */
+        public Builder<T> annotatedWith(String annotationDesc) {
+            this.annotations.add(Objects.requireNonNull(annotationDesc));
+            return this;
+        }
+
+        /**
+         * Requires classes, or the classes of members, to be subtypes of {@code supertype} (not
+         * {@code supertype} itself), see {@link com.github.projectsandstone.asmmeta.index.HierarchyIndex#getSubtypes(String)}.
+         *
+         * @param supertype Binary name of the super type.
+         * @return This builder.
+         */
+        public Builder<T> inSubtypesOf(String supertype) {
+            this.supertypes.add(Objects.requireNonNull(supertype));
+            return this;
+        }
+
+        /**
+         * Requires classes, or the classes of members, to be in package {@code packageName}.
+         *
+         * @param packageName Name of the package.
+         * @param subPackages True to also accept classes of sub packages.
+         * @return This builder.
+         */
+        public Builder<T> inPackage(String packageName, boolean subPackages) {
+            this.packageName = Objects.requireNonNull(packageName);
+            this.subPackages = subPackages;
+            return this;
+        }
+
+        /**
+         * Requires elements to have all access flags of {@code modifiers}.
+         *
+         * @param modifiers Access flags.
+         * @return This builder.
+         */
+        public Builder<T> withModifiers(int modifiers) {
+            this.modifiers |= modifiers;
+            return this;
+        }
+
+        /**
+         * Requires elements to have none of the access flags of {@code modifiers}.
+         *
+         * @param modifiers Access flags.
+         * @return This builder.
+         */
+        public Builder<T> withoutModifiers(int modifiers) {
+            this.excludedModifiers |= modifiers;
+            return this;
+        }
+
+        public Query<T> build() {
+            return new Query<>(this);
+        }
+    }
+}
@@ -0,0 +1,461 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta;
+
+import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.index.ModifierIndex;
+import com.github.projectsandstone.asmmeta.util.ElementIds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Plan of a {@link Query}. The planner estimates how many elements each index would produce for
+ * the query (annotation postings, subtypes of the hierarchy index, classes of the package index,
+ * access flag bitmaps of the modifier index, or a scan of all classes) and reads candidates from
+ * the most selective one. The other indexes filter candidates by id, before classes are read, and
+ * the type and access flags are checked again on the elements that remain.
+ *
+ * Elements are read lazily when the stream of results is consumed, in the order of the chosen
+ * index.
+ *
+ * @param <T> Type of queried elements.
+ */
+public final class QueryPlan<T extends IMetaElement<?>> {
+
+    // Estimated amount of members of a class, to compare indexes of classes with indexes of members.
+    private static final int MEMBERS_PER_CLASS = 8;
+
+    private final ASMMeta asmMeta;
+    private final Query<T> query;
+    private final Access source;
+    private final List<Access> filters = new ArrayList<>();
+    private final Access scan;
+
+    QueryPlan(ASMMeta asmMeta, Query<T> query) {
+        this.asmMeta = asmMeta;
+        this.query = query;
+
+        List<Access> accesses = new ArrayList<>();
+
+        for (String annotation : query.getAnnotations())
+            accesses.add(new AnnotationAccess(annotation));
+
+        for (String supertype : query.getSupertypes())
+            accesses.add(new HierarchyAccess(supertype));
+
+        if (query.getPackageName() != null)
+            accesses.add(new PackageAccess(query.getPackageName(), query.isSubPackages()));
+
+        // Flags that are not indexed (such as ACC_DEPRECATED) are only checked on elements.
+        int modifiers = query.getModifiers() & ModifierIndex.INDEXED_MODIFIERS;
+        int excludedModifiers = query.getExcludedModifiers() & ModifierIndex.INDEXED_MODIFIERS;
+
+        if (modifiers != 0 || excludedModifiers != 0 || !(query.isClassQuery() && query.isMemberQuery()))
+            accesses.add(new ModifierAccess(modifiers, excludedModifiers));
+
+        this.scan = new ScanAccess();
+
+        // Counting stops at the best estimate so far, unselective indexes are not fully counted.
+        Access source = this.scan;
+        long cost = this.scan.estimate(Long.MAX_VALUE);
+
+        for (Access access : accesses) {
+            long estimate = access.estimate(cost);
+
+            if (estimate < cost) {
+                source = access;
+                cost = estimate;
+            }
+        }
+
+        this.source = source;
+
+        for (Access access : accesses) {
+            if (access != source)
+                this.filters.add(access);
+        }
+    }
+
+    public Query<T> getQuery() {
+        return this.query;
+    }
+
+    /**
+     * Gets the estimated amount of candidate elements read from the chosen index.
+     *
+     * @return Estimated amount of candidates.
+     */
+    public long getEstimatedCost() {
+        return this.source.estimate;
+    }
+
+    /**
+     * Describes the chosen index, the filters applied to candidates and the estimates of the
+     * indexes that were not chosen.
+     *
+     * @return Description of this plan, one step per line.
+     */
+    public String explain() {
+        StringBuilder sb = new StringBuilder("query ").append(this.query).append('\n');
+
+        sb.append("  source: ").append(this.source.describe()).append('\n');
+
+        for (Access filter : this.filters)
+            sb.append("  filter: ").append(filter.describe()).append('\n');
+
+        sb.append("  check: type ").append(this.query.getType().getSimpleName()).append('\n');
+
+        if (this.query.getModifiers() != 0 || this.query.getExcludedModifiers() != 0)
+            sb.append("  check: modifiers 0x").append(Integer.toHexString(this.query.getModifiers()))
+                    .append(" set, 0x").append(Integer.toHexString(this.query.getExcludedModifiers())).append(" clear\n");
+
+        if (this.scan != this.source)
+            sb.append("  rejected: ").append(this.scan.describe()).append('\n');
+
+        return sb.toString();
+    }
+
+    /**
+     * Runs this plan.
+     *
+     * @return Lazy stream of the elements matching the query.
+     */
+    public Stream<T> stream() {
+        Query<T> query = this.query;
+        LongStream ids = this.source.candidates();
+
+        if (this.source.isClassLevel()) {
+            // Classes are only read if they pass the class filters.
+            for (Access filter : this.filters) {
+                if (filter.isClassLevel())
+                    ids = ids.filter(filter.filter());
+            }
+
+            ids = ids.flatMap(this::expand);
+        } else {
+            if (!query.isClassQuery())
+                ids = ids.filter(id -> !ElementIds.isClass(id));
+
+            if (!query.isMemberQuery())
+                ids = ids.filter(ElementIds::isClass);
+
+            for (Access filter : this.filters) {
+                if (filter.isClassLevel())
+                    ids = ids.filter(filter.filter());
+            }
+        }
+
+        for (Access filter : this.filters) {
+            if (!filter.isClassLevel())
+                ids = ids.filter(filter.filter());
+        }
+
+        int modifiers = query.getModifiers();
+        int excludedModifiers = query.getExcludedModifiers();
+        Class<T> type = query.getType();
+
+        return ids.mapToObj(this.asmMeta::get)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .filter(type::isInstance)
+                .filter(element -> (element.getModifiers() & modifiers) == modifiers && (element.getModifiers() & excludedModifiers) == 0)
+                .map(type::cast);
+    }
+
+    @Override
+    public String toString() {
+        return this.explain();
+    }
+
+    private LongStream expand(long classId) {
+        if (!this.query.isMemberQuery())
+            return LongStream.of(classId);
+
+        Optional<IMetaElement<?>> element = this.asmMeta.get(classId);
+
+        if (!element.isPresent())
+            return LongStream.empty();
+
+        int classOrdinal = ElementIds.getClassOrdinal(classId);
+        LongStream members = LongStream.range(0, element.get().getChildElements().size())
+                .map(member -> ElementIds.of(classOrdinal, (int) member));
+
+        return this.query.isClassQuery() ? LongStream.concat(LongStream.of(classId), members) : members;
+    }
+
+    private long classCost(long classes) {
+        return this.query.isMemberQuery() ? classes * MEMBERS_PER_CLASS : classes;
+    }
+
+    /**
+     * Way to find candidates of the query.
+     */
+    private abstract class Access {
+        long estimate;
+        // Prefix of inexact estimates.
+        String bound = "";
+
+        /**
+         * Estimates the amount of candidates, estimates greater than {@code limit} may be
+         * inexact.
+         */
+        abstract long estimate(long limit);
+
+        /**
+         * Returns true if candidates are ids of classes, which match members of these classes.
+         */
+        abstract boolean isClassLevel();
+
+        abstract LongStream candidates();
+
+        abstract LongPredicate filter();
+
+        abstract String name();
+
+        String describe() {
+            return this.name() + " (" + this.bound + this.estimate + " elements)";
+        }
+    }
+
+    private final class AnnotationAccess extends Access {
+        private final String annotation;
+
+        AnnotationAccess(String annotation) {
+            this.annotation = annotation;
+        }
+
+        @Override
+        long estimate(long limit) {
+            return this.estimate = QueryPlan.this.asmMeta.getAnnotationIndex().count(this.annotation);
+        }
+
+        @Override
+        boolean isClassLevel() {
+            return false;
+        }
+
+        @Override
+        LongStream candidates() {
+            return LongStream.of(QueryPlan.this.asmMeta.getAnnotatedIds(this.annotation));
+        }
+
+        @Override
+        LongPredicate filter() {
+            long[] ids = QueryPlan.this.asmMeta.getAnnotatedIds(this.annotation);
+
+            return id -> Arrays.binarySearch(ids, id) >= 0;
+        }
+
+        @Override
+        String name() {
+            return "annotation " + this.annotation;
+        }
+    }
+
+    private final class HierarchyAccess extends Access {
+        private final String supertype;
+        private long[] classIds;
+
+        HierarchyAccess(String supertype) {
+            this.supertype = supertype;
+        }
+
+        @Override
+        long estimate(long limit) {
+            return this.estimate = QueryPlan.this.classCost(this.getClassIds().length);
+        }
+
+        @Override
+        boolean isClassLevel() {
+            return true;
+        }
+
+        @Override
+        LongStream candidates() {
+            return LongStream.of(this.getClassIds());
+        }
+
+        @Override
+        LongPredicate filter() {
+            BitSet classOrdinals = new BitSet();
+
+            for (long classId : this.getClassIds())
+                classOrdinals.set(ElementIds.getClassOrdinal(classId));
+
+            return id -> classOrdinals.get(ElementIds.getClassOrdinal(id));
+        }
+
+        @Override
+        String name() {
+            return "subtypes of " + this.supertype;
+        }
+
+        private long[] getClassIds() {
+            if (this.classIds == null) {
+                this.classIds = QueryPlan.this.asmMeta.getHierarchyIndex().getSubtypes(this.supertype).stream()
+                        .mapToInt(QueryPlan.this.asmMeta::findClassOrdinal)
+                        .filter(classOrdinal -> classOrdinal != -1)
+                        .mapToLong(ElementIds::ofClass)
+                        .sorted()
+                        .toArray();
+            }
+
+            return this.classIds;
+        }
+    }
+
+    private final class PackageAccess extends Access {
+        private final String packageName;
+        private final boolean subPackages;
+
+        PackageAccess(String packageName, boolean subPackages) {
+            this.packageName = packageName;
+            this.subPackages = subPackages;
+        }
+
+        @Override
+        long estimate(long limit) {
+            long classLimit = limit == Long.MAX_VALUE ? Long.MAX_VALUE : limit / QueryPlan.this.classCost(1) + 1;
+            long classes = this.names().limit(classLimit).count();
+
+            this.bound = classes < classLimit ? "" : ">=";
+
+            return this.estimate = QueryPlan.this.classCost(classes);
+        }
+
+        @Override
+        boolean isClassLevel() {
+            return true;
+        }
+
+        @Override
+        LongStream candidates() {
+            return this.names()
+                    .mapToInt(QueryPlan.this.asmMeta::findClassOrdinal)
+                    .filter(classOrdinal -> classOrdinal != -1)
+                    .mapToLong(ElementIds::ofClass);
+        }
+
+        @Override
+        LongPredicate filter() {
+            String prefix = this.packageName.isEmpty() ? "" : this.packageName + ".";
+
+            return id -> {
+                String name = QueryPlan.this.asmMeta.getClassName(ElementIds.getClassOrdinal(id));
+
+                return name.startsWith(prefix) && (this.subPackages || name.indexOf('.', prefix.length()) == -1);
+            };
+        }
+
+        @Override
+        String name() {
+            return "package " + this.packageName + (this.subPackages ? ".**" : ".*");
+        }
+
+        private Stream<String> names() {
+            return QueryPlan.this.asmMeta.getPackageIndex().getNames(this.packageName, this.subPackages);
+        }
+    }
+
+    private final class ModifierAccess extends Access {
+        private final int modifiers;
+        private final int excludedModifiers;
+
+        ModifierAccess(int modifiers, int excludedModifiers) {
+            this.modifiers = modifiers;
+            this.excludedModifiers = excludedModifiers;
+        }
+
+        @Override
+        long estimate(long limit) {
+            this.bound = "<=";
+
+            return this.estimate = QueryPlan.this.asmMeta.getModifierIndex().estimate(QueryPlan.this.query.getType(), this.modifiers, this.excludedModifiers);
+        }
+
+        @Override
+        boolean isClassLevel() {
+            return false;
+        }
+
+        @Override
+        LongStream candidates() {
+            return LongStream.of(QueryPlan.this.asmMeta.getModifierIndex().find(QueryPlan.this.query.getType(), this.modifiers, this.excludedModifiers));
+        }
+
+        @Override
+        LongPredicate filter() {
+            Class<T> type = QueryPlan.this.query.getType();
+            ModifierIndex modifierIndex = QueryPlan.this.asmMeta.getModifierIndex();
+
+            return id -> modifierIndex.matches(id, type, this.modifiers, this.excludedModifiers);
+        }
+
+        @Override
+        String name() {
+            return "modifiers of " + QueryPlan.this.query.getType().getSimpleName() + " 0x" + Integer.toHexString(this.modifiers)
+                    + " set, 0x" + Integer.toHexString(this.excludedModifiers) + " clear";
+        }
+    }
+
+    private final class ScanAccess extends Access {
+
+        @Override
+        long estimate(long limit) {
+            return this.estimate = QueryPlan.this.classCost(QueryPlan.this.asmMeta.getClassCount());
+        }
+
+        @Override
+        boolean isClassLevel() {
+            return true;
+        }
+
+        @Override
+        LongStream candidates() {
+            return IntStream.range(0, QueryPlan.this.asmMeta.getClassCount()).mapToLong(ElementIds::ofClass);
+        }
+
+        @Override
+        LongPredicate filter() {
+            return id -> true;
+        }
+
+        @Override
+        String name() {
+            return "scan of all classes";
+        }
+    }
+}
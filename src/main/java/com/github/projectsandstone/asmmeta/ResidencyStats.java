@@ -0,0 +1,101 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta;
+
+/**
+ * Eviction counters of an {@link ASMMeta} with a {@link ASMMeta#setMaxResidentClasses(int)
+ * bounded} amount of resident classes.
+ */
+public final class ResidencyStats {
+
+    private final int maxResident;
+    private final int resident;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    public ResidencyStats(int maxResident, int resident, long hits, long misses, long evictions) {
+        this.maxResident = maxResident;
+        this.resident = resident;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public int getMaxResident() {
+        return this.maxResident;
+    }
+
+    /**
+     * Gets the amount of evictable classes currently held in memory.
+     *
+     * @return Amount of evictable classes held in memory.
+     */
+    public int getResident() {
+        return this.resident;
+    }
+
+    /**
+     * Gets the amount of lookups of resident classes.
+     *
+     * @return Amount of lookups of resident classes.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Gets the amount of lookups that read an evicted class again.
+     *
+     * @return Amount of lookups that read an evicted class again.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Gets the ratio of lookups served without reading a class again.
+     *
+     * @return Ratio of hits, or 1 if there were no lookups.
+     */
+    public double getHitRatio() {
+        long lookups = this.hits + this.misses;
+
+        return lookups == 0 ? 1.0 : (double) this.hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResidencyStats[maxResident=%d, resident=%d, hits=%d, misses=%d, evictions=%d, hitRatio=%.3f]",
+                this.maxResident, this.resident, this.hits, this.misses, this.evictions, this.getHitRatio());
+    }
+}
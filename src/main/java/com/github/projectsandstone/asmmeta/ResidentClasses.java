@@ -0,0 +1,152 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta;
+
+import com.github.projectsandstone.asmmeta.source.ClassEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the classes of a bounded {@link ASMMeta} in least recently used order, with the sources
+ * evicted classes are read again from.
+ */
+final class ResidentClasses {
+
+    private final int maximum;
+    // Access ordered, guarded by itself.
+    private final LinkedHashMap<String, Boolean> resident = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<String, ClassEntry> sources = new ConcurrentHashMap<>();
+    private final Set<String> evicted = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    ResidentClasses(int maximum) {
+        this.maximum = maximum;
+    }
+
+    int getMaximum() {
+        return this.maximum;
+    }
+
+    /**
+     * Records an access to the resident class {@code name}.
+     */
+    void hit(String name) {
+        this.hits.increment();
+
+        synchronized (this.resident) {
+            this.resident.get(name);
+        }
+    }
+
+    /**
+     * Gets the source of class {@code name}, or null if the class is not read from a recorded
+     * source.
+     */
+    ClassEntry getSource(String name) {
+        return this.sources.get(name);
+    }
+
+    /**
+     * Makes class {@code name} resident, {@code source} is null for classes decoded from
+     * snapshots.
+     *
+     * @return Classes to evict.
+     */
+    List<String> admit(String name, ClassEntry source) {
+        if (source != null)
+            this.sources.put(name, source);
+        else
+            this.sources.remove(name);
+
+        if (this.evicted.remove(name))
+            this.misses.increment();
+
+        List<String> evict = Collections.emptyList();
+
+        synchronized (this.resident) {
+            this.resident.put(name, Boolean.TRUE);
+
+            int excess = this.resident.size() - this.maximum;
+
+            if (excess > 0) {
+                evict = new ArrayList<>(excess);
+
+                for (Iterator<String> iterator = this.resident.keySet().iterator(); excess > 0; --excess) {
+                    evict.add(iterator.next());
+                    iterator.remove();
+                }
+            }
+        }
+
+        for (String evicted : evict) {
+            this.evicted.add(evicted);
+            this.evictions.increment();
+        }
+
+        return evict;
+    }
+
+    /**
+     * Stops tracking class {@code name}, so it is neither evicted nor reloaded.
+     */
+    void forget(String name) {
+        this.sources.remove(name);
+        this.evicted.remove(name);
+
+        synchronized (this.resident) {
+            this.resident.remove(name);
+        }
+    }
+
+    /**
+     * Gets the recorded sources, by class name.
+     */
+    Map<String, ClassEntry> getSources() {
+        return Collections.unmodifiableMap(this.sources);
+    }
+
+    ResidencyStats getStats() {
+        int resident;
+
+        synchronized (this.resident) {
+            resident = this.resident.size();
+        }
+
+        return new ResidencyStats(this.maximum, resident, this.hits.sum(), this.misses.sum(), this.evictions.sum());
+    }
+}
@@ -32,6 +32,10 @@ import com.github.projectsandstone.asmmeta.asm.ASMMetaClassVisitor;
 
 import org.objectweb.asm.ClassVisitor;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 public final class VisitorFactory {
     public static ASMMetaClassVisitor createVisitor(int api) {
         return new ASMMetaClassVisitor(api);
@@ -44,4 +48,20 @@ public final class VisitorFactory {
     public static ASMMetaClassVisitor createVisitor(int api, ClassVisitor parent, Resolvers resolvers) {
         return new ASMMetaClassVisitor(api, parent, resolvers);
     }
+
+    /**
+     * Creates a visitor that only retains members annotated with at least one of {@code
+     * annotations}. Classes are always retained.
+     *
+     * @param api         ASM api version.
+     * @param annotations Descriptors of annotations, such as {@code Lcom/acme/Inject;}.
+     * @return Sparse visitor.
+     */
+    public static ASMMetaClassVisitor createSparseVisitor(int api, Set<String> annotations) {
+        return createSparseVisitor(api, null, Resolvers.DEFAULT, annotations);
+    }
+
+    public static ASMMetaClassVisitor createSparseVisitor(int api, ClassVisitor parent, Resolvers resolvers, Set<String> annotations) {
+        return new ASMMetaClassVisitor(api, parent, resolvers, Collections.unmodifiableSet(new HashSet<>(annotations)));
+    }
 }
@@ -27,145 +27,340 @@
  */
 package com.github.projectsandstone.asmmeta.asm;
 
+import com.github.projectsandstone.asmmeta.data.AnnotationPayloads;
 import com.github.projectsandstone.asmmeta.element.AnnotationElement;
 import com.github.projectsandstone.asmmeta.element.ClassElement;
 import com.github.projectsandstone.asmmeta.element.ConstructorElement;
 import com.github.projectsandstone.asmmeta.element.FieldElement;
 import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.element.LazyClassElement;
 import com.github.projectsandstone.asmmeta.element.MetaElement;
 import com.github.projectsandstone.asmmeta.element.MethodElement;
 import com.github.projectsandstone.asmmeta.resolver.Resolvers;
+import com.github.projectsandstone.asmmeta.source.ClassEntry;
+import com.github.projectsandstone.asmmeta.util.SymbolTable;
 import com.github.projectsandstone.asmmeta.value.KeyedValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveArrayValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveValue;
 import com.github.projectsandstone.asmmeta.value.Value;
 import com.github.projectsandstone.asmmeta.data.MetaData;
 
 import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
+import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Visitor that reads a class into a {@link ClassElement}.
+ *
+ * Instances can be reused to read many classes: {@link #reset()} the visitor before visiting the
+ * next class. Field, method and annotation visitors are pooled by the class visitor, so the
+ * visitors returned by this class must not be used after their {@code visitEnd}.
+ */
 public class ASMMetaClassVisitor extends ClassVisitor {
+    private static final String[] NO_INTERFACES = new String[0];
+
     private final Resolvers resolvers;
+    private final Set<String> retainedAnnotations;
+    private final MemberFieldVisitor fieldVisitor = new MemberFieldVisitor();
+    private final MemberMethodVisitor methodVisitor = new MemberMethodVisitor();
+    private final List<ASMMetaAnnotationVisitor> annotationVisitors = new ArrayList<>(4);
     private MetaElement<?> current;
+    private int expectedMembers;
+    private ClassEntry lazySource;
+    private LazyClassElement.MemberLoader lazyLoader;
+    private boolean membersOnly;
+    private SymbolTable symbolTable;
+    private AnnotationPayloads annotationPayloads;
+    private LongAdder freezeSavings;
 
     public ASMMetaClassVisitor(int api) {
-        this(api, new Resolvers.Default());
+        this(api, Resolvers.DEFAULT);
     }
 
     public ASMMetaClassVisitor(int api, ClassVisitor cv) {
-        this(api, cv, new Resolvers.Default());
+        this(api, cv, Resolvers.DEFAULT);
     }
 
     public ASMMetaClassVisitor(int api, Resolvers resolvers) {
-        super(api);
-        this.resolvers = resolvers;
+        this(api, null, resolvers);
     }
 
     public ASMMetaClassVisitor(int api, ClassVisitor cv, Resolvers resolvers) {
+        this(api, cv, resolvers, null);
+    }
+
+    /**
+     * Creates a visitor that only retains fields, methods and constructors annotated with at least
+     * one of {@code retainedAnnotations}, other members are dropped when their visit ends.
+     *
+     * @param api                 ASM api version.
+     * @param cv                  Visitor to delegate to, may be null.
+     * @param resolvers           Element resolvers.
+     * @param retainedAnnotations Descriptors of annotations to retain members for, or {@code null}
+     *                            to retain all members.
+     */
+    public ASMMetaClassVisitor(int api, ClassVisitor cv, Resolvers resolvers, Set<String> retainedAnnotations) {
         super(api, cv);
         this.resolvers = resolvers;
+        this.retainedAnnotations = retainedAnnotations;
+    }
+
+    /**
+     * Gets the descriptors of annotations that members must carry to be retained, or {@code
+     * null} if all members are retained.
+     *
+     * @return Descriptors of annotations that members must carry to be retained.
+     */
+    public Set<String> getRetainedAnnotations() {
+        return this.retainedAnnotations;
+    }
+
+    /**
+     * Sets the table used to intern names and descriptors of created elements, or {@code null} to
+     * keep the strings read by ASM.
+     *
+     * @param symbolTable Symbol table.
+     */
+    public void setSymbolTable(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    public SymbolTable getSymbolTable() {
+        return this.symbolTable;
+    }
+
+    /**
+     * Sets the cache used to share identical annotation payloads, or {@code null} to not share
+     * payloads.
+     *
+     * @param annotationPayloads Annotation payload cache.
+     */
+    public void setAnnotationPayloads(AnnotationPayloads annotationPayloads) {
+        this.annotationPayloads = annotationPayloads;
+    }
+
+    public AnnotationPayloads getAnnotationPayloads() {
+        return this.annotationPayloads;
+    }
+
+    /**
+     * Sets the counter of bytes saved by freezing the lists of created elements, or {@code null}
+     * to not count them.
+     *
+     * @param freezeSavings Counter of saved bytes.
+     */
+    public void setFreezeSavings(LongAdder freezeSavings) {
+        this.freezeSavings = freezeSavings;
+    }
+
+    public LongAdder getFreezeSavings() {
+        return this.freezeSavings;
+    }
+
+    private void addFreezeSavings(long saved) {
+        LongAdder freezeSavings = this.freezeSavings;
+
+        if (freezeSavings != null)
+            freezeSavings.add(saved);
+    }
+
+    private String intern(String string) {
+        SymbolTable symbolTable = this.symbolTable;
+
+        return symbolTable == null ? string : symbolTable.intern(string);
+    }
+
+    /**
+     * Resets this visitor so it can visit another class.
+     */
+    public void reset() {
+        this.current = null;
+        this.expectedMembers = 0;
+        this.lazySource = null;
+        this.lazyLoader = null;
+        this.membersOnly = false;
+    }
+
+    /**
+     * Configures this visitor to only read the header (name, super class, interfaces and
+     * annotations) of the next class into a {@link LazyClassElement}, which reads its members
+     * from {@code source} with {@code loader} when needed.
+     *
+     * @param source Source of class bytes retained by the lazy element.
+     * @param loader Loader of members.
+     */
+    public void readHeader(ClassEntry source, LazyClassElement.MemberLoader loader) {
+        this.lazySource = source;
+        this.lazyLoader = loader;
+    }
+
+    /**
+     * Configures this visitor to only read members of the next class into {@code element}, the
+     * header of the class is ignored.
+     *
+     * @param element Element to add members to.
+     */
+    public void readMembers(MetaElement<?> element) {
+        this.current = element;
+        this.membersOnly = true;
+    }
+
+    /**
+     * Sets the amount of fields and methods of the next visited class, used to presize the child
+     * list of the class element.
+     *
+     * @param expectedMembers Amount of fields and methods.
+     * @see #countMembers(ClassReader)
+     */
+    public void setExpectedMembers(int expectedMembers) {
+        this.expectedMembers = expectedMembers;
+    }
+
+    /**
+     * Counts fields and methods of the class read by {@code classReader}, without parsing them.
+     *
+     * @param classReader Class reader.
+     * @return Amount of fields and methods.
+     */
+    public static int countMembers(ClassReader classReader) {
+        int index = classReader.header;
+
+        index += 8 + 2 * classReader.readUnsignedShort(index + 6);
+
+        int fields = classReader.readUnsignedShort(index);
+        index += 2;
+
+        for (int i = 0; i < fields; ++i) {
+            int attributes = classReader.readUnsignedShort(index + 6);
+            index += 8;
+
+            for (int j = 0; j < attributes; ++j)
+                index += 6 + classReader.readInt(index + 2);
+        }
+
+        return fields + classReader.readUnsignedShort(index);
     }
 
     private AnnotationElement createAnnotationElement(MetaElement<?> metaElement, String desc) {
-        return new AnnotationElement(metaElement, 0, desc, desc, new MetaData(), this.resolvers.getAnnotationResolver());
+        desc = this.intern(desc);
+
+        // Annotation usages have no annotations, metadata is shared.
+        return new AnnotationElement(metaElement, 0, desc, desc, MetaData.EMPTY, this.resolvers.getAnnotationResolver());
+    }
+
+    private ASMMetaAnnotationVisitor annotationVisitor(int depth, AnnotationVisitor av, MetaElement<?> element, List<Value<?>> values, boolean owner) {
+        List<ASMMetaAnnotationVisitor> visitors = this.annotationVisitors;
+
+        // Visitors of the same depth never overlap: an annotation (or array) is visited until its end
+        // before the next one starts.
+        if (depth == visitors.size())
+            visitors.add(new ASMMetaAnnotationVisitor(this.api, depth));
+
+        return visitors.get(depth).reset(av, element, values, owner);
+    }
+
+    private AnnotationVisitor visitAnnotation(MetaElement<?> element, String desc, AnnotationVisitor av) {
+        AnnotationElement annotationElement = this.createAnnotationElement(element, desc);
+
+        element.getMetaData().getAnnotationList().add(annotationElement);
+
+        return this.annotationVisitor(0, av, annotationElement, annotationElement.getValues(), true);
     }
 
     @Override
     public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
 
-        ClassElement classElement = new ClassElement(
-                this.current,
-                access,
-                name,
-                "",
-                new MetaData(),
-                this.resolvers.getClassResolver(),
-                superName,
-                interfaces);
+        if (this.membersOnly)
+            return;
+
+        SymbolTable symbolTable = this.symbolTable;
+
+        if (symbolTable != null) {
+            name = symbolTable.intern(name);
+            superName = symbolTable.intern(superName);
+            symbolTable.internAll(interfaces);
+        }
+
+        ClassElement classElement;
+
+        if (this.lazyLoader != null && this.current == null) {
+            classElement = new LazyClassElement(
+                    null,
+                    access,
+                    name,
+                    "",
+                    new MetaData(),
+                    this.resolvers.getClassResolver(),
+                    superName,
+                    interfaces,
+                    this.lazySource,
+                    this.lazyLoader);
+        } else {
+            classElement = new ClassElement(
+                    this.current,
+                    access,
+                    name,
+                    "",
+                    new MetaData(),
+                    this.resolvers.getClassResolver(),
+                    superName,
+                    interfaces);
+        }
+
+        // Sparse visitors drop most members, presizing would only waste space.
+        if (this.current == null && this.retainedAnnotations == null && this.expectedMembers > 0)
+            classElement.ensureChildCapacity(this.expectedMembers);
 
         this.addToEnclosing(classElement);
     }
 
     @Override
     public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-        AnnotationElement annotationElement = createAnnotationElement(this.current, desc);
+        if (this.membersOnly)
+            return super.visitAnnotation(desc, visible);
 
-        this.current.getMetaData().getAnnotationList().add(annotationElement);
-
-        return new ASMMetaAnnotationVisitor(this.api,
-                super.visitAnnotation(desc, visible),
-                annotationElement,
-                annotationElement.getValues()
-        );
+        return this.visitAnnotation(this.current, desc, super.visitAnnotation(desc, visible));
     }
 
     @Override
     public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+        if (this.lazyLoader != null)
+            return super.visitField(access, name, desc, signature, value);
 
+        FieldElement fieldElement = new FieldElement(this.current, access, this.intern(name), this.intern(desc), new MetaData(), this.resolvers.getFieldResolver());
 
-        FieldElement fieldElement = new FieldElement(this.current, access, name, desc, new MetaData(), this.resolvers.getFieldResolver());
-
-        this.addToEnclosing(fieldElement);
-
-        return new FieldVisitor(Opcodes.ASM5, super.visitField(access, name, desc, signature, value)) {
-            @Override
-            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                AnnotationElement annotationElement = createAnnotationElement(fieldElement, desc);
+        this.beginMember(fieldElement);
 
-                fieldElement.getMetaData().getAnnotationList().add(annotationElement);
-
-                return new ASMMetaAnnotationVisitor(this.api,
-                        super.visitAnnotation(desc, visible),
-                        annotationElement,
-                        annotationElement.getValues()
-                );
-            }
-
-            @Override
-            public void visitEnd() {
-                fieldElement.immutate();
-                super.visitEnd();
-            }
-        };
+        return this.fieldVisitor.reset(fieldElement, super.visitField(access, name, desc, signature, value));
     }
 
     @Override
     public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        if (this.lazyLoader != null)
+            return super.visitMethod(access, name, desc, signature, exceptions);
+
         MetaElement<?> mElement;
+        String elementName = this.intern(name);
+        String elementDesc = this.intern(desc);
 
         if (name.equals("<init>") || name.equals("<clinit>")) {
-            mElement = new ConstructorElement(this.current, access, name, signature, new MetaData(), this.resolvers.getConstructorResolver());
+            mElement = new ConstructorElement(this.current, access, elementName, elementDesc, new MetaData(), this.resolvers.getConstructorResolver());
         } else {
-            mElement = new MethodElement(this.current, access, name, signature, new MetaData(), this.resolvers.getMethodResolver());
+            mElement = new MethodElement(this.current, access, elementName, elementDesc, new MetaData(), this.resolvers.getMethodResolver());
         }
 
-        this.addToEnclosing(mElement);
-
-        return new MethodVisitor(Opcodes.ASM5, super.visitMethod(access, name, desc, signature, exceptions)) {
-            @Override
-            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                AnnotationElement annotationElement = createAnnotationElement(mElement, desc);
-
-                mElement.getMetaData().getAnnotationList().add(annotationElement);
-
-                return new ASMMetaAnnotationVisitor(this.api,
-                        super.visitAnnotation(desc, visible),
-                        annotationElement,
-                        annotationElement.getValues()
-                );
-            }
+        this.beginMember(mElement);
 
-            @Override
-            public void visitEnd() {
-                mElement.immutate();
-                super.visitEnd();
-            }
-        };
+        return this.methodVisitor.reset(mElement, super.visitMethod(access, name, desc, signature, exceptions));
     }
 
     @Override
@@ -173,12 +368,34 @@ public class ASMMetaClassVisitor extends ClassVisitor {
         MetaElement<?> current = this.current;
 
         if (current != null) {
-            current.immutate();
+            this.addFreezeSavings(current.immutate());
         }
 
         super.visitEnd();
     }
 
+    private void beginMember(MetaElement<?> member) {
+        // Sparse members are only added once all their annotations are known.
+        if (this.retainedAnnotations == null)
+            this.addToEnclosing(member);
+    }
+
+    private void endMember(MetaElement<?> member) {
+        this.addFreezeSavings(member.immutate());
+
+        if (this.retainedAnnotations != null && this.isRetained(member))
+            this.addToEnclosing(member);
+    }
+
+    private boolean isRetained(MetaElement<?> member) {
+        for (MetaElement<Annotation> annotation : member.getMetaData().getAnnotationList()) {
+            if (this.retainedAnnotations.contains(annotation.getDesc()))
+                return true;
+        }
+
+        return false;
+    }
+
     public MetaElement<?> getCurrent() {
         return this.current;
     }
@@ -193,22 +410,87 @@ public class ASMMetaClassVisitor extends ClassVisitor {
         }
     }
 
+    private final class MemberFieldVisitor extends FieldVisitor {
+        private MetaElement<?> element;
+
+        MemberFieldVisitor() {
+            super(ASMMetaClassVisitor.this.api);
+        }
+
+        MemberFieldVisitor reset(MetaElement<?> element, FieldVisitor fv) {
+            this.element = element;
+            this.fv = fv;
+            return this;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            return ASMMetaClassVisitor.this.visitAnnotation(this.element, desc, super.visitAnnotation(desc, visible));
+        }
+
+        @Override
+        public void visitEnd() {
+            ASMMetaClassVisitor.this.endMember(this.element);
+            super.visitEnd();
+            this.element = null;
+        }
+    }
+
+    private final class MemberMethodVisitor extends MethodVisitor {
+        private MetaElement<?> element;
+
+        MemberMethodVisitor() {
+            super(ASMMetaClassVisitor.this.api);
+        }
+
+        MemberMethodVisitor reset(MetaElement<?> element, MethodVisitor mv) {
+            this.element = element;
+            this.mv = mv;
+            return this;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            return ASMMetaClassVisitor.this.visitAnnotation(this.element, desc, super.visitAnnotation(desc, visible));
+        }
+
+        @Override
+        public void visitEnd() {
+            ASMMetaClassVisitor.this.endMember(this.element);
+            super.visitEnd();
+            this.element = null;
+        }
+    }
 
     private final class ASMMetaAnnotationVisitor extends AnnotationVisitor {
-        private final MetaElement<?> element;
-        private final List<Value<?>> values;
+        private final int depth;
+        private MetaElement<?> element;
+        private List<Value<?>> values;
+
+        /**
+         * True if this visitor visits the values of {@link #element}, false if it visits the values
+         * of an array of {@link #element}.
+         */
+        private boolean owner;
+
+        ASMMetaAnnotationVisitor(int api, int depth) {
+            super(api);
+            this.depth = depth;
+        }
 
-        public ASMMetaAnnotationVisitor(int api, AnnotationVisitor av, MetaElement<?> element, List<Value<?>> values) {
-            super(api, av);
+        ASMMetaAnnotationVisitor reset(AnnotationVisitor av, MetaElement<?> element, List<Value<?>> values, boolean owner) {
+            this.av = av;
             this.element = element;
             this.values = values;
+            this.owner = owner;
+            return this;
         }
 
         public Value<?> createValue(String name, Object value) {
             if (name == null)
                 return new Value<>(value);
             else
-                return new KeyedValue<>(name, value);
+                return new KeyedValue<>(intern(name), value);
         }
 
         @Override
@@ -217,28 +499,17 @@ public class ASMMetaClassVisitor extends ClassVisitor {
             Value<?> createdValue;
 
             if(!(value instanceof Type)) {
-                boolean array = value.getClass().isArray();
-
-                if(!array) {
-                    createdValue = this.createValue(name, value);
+                if (name != null && PrimitiveValue.isPrimitive(value)) {
+                    createdValue = new PrimitiveValue(intern(name), value);
+                } else if (name != null && PrimitiveArrayValue.isPrimitiveArray(value)) {
+                    // ASM reads non-empty primitive arrays as arrays, they are kept as is.
+                    createdValue = new PrimitiveArrayValue(intern(name), value);
                 } else {
-
-                    AnnotationVisitor annotationVisitor = this.visitArray(name);
-
-                    Object[] values = (Object[]) value;
-
-                    for (Object o : values) {
-                        annotationVisitor.visit(null, o);
-                    }
-
-                    annotationVisitor.visitEnd();
-
-                    return;
+                    createdValue = this.createValue(name, value);
                 }
-
             } else {
                 Type type = (Type) value;
-                createdValue = this.createValue(name, new ClassElement(this.element, 0, type.getInternalName(), "", new MetaData(), resolvers.getClassResolver(), null, new String[0]));
+                createdValue = this.createValue(name, new ClassElement(this.element, 0, intern(type.getInternalName()), "", new MetaData(), resolvers.getClassResolver(), null, NO_INTERFACES));
             }
 
             this.values.add(createdValue);
@@ -254,11 +525,11 @@ public class ASMMetaClassVisitor extends ClassVisitor {
 
             this.values.add(createdValue);
 
-            return new ASMMetaAnnotationVisitor(
-                    this.api,
+            return annotationVisitor(this.depth + 1,
                     super.visitAnnotation(name, desc),
                     annotationElement,
-                    annotationElement.getValues());
+                    annotationElement.getValues(),
+                    true);
         }
 
         @Override
@@ -268,7 +539,7 @@ public class ASMMetaClassVisitor extends ClassVisitor {
 
             this.values.add(this.createValue(name, list));
 
-            return new ASMMetaAnnotationVisitor(this.api, super.visitArray(name), this.element, list);
+            return annotationVisitor(this.depth + 1, super.visitArray(name), this.element, list, false);
         }
 
         @Override
@@ -278,8 +549,19 @@ public class ASMMetaClassVisitor extends ClassVisitor {
 
         @Override
         public void visitEnd() {
-            this.element.immutate();
+            if (this.owner) {
+                AnnotationPayloads annotationPayloads = ASMMetaClassVisitor.this.annotationPayloads;
+
+                if (annotationPayloads != null && this.element instanceof AnnotationElement)
+                    ASMMetaClassVisitor.this.addFreezeSavings(((AnnotationElement) this.element).immutate(annotationPayloads));
+                else
+                    ASMMetaClassVisitor.this.addFreezeSavings(this.element.immutate());
+            }
+
             super.visitEnd();
+
+            this.element = null;
+            this.values = null;
         }
     }
 }
@@ -0,0 +1,228 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.asm;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests whether a class file may carry one of a set of annotations by scanning only its constant
+ * pool for the annotation descriptors, without parsing the class.
+ *
+ * Annotation descriptors are stored as {@code CONSTANT_Utf8} entries, so a class whose constant
+ * pool does not contain any of them cannot be annotated with them (in any of its elements). The
+ * opposite is not true: a class may contain a descriptor without using it as annotation, such
+ * classes are accepted.
+ */
+public final class AnnotationPrefilter {
+
+    private final Set<String> descriptors;
+
+    /**
+     * Modified UTF-8 encoding of descriptors indexed by encoded length.
+     */
+    private final byte[][][] byLength;
+
+    /**
+     * Creates a prefilter of annotation {@code descriptors}, such as {@code Lcom/acme/Inject;}.
+     *
+     * @param descriptors Annotation descriptors.
+     */
+    public AnnotationPrefilter(Collection<String> descriptors) {
+        this.descriptors = Collections.unmodifiableSet(new LinkedHashSet<>(descriptors));
+
+        byte[][] encoded = this.descriptors.stream()
+                .map(AnnotationPrefilter::encode)
+                .toArray(byte[][]::new);
+
+        int max = Arrays.stream(encoded).mapToInt(bytes -> bytes.length).max().orElse(0);
+
+        this.byLength = new byte[max + 1][][];
+
+        for (byte[] bytes : encoded) {
+            byte[][] current = this.byLength[bytes.length];
+
+            current = current == null ? new byte[1][] : Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = bytes;
+
+            this.byLength[bytes.length] = current;
+        }
+    }
+
+    @SafeVarargs
+    public static AnnotationPrefilter of(Class<? extends Annotation>... annotationTypes) {
+        List<String> descriptors = new ArrayList<>(annotationTypes.length);
+
+        for (Class<? extends Annotation> type : annotationTypes)
+            descriptors.add("L" + type.getName().replace('.', '/') + ";");
+
+        return new AnnotationPrefilter(descriptors);
+    }
+
+    public Set<String> getDescriptors() {
+        return this.descriptors;
+    }
+
+    public boolean test(byte[] bytes) {
+        return this.test(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Returns true if the constant pool of the class in range {@code [offset, offset + length)}
+     * of {@code bytes} contains any of the descriptors. Classes that cannot be scanned (unknown
+     * constant pool tags or malformed data) are accepted, so they are left to the class parser.
+     *
+     * @param bytes  Array containing the class bytes.
+     * @param offset Offset of the class in {@code bytes}.
+     * @param length Length of the class.
+     * @return True if the class may be annotated with one of the descriptors.
+     */
+    public boolean test(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+
+        if (length < 10 || readInt(bytes, offset) != 0xCAFEBABE)
+            return true;
+
+        int count = readUnsignedShort(bytes, offset + 8);
+        int index = offset + 10;
+
+        for (int i = 1; i < count; ++i) {
+            if (index >= end)
+                return true;
+
+            int tag = bytes[index];
+
+            switch (tag) {
+                case 1: // Utf8
+                    if (index + 3 > end)
+                        return true;
+
+                    int size = readUnsignedShort(bytes, index + 1);
+
+                    if (this.matches(bytes, index + 3, size))
+                        return true;
+
+                    index += 3 + size;
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    index += 5;
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    index += 9;
+                    ++i;
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    index += 3;
+                    break;
+                case 15: // MethodHandle
+                    index += 4;
+                    break;
+                default:
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean matches(byte[] bytes, int offset, int size) {
+        if (size >= this.byLength.length)
+            return false;
+
+        byte[][] candidates = this.byLength[size];
+
+        if (candidates == null || offset + size > bytes.length)
+            return false;
+
+        for (byte[] candidate : candidates) {
+            int i = 0;
+
+            while (i < size && candidate[i] == bytes[offset + i])
+                ++i;
+
+            if (i == size)
+                return true;
+        }
+
+        return false;
+    }
+
+    private static int readInt(byte[] bytes, int index) {
+        return ((bytes[index] & 0xFF) << 24)
+                | ((bytes[index + 1] & 0xFF) << 16)
+                | ((bytes[index + 2] & 0xFF) << 8)
+                | (bytes[index + 3] & 0xFF);
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int index) {
+        return ((bytes[index] & 0xFF) << 8) | (bytes[index + 1] & 0xFF);
+    }
+
+    /**
+     * Encodes {@code string} in the modified UTF-8 used by class files.
+     */
+    private static byte[] encode(String string) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(string.length());
+
+        for (int i = 0; i < string.length(); ++i) {
+            char c = string.charAt(i);
+
+            if (c >= 0x0001 && c <= 0x007F) {
+                out.write(c);
+            } else if (c <= 0x07FF) {
+                out.write(0xC0 | ((c >> 6) & 0x1F));
+                out.write(0x80 | (c & 0x3F));
+            } else {
+                out.write(0xE0 | ((c >> 12) & 0x0F));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+
+        return out.toByteArray();
+    }
+}
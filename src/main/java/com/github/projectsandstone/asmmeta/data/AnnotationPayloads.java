@@ -0,0 +1,120 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.data;
+
+import com.github.projectsandstone.asmmeta.value.PrimitiveArrayValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveValue;
+import com.github.projectsandstone.asmmeta.value.Value;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonicalization cache of annotation payloads (descriptor and values), shared by identical
+ * annotations of an index. Each annotation keeps its own element, so the enclosing element of
+ * each site is preserved, but identical occurrences share one immutable values list.
+ *
+ * Only payloads made of primitives, strings and arrays of them are shared: elements in values
+ * (classes, enums and nested annotations) refer to their enclosing site.
+ */
+public final class AnnotationPayloads {
+
+    private final Map<Payload, List<Value<?>>> payloads = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the canonical instance of the frozen {@code values} of annotation {@code desc}.
+     *
+     * @param desc   Annotation descriptor.
+     * @param values Frozen annotation values.
+     * @return Canonical values, or {@code values} if they cannot be shared.
+     */
+    public List<Value<?>> canonicalize(String desc, List<Value<?>> values) {
+        if (values.isEmpty() || !AnnotationPayloads.isShareable(values))
+            return values;
+
+        List<Value<?>> canonical = this.payloads.putIfAbsent(new Payload(desc, values), values);
+
+        return canonical != null ? canonical : values;
+    }
+
+    /**
+     * Gets the amount of distinct payloads.
+     *
+     * @return Amount of distinct payloads.
+     */
+    public int size() {
+        return this.payloads.size();
+    }
+
+    private static boolean isShareable(List<Value<?>> values) {
+        for (Value<?> value : values) {
+            if (value instanceof PrimitiveArrayValue || value instanceof PrimitiveValue)
+                continue;
+
+            Object o = value.getValue();
+
+            if (o instanceof List<?>) {
+                @SuppressWarnings("unchecked")
+                List<Value<?>> array = (List<Value<?>>) o;
+
+                if (!AnnotationPayloads.isShareable(array))
+                    return false;
+            } else if (!(o instanceof String || o instanceof Number || o instanceof Boolean || o instanceof Character)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static final class Payload {
+        private final String desc;
+        private final List<Value<?>> values;
+        private final int hash;
+
+        Payload(String desc, List<Value<?>> values) {
+            this.desc = desc;
+            this.values = values;
+            this.hash = 31 * desc.hashCode() + values.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Payload
+                    && ((Payload) obj).hash == this.hash
+                    && ((Payload) obj).desc.equals(this.desc)
+                    && ((Payload) obj).values.equals(this.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
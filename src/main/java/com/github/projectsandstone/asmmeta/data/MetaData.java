@@ -28,6 +28,7 @@
 package com.github.projectsandstone.asmmeta.data;
 
 import com.github.projectsandstone.asmmeta.element.MetaElement;
+import com.github.projectsandstone.asmmeta.util.FrozenList;
 
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
@@ -36,17 +37,31 @@ import java.util.List;
 
 public class MetaData implements IMetaData {
 
-    private List<MetaElement<Annotation>> annotationList = new ArrayList<>();
+    /**
+     * Shared immutable metadata without annotations.
+     */
+    public static final MetaData EMPTY = new MetaData(Collections.emptyList());
+
+    private List<MetaElement<Annotation>> annotationList;
 
     public MetaData() {
+        this(new ArrayList<>());
+    }
+
+    private MetaData(List<MetaElement<Annotation>> annotationList) {
+        this.annotationList = annotationList;
     }
 
     public List<MetaElement<Annotation>> getAnnotationList() {
         return this.annotationList;
     }
 
-    public void immutate() {
-        this.annotationList = Collections.unmodifiableList(this.getAnnotationList());
+    public long immutate() {
+        long saved = FrozenList.estimateSavedBytes(this.annotationList);
+
+        this.annotationList = FrozenList.freeze(this.annotationList);
+
+        return saved;
     }
 
     @Override
@@ -28,12 +28,13 @@
 package com.github.projectsandstone.asmmeta.element;
 
 import com.github.projectsandstone.asmmeta.value.Value;
+import com.github.projectsandstone.asmmeta.data.AnnotationPayloads;
 import com.github.projectsandstone.asmmeta.data.MetaData;
+import com.github.projectsandstone.asmmeta.util.FrozenList;
 import com.github.projectsandstone.asmmeta.util.StringUtils;
 
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 
@@ -52,9 +53,27 @@ public class AnnotationElement extends MetaElement<Annotation> implements IAnnot
     }
 
     @Override
-    public void immutate() {
-        this.getMetaData().immutate();
-        this.values = Collections.unmodifiableList(this.values);
+    public long immutate() {
+        long saved = this.getMetaData().immutate() + this.immutateChildren() + FrozenList.estimateSavedBytes(this.values);
+
+        this.values = FrozenList.freezeValues(this.values);
+
+        return saved;
+    }
+
+    /**
+     * Makes this annotation immutable and replaces its values with the identical values shared
+     * by other annotations of {@code payloads}.
+     *
+     * @param payloads Canonical annotation payloads.
+     * @return Estimated amount of bytes saved by freezing.
+     */
+    public long immutate(AnnotationPayloads payloads) {
+        long saved = this.immutate();
+
+        this.values = payloads.canonicalize(this.getDesc(), this.values);
+
+        return saved;
     }
 
     @Override
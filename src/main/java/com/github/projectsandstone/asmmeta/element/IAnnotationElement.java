@@ -27,9 +27,13 @@
  */
 package com.github.projectsandstone.asmmeta.element;
 
+import com.github.projectsandstone.asmmeta.value.KeyedValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveArrayValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveValue;
 import com.github.projectsandstone.asmmeta.value.Value;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
 import java.util.List;
 
 public interface IAnnotationElement extends IMetaElement<Annotation> {
@@ -51,6 +55,109 @@ public interface IAnnotationElement extends IMetaElement<Annotation> {
      * - Primitive types or String - A boxed version of primitive type or a String.
      *
      * - Another List of {@link Value} - another list of values, denoting an array.
+     *
+     * Primitive values are stored as {@link PrimitiveValue} and primitive arrays as {@link
+     * PrimitiveArrayValue}, use the typed accessors to read them without boxing.
      */
     List<Value<?>> getValues();
+
+    /**
+     * Gets the value of {@code key}.
+     *
+     * @param key Key of the value.
+     * @return Value of {@code key}, or null if the annotation does not declare the value.
+     */
+    default Value<?> getValue(String key) {
+        for (Value<?> value : this.getValues()) {
+            if (value instanceof KeyedValue<?, ?> && key.equals(((KeyedValue<?, ?>) value).getKey()))
+                return value;
+        }
+
+        return null;
+    }
+
+    default boolean getBoolean(String key, boolean defaultValue) {
+        Value<?> value = this.getValue(key);
+
+        if (value instanceof PrimitiveValue)
+            return ((PrimitiveValue) value).getBoolean();
+
+        return value != null ? (Boolean) value.getValue() : defaultValue;
+    }
+
+    default char getChar(String key, char defaultValue) {
+        Value<?> value = this.getValue(key);
+
+        if (value instanceof PrimitiveValue)
+            return ((PrimitiveValue) value).getChar();
+
+        return value != null ? (Character) value.getValue() : defaultValue;
+    }
+
+    default int getInt(String key, int defaultValue) {
+        Value<?> value = this.getValue(key);
+
+        if (value instanceof PrimitiveValue)
+            return ((PrimitiveValue) value).getInt();
+
+        return value != null ? ((Number) value.getValue()).intValue() : defaultValue;
+    }
+
+    default long getLong(String key, long defaultValue) {
+        Value<?> value = this.getValue(key);
+
+        if (value instanceof PrimitiveValue)
+            return ((PrimitiveValue) value).getLong();
+
+        return value != null ? ((Number) value.getValue()).longValue() : defaultValue;
+    }
+
+    default double getDouble(String key, double defaultValue) {
+        Value<?> value = this.getValue(key);
+
+        if (value instanceof PrimitiveValue)
+            return ((PrimitiveValue) value).getDouble();
+
+        return value != null ? ((Number) value.getValue()).doubleValue() : defaultValue;
+    }
+
+    default String getString(String key, String defaultValue) {
+        Value<?> value = this.getValue(key);
+
+        return value != null ? (String) value.getValue() : defaultValue;
+    }
+
+    /**
+     * Gets a copy of the primitive array of {@code key}.
+     *
+     * @param key       Key of the value.
+     * @param arrayType Type of the array, for example {@code int[].class}.
+     * @param <A>       Type of the array.
+     * @return Copy of the array, or null if the annotation does not declare the value.
+     * @throws ClassCastException If the value is not an array of type {@code arrayType}.
+     */
+    default <A> A getArray(String key, Class<A> arrayType) {
+        Value<?> value = this.getValue(key);
+
+        if (value == null)
+            return null;
+
+        if (value instanceof PrimitiveArrayValue) {
+            Object array = ((PrimitiveArrayValue) value).getArray();
+            int length = Array.getLength(array);
+            Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+
+            System.arraycopy(array, 0, copy, 0, length);
+
+            return arrayType.cast(copy);
+        }
+
+        List<?> values = (List<?>) value.getValue();
+        Object array = Array.newInstance(arrayType.getComponentType(), values.size());
+
+        for (int i = 0; i < values.size(); ++i)
+            Array.set(array, i, ((Value<?>) values.get(i)).getValue());
+
+        return arrayType.cast(array);
+    }
 }
@@ -0,0 +1,140 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.element;
+
+import com.github.projectsandstone.asmmeta.data.MetaData;
+import com.github.projectsandstone.asmmeta.source.ClassEntry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * {@link ClassElement} read without its members. Fields, methods and constructors are read from
+ * the retained {@link ClassEntry source} on first access to {@link #getChildElements()}, then the
+ * source is released.
+ */
+public class LazyClassElement extends ClassElement {
+
+    private final MemberLoader loader;
+    private ClassEntry source;
+    private volatile boolean materialized;
+    private boolean materializing;
+
+    public LazyClassElement(IMetaElement<?> enclosing,
+                            int modifiers,
+                            String name,
+                            String desc,
+                            MetaData metaData,
+                            Function<IMetaElement<Class<?>>, Class<?>> resolver,
+                            String superClass,
+                            String[] interfaces,
+                            ClassEntry source,
+                            MemberLoader loader) {
+        super(enclosing, modifiers, name, desc, metaData, resolver, superClass, interfaces);
+        this.source = source;
+        this.loader = loader;
+    }
+
+    /**
+     * Returns true if members were already read.
+     *
+     * @return True if members were already read.
+     */
+    public boolean isMaterialized() {
+        return this.materialized;
+    }
+
+    /**
+     * Gets the retained source of members.
+     *
+     * @return Source of members, or null if members were already read.
+     */
+    public ClassEntry getSource() {
+        return this.source;
+    }
+
+    @Override
+    public List<IMetaElement<?>> getChildElements() {
+        if (!this.materialized)
+            this.materialize();
+
+        return super.getChildElements();
+    }
+
+    private synchronized void materialize() {
+        // The loader adds members through getChildElements()
+        if (this.materialized || this.materializing)
+            return;
+
+        this.materializing = true;
+        boolean loaded = false;
+
+        try {
+            this.loader.loadMembers(this, this.source);
+            loaded = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read members of '" + this.getName() + "' from '" + this.source + "'.", e);
+        } finally {
+            this.materializing = false;
+
+            // Members read before the failure would be added again by the next attempt.
+            if (!loaded)
+                this.discardChildren();
+        }
+
+        this.source = null;
+        this.materialized = true;
+    }
+
+    @Override
+    public long immutate() {
+        // Called once for the header and once after members are read.
+        if (this.materializing)
+            return this.immutateChildren();
+        else
+            return this.getMetaData().immutate();
+    }
+
+    /**
+     * Reads members of lazy class elements.
+     */
+    @FunctionalInterface
+    public interface MemberLoader {
+
+        /**
+         * Reads members of {@code element} from {@code source} and adds them to {@code element}.
+         *
+         * @param element Element to add members to.
+         * @param source  Source of class bytes.
+         * @throws IOException If {@code source} cannot be read.
+         */
+        void loadMembers(LazyClassElement element, ClassEntry source) throws IOException;
+    }
+}
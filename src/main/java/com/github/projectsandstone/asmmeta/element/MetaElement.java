@@ -28,9 +28,11 @@
 package com.github.projectsandstone.asmmeta.element;
 
 import com.github.projectsandstone.asmmeta.data.MetaData;
+import com.github.projectsandstone.asmmeta.resolver.WeakResolvers;
+import com.github.projectsandstone.asmmeta.util.FrozenList;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 
@@ -43,7 +45,8 @@ public class MetaElement<T> implements IMetaElement<T> {
     private final MetaData metaData;
     private final Function<IMetaElement<T>, T> resolver;
     private List<IMetaElement<?>> child = new ArrayList<>();
-    private T cached = null;
+    // Resolved instance, or a WeakReference to it for weak resolvers (see WeakResolvers).
+    private Object cached = null;
 
     public MetaElement(IMetaElement<?> enclosing,
                        int modifiers,
@@ -91,11 +94,35 @@ public class MetaElement<T> implements IMetaElement<T> {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public T getResolvedInstance() {
-        if(this.cached == null)
-            this.cached = this.resolve();
+        Object cached = this.cached;
 
-        return this.cached;
+        if (cached instanceof WeakReference<?>) {
+            T resolved = ((WeakReference<T>) cached).get();
+
+            if (resolved != null)
+                return resolved;
+        } else if (cached != null) {
+            return (T) cached;
+        }
+
+        T resolved = this.resolve();
+
+        if (resolved != null && WeakResolvers.isWeak(this.resolver)) {
+            WeakReference<T> reference = WeakResolvers.cache(this, resolved);
+
+            this.cached = reference;
+
+            // May be an equal instance resolved by another element.
+            T anchored = reference.get();
+
+            return anchored != null ? anchored : resolved;
+        } else {
+            this.cached = resolved;
+        }
+
+        return resolved;
     }
 
     @Override
@@ -103,9 +130,43 @@ public class MetaElement<T> implements IMetaElement<T> {
         return this.child;
     }
 
-    public void immutate() {
-        this.getMetaData().immutate();
-        this.child = Collections.unmodifiableList(this.getChildElements());
+    /**
+     * Ensures that the child list can hold {@code capacity} elements without growing.
+     *
+     * @param capacity Expected amount of children.
+     */
+    public void ensureChildCapacity(int capacity) {
+        if (!(this.child instanceof ArrayList<?>))
+            return;
+
+        if (this.child.isEmpty())
+            this.child = FrozenList.withCapacity(capacity);
+        else
+            ((ArrayList<?>) this.child).ensureCapacity(capacity);
+    }
+
+    /**
+     * Makes this element immutable, freezing its lists.
+     *
+     * @return Estimated amount of bytes saved by freezing, see {@link FrozenList#estimateSavedBytes(List)}.
+     */
+    public long immutate() {
+        return this.getMetaData().immutate() + this.immutateChildren();
+    }
+
+    protected long immutateChildren() {
+        long saved = FrozenList.estimateSavedBytes(this.child);
+
+        this.child = FrozenList.freeze(this.child);
+
+        return saved;
+    }
+
+    /**
+     * Discards all children, for example children of a partially read class.
+     */
+    protected void discardChildren() {
+        this.child = new ArrayList<>();
     }
 
     @Override
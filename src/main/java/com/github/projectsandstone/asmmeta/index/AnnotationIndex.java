@@ -0,0 +1,225 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.index;
+
+import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.element.MetaElement;
+import com.github.projectsandstone.asmmeta.util.ElementIds;
+import com.github.projectsandstone.asmmeta.util.ObjectSizes;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index of annotations: maps the descriptor of each annotation type to the sorted ids
+ * ({@link ElementIds}) of the elements annotated with it, so annotated elements are found without
+ * walking indexed classes.
+ */
+public final class AnnotationIndex {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final Map<String, Postings> postings = new ConcurrentHashMap<>();
+    // Descriptors posted by each class, by class ordinal, so classes can be replaced and removed.
+    private final Map<Integer, String[]> posted = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes the annotations of class {@code classOrdinal}, replacing the annotations previously
+     * indexed for this class.
+     *
+     * @param classOrdinal Ordinal of the class.
+     * @param element      Class element.
+     * @param members      True to also index annotations of members, false to only index
+     *                     annotations of the class (for example if members were not read yet).
+     */
+    public void add(int classOrdinal, IMetaElement<?> element, boolean members) {
+        this.posted.compute(classOrdinal, (key, previous) -> {
+            this.unpost(classOrdinal, previous);
+
+            Set<String> descs = new LinkedHashSet<>();
+
+            this.post(ElementIds.ofClass(classOrdinal), element, descs);
+
+            if (members) {
+                List<IMetaElement<?>> children = element.getChildElements();
+
+                for (int i = 0; i < children.size(); ++i)
+                    this.post(ElementIds.of(classOrdinal, i), children.get(i), descs);
+            }
+
+            return descs.isEmpty() ? null : descs.toArray(new String[descs.size()]);
+        });
+    }
+
+    /**
+     * Removes the annotations of class {@code classOrdinal} from the index.
+     *
+     * @param classOrdinal Ordinal of the class.
+     */
+    public void remove(int classOrdinal) {
+        this.posted.computeIfPresent(classOrdinal, (key, previous) -> {
+            this.unpost(classOrdinal, previous);
+            return null;
+        });
+    }
+
+    /**
+     * Gets the ids of the elements annotated with {@code annotationDesc}.
+     *
+     * @param annotationDesc Descriptor of the annotation type, for example {@code Ljava/lang/Deprecated;}.
+     * @return Sorted ids of annotated elements.
+     */
+    public long[] get(String annotationDesc) {
+        Postings postings = this.postings.get(annotationDesc);
+
+        return postings == null ? EMPTY : postings.toArray();
+    }
+
+    /**
+     * Gets the amount of elements annotated with {@code annotationDesc}, without copying their ids.
+     *
+     * @param annotationDesc Descriptor of the annotation type.
+     * @return Amount of annotated elements.
+     */
+    public int count(String annotationDesc) {
+        Postings postings = this.postings.get(annotationDesc);
+
+        return postings == null ? 0 : postings.size();
+    }
+
+    /**
+     * Gets the descriptors of all indexed annotation types, including types whose elements were all
+     * removed.
+     *
+     * @return Unmodifiable view of indexed annotation types.
+     */
+    public Set<String> getAnnotationTypes() {
+        return Collections.unmodifiableSet(this.postings.keySet());
+    }
+
+    public long estimateSize() {
+        long size = ObjectSizes.sizeOfTable(this.postings.size()) + ObjectSizes.sizeOfTable(this.posted.size());
+
+        for (Postings postings : this.postings.values())
+            size += ObjectSizes.MAP_ENTRY + postings.estimateSize();
+
+        for (Map.Entry<Integer, String[]> entry : this.posted.entrySet())
+            size += ObjectSizes.MAP_ENTRY + ObjectSizes.sizeOf(entry.getKey()) + ObjectSizes.sizeOfArray(String.class, entry.getValue().length);
+
+        return size;
+    }
+
+    private void post(long id, IMetaElement<?> element, Set<String> descs) {
+        for (MetaElement<Annotation> annotation : element.getMetaData().getAnnotationList()) {
+            String desc = annotation.getDesc();
+
+            this.postings.computeIfAbsent(desc, d -> new Postings()).add(id);
+            descs.add(desc);
+        }
+    }
+
+    private void unpost(int classOrdinal, String[] descs) {
+        if (descs == null)
+            return;
+
+        for (String desc : descs) {
+            Postings postings = this.postings.get(desc);
+
+            if (postings != null)
+                postings.removeClass(classOrdinal);
+        }
+    }
+
+    /**
+     * Growable array of ids, sorted when read.
+     */
+    private static final class Postings {
+        private long[] ids = new long[4];
+        private int size;
+        private boolean sorted = true;
+
+        synchronized void add(long id) {
+            if (this.size == this.ids.length)
+                this.ids = Arrays.copyOf(this.ids, this.size * 2);
+
+            if (this.size != 0 && this.ids[this.size - 1] >= id)
+                this.sorted = false;
+
+            this.ids[this.size++] = id;
+        }
+
+        synchronized void removeClass(int classOrdinal) {
+            int kept = 0;
+
+            for (int i = 0; i < this.size; ++i) {
+                if (ElementIds.getClassOrdinal(this.ids[i]) != classOrdinal)
+                    this.ids[kept++] = this.ids[i];
+            }
+
+            this.size = kept;
+        }
+
+        synchronized int size() {
+            this.sort();
+            return this.size;
+        }
+
+        synchronized long[] toArray() {
+            this.sort();
+            return Arrays.copyOf(this.ids, this.size);
+        }
+
+        synchronized long estimateSize() {
+            return ObjectSizes.sizeOf(this) + ObjectSizes.sizeOfArray(long.class, this.ids.length);
+        }
+
+        private void sort() {
+            if (this.sorted)
+                return;
+
+            Arrays.sort(this.ids, 0, this.size);
+
+            // An element is posted once per annotation of the same type.
+            int distinct = 0;
+
+            for (int i = 0; i < this.size; ++i) {
+                if (distinct == 0 || this.ids[distinct - 1] != this.ids[i])
+                    this.ids[distinct++] = this.ids[i];
+            }
+
+            this.size = distinct;
+            this.sorted = true;
+        }
+    }
+}
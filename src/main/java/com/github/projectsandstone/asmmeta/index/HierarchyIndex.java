@@ -0,0 +1,370 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.index;
+
+import com.github.projectsandstone.asmmeta.util.ObjectSizes;
+import com.github.projectsandstone.asmmeta.util.SymbolTable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of the type hierarchy of indexed classes, answers subtype and supertype queries without
+ * loading classes. Types are identified by their binary name, types that are only referenced as
+ * super types (for example {@code java.lang.Object}) are part of the hierarchy but have no super
+ * types.
+ *
+ * Direct super types and direct subtypes of each type are kept in int arrays, transitive closures
+ * are computed on first request and kept until the hierarchy changes.
+ */
+public final class HierarchyIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final SymbolTable names = new SymbolTable();
+    // By type id.
+    private int[][] supertypes = new int[256][];
+    private int[][] subtypes = new int[256][];
+    private int[] subtypeCounts = new int[256];
+    private boolean[] interfaces = new boolean[256];
+    private int[][] subtypeClosures = new int[256][];
+    private int[][] supertypeClosures = new int[256][];
+    private int[] closureVersions = new int[256];
+    // Closures computed with an older version are stale.
+    private int version = 1;
+
+    /**
+     * Adds type {@code name} to the hierarchy, replacing its previous super types.
+     *
+     * @param name       Binary name of the type.
+     * @param superClass Binary name of the super class, or null if the type has no super class.
+     * @param interfaces Binary names of the direct super interfaces.
+     * @param isInterface True if the type is an interface.
+     */
+    public synchronized void add(String name, String superClass, String[] interfaces, boolean isInterface) {
+        int type = this.node(name);
+        int[] supertypes = new int[(superClass == null ? 0 : 1) + interfaces.length];
+        int size = 0;
+
+        if (superClass != null)
+            supertypes[size++] = this.node(superClass);
+
+        for (String anInterface : interfaces)
+            supertypes[size++] = this.node(anInterface);
+
+        this.interfaces[type] = isInterface;
+
+        if (!Arrays.equals(supertypes, this.supertypes[type])) {
+            this.unlink(type);
+            this.supertypes[type] = supertypes;
+
+            for (int supertype : supertypes)
+                this.addSubtype(supertype, type);
+
+            ++this.version;
+        }
+    }
+
+    /**
+     * Removes the super types of type {@code name}, the type is kept as long as other types
+     * reference it.
+     *
+     * @param name Binary name of the type.
+     */
+    public synchronized void remove(String name) {
+        int type = this.names.find(name);
+
+        if (type != -1 && this.supertypes[type] != null) {
+            this.unlink(type);
+            this.supertypes[type] = null;
+            ++this.version;
+        }
+    }
+
+    /**
+     * Returns true if type {@code name} was added to the hierarchy, and not only referenced as a
+     * super type.
+     *
+     * @param name Binary name of the type.
+     * @return True if type {@code name} was added.
+     */
+    public synchronized boolean contains(String name) {
+        int type = this.names.find(name);
+
+        return type != -1 && this.supertypes[type] != null;
+    }
+
+    /**
+     * Returns true if type {@code name} is known to be an interface.
+     *
+     * @param name Binary name of the type.
+     * @return True if type {@code name} was added as an interface.
+     */
+    public synchronized boolean isInterface(String name) {
+        int type = this.names.find(name);
+
+        return type != -1 && this.interfaces[type];
+    }
+
+    public synchronized List<String> getDirectSupertypes(String name) {
+        int type = this.names.find(name);
+
+        return this.names(type == -1 || this.supertypes[type] == null ? EMPTY : this.supertypes[type]);
+    }
+
+    public synchronized List<String> getDirectSubtypes(String name) {
+        int type = this.names.find(name);
+
+        return this.names(type == -1 ? EMPTY : Arrays.copyOf(this.subtypes[type], this.subtypeCounts[type]));
+    }
+
+    /**
+     * Gets the transitive super types (super classes and super interfaces) of type {@code name}.
+     *
+     * @param name Binary name of the type.
+     * @return Super types of {@code name}, without {@code name}.
+     */
+    public List<String> getSupertypes(String name) {
+        return this.names(this.getSupertypeIds(name));
+    }
+
+    /**
+     * Gets the transitive subtypes (subclasses, sub interfaces and implementations) of type {@code
+     * name}.
+     *
+     * @param name Binary name of the type.
+     * @return Subtypes of {@code name}, without {@code name}.
+     */
+    public List<String> getSubtypes(String name) {
+        return this.names(this.getSubtypeIds(name));
+    }
+
+    /**
+     * Gets the classes that extend class {@code name} or implement interface {@code name},
+     * directly or transitively.
+     *
+     * @param name Binary name of the type.
+     * @return Subtypes of {@code name} that are not interfaces.
+     */
+    public synchronized List<String> getImplementations(String name) {
+        int[] subtypes = this.getSubtypeIds(name);
+        int[] classes = new int[subtypes.length];
+        int size = 0;
+
+        for (int subtype : subtypes) {
+            if (this.supertypes[subtype] != null && !this.interfaces[subtype])
+                classes[size++] = subtype;
+        }
+
+        return this.names(Arrays.copyOf(classes, size));
+    }
+
+    /**
+     * Returns true if {@code subtype} is {@code supertype} or one of its transitive subtypes.
+     *
+     * @param subtype   Binary name of the subtype.
+     * @param supertype Binary name of the super type.
+     * @return True if {@code subtype} is a subtype of {@code supertype}.
+     */
+    public synchronized boolean isSubtype(String subtype, String supertype) {
+        int sub = this.names.find(subtype);
+        int sup = this.names.find(supertype);
+
+        if (sub == -1 || sup == -1)
+            return false;
+
+        return sub == sup || Arrays.binarySearch(this.supertypeClosure(sub), sup) >= 0;
+    }
+
+    public synchronized long estimateSize() {
+        long size = this.names.estimateSize()
+                + 4 * ObjectSizes.sizeOfArray(Object.class, this.supertypes.length)
+                + 2 * ObjectSizes.sizeOfArray(int.class, this.supertypes.length)
+                + ObjectSizes.sizeOfArray(boolean.class, this.supertypes.length);
+
+        for (int[][] arrays : new int[][][]{this.supertypes, this.subtypes, this.subtypeClosures, this.supertypeClosures}) {
+            for (int[] array : arrays) {
+                if (array != null && array != EMPTY)
+                    size += ObjectSizes.sizeOfArray(int.class, array.length);
+            }
+        }
+
+        return size;
+    }
+
+    private synchronized int[] getSupertypeIds(String name) {
+        int type = this.names.find(name);
+
+        return type == -1 ? EMPTY : this.supertypeClosure(type);
+    }
+
+    private synchronized int[] getSubtypeIds(String name) {
+        int type = this.names.find(name);
+
+        return type == -1 ? EMPTY : this.subtypeClosure(type);
+    }
+
+    private int[] supertypeClosure(int type) {
+        if (this.closureVersions[type] != this.version)
+            this.invalidate(type);
+
+        int[] closure = this.supertypeClosures[type];
+
+        if (closure == null) {
+            closure = this.closure(type, true);
+            this.supertypeClosures[type] = closure;
+        }
+
+        return closure;
+    }
+
+    private int[] subtypeClosure(int type) {
+        if (this.closureVersions[type] != this.version)
+            this.invalidate(type);
+
+        int[] closure = this.subtypeClosures[type];
+
+        if (closure == null) {
+            closure = this.closure(type, false);
+            this.subtypeClosures[type] = closure;
+        }
+
+        return closure;
+    }
+
+    private void invalidate(int type) {
+        this.supertypeClosures[type] = null;
+        this.subtypeClosures[type] = null;
+        this.closureVersions[type] = this.version;
+    }
+
+    private int[] closure(int type, boolean up) {
+        boolean[] visited = new boolean[this.names.size()];
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+
+        visited[type] = true;
+        queue[tail++] = type;
+
+        while (head < tail) {
+            int current = queue[head++];
+            int[] edges = up ? this.supertypes[current] : this.subtypes[current];
+            int count = up ? (edges == null ? 0 : edges.length) : this.subtypeCounts[current];
+
+            for (int i = 0; i < count; ++i) {
+                int next = edges[i];
+
+                if (!visited[next]) {
+                    visited[next] = true;
+
+                    if (tail == queue.length)
+                        queue = Arrays.copyOf(queue, tail * 2);
+
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        // Without the type itself.
+        int[] closure = Arrays.copyOfRange(queue, 1, tail);
+
+        Arrays.sort(closure);
+
+        return closure;
+    }
+
+    private int node(String name) {
+        int type = this.names.id(name);
+
+        if (type >= this.supertypes.length) {
+            int length = Math.max(type + 1, this.supertypes.length * 2);
+
+            this.supertypes = Arrays.copyOf(this.supertypes, length);
+            this.subtypes = Arrays.copyOf(this.subtypes, length);
+            this.subtypeCounts = Arrays.copyOf(this.subtypeCounts, length);
+            this.interfaces = Arrays.copyOf(this.interfaces, length);
+            this.subtypeClosures = Arrays.copyOf(this.subtypeClosures, length);
+            this.supertypeClosures = Arrays.copyOf(this.supertypeClosures, length);
+            this.closureVersions = Arrays.copyOf(this.closureVersions, length);
+        }
+
+        if (this.subtypes[type] == null)
+            this.subtypes[type] = EMPTY;
+
+        return type;
+    }
+
+    private void addSubtype(int type, int subtype) {
+        int[] subtypes = this.subtypes[type];
+        int count = this.subtypeCounts[type];
+
+        if (count == subtypes.length)
+            subtypes = this.subtypes[type] = Arrays.copyOf(subtypes, Math.max(4, count * 2));
+
+        subtypes[count] = subtype;
+        this.subtypeCounts[type] = count + 1;
+    }
+
+    private void unlink(int type) {
+        int[] supertypes = this.supertypes[type];
+
+        if (supertypes == null)
+            return;
+
+        for (int supertype : supertypes) {
+            int[] subtypes = this.subtypes[supertype];
+            int count = this.subtypeCounts[supertype];
+
+            for (int i = 0; i < count; ++i) {
+                if (subtypes[i] == type) {
+                    System.arraycopy(subtypes, i + 1, subtypes, i, count - i - 1);
+                    this.subtypeCounts[supertype] = count - 1;
+                    break;
+                }
+            }
+        }
+    }
+
+    private List<String> names(int[] types) {
+        SymbolTable names = this.names;
+
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return names.get(types[index]);
+            }
+
+            @Override
+            public int size() {
+                return types.length;
+            }
+        };
+    }
+}
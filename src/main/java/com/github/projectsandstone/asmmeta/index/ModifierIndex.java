@@ -0,0 +1,351 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.index;
+
+import com.github.projectsandstone.asmmeta.element.IClassElement;
+import com.github.projectsandstone.asmmeta.element.IConstructorElement;
+import com.github.projectsandstone.asmmeta.element.IFieldElement;
+import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.element.IMethodElement;
+import com.github.projectsandstone.asmmeta.util.ElementIds;
+import com.github.projectsandstone.asmmeta.util.ObjectSizes;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of the access flags ({@link org.objectweb.asm.Opcodes Opcodes.ACC_*}) and kinds of indexed
+ * elements. Each class has a bitmap per flag and per kind, where bit {@code i} is the element
+ * whose {@link ElementIds id} has {@code i} as low bits (bit 0 is the class, bit {@code n + 1} its
+ * member {@code n}). Bitmaps without set bits are not stored.
+ *
+ * Combined filters, such as public methods that are neither synthetic nor bridges, are answered
+ * with word-level AND and AND NOT of the bitmaps of each class, without reading elements.
+ */
+public final class ModifierIndex {
+
+    // Only the flags of class files are indexed, flags above (such as ASM pseudo flags) are not.
+    // Queries with other flags are rejected, as their result would silently ignore them.
+    public static final int INDEXED_MODIFIERS = 0xFFFF;
+
+    private static final int FLAGS = 16;
+    private static final int CLASS = FLAGS;
+    private static final int FIELD = FLAGS + 1;
+    private static final int METHOD = FLAGS + 2;
+    private static final int CONSTRUCTOR = FLAGS + 3;
+    private static final int BITMAPS = FLAGS + 4;
+    private static final long[] EMPTY = new long[0];
+
+    // By class ordinal.
+    private Bitmaps[] classes = new Bitmaps[256];
+    // Amount of set bits of each bitmap, over all classes.
+    private final long[] counts = new long[BITMAPS];
+
+    /**
+     * Indexes the access flags of class {@code classOrdinal}, replacing previously indexed flags.
+     *
+     * @param classOrdinal Ordinal of the class.
+     * @param element      Class element.
+     * @param members      True to also index members, false to only index the class (for
+     *                     example if members were not read yet).
+     */
+    public void add(int classOrdinal, IMetaElement<?> element, boolean members) {
+        List<IMetaElement<?>> children = members ? element.getChildElements() : null;
+        int positions = 1 + (children == null ? 0 : children.size());
+        int words = (positions + 63) >>> 6;
+        long[][] bitmaps = new long[BITMAPS][];
+
+        ModifierIndex.set(bitmaps, words, 0, element);
+
+        for (int i = 1; i < positions; ++i)
+            ModifierIndex.set(bitmaps, words, i, children.get(i - 1));
+
+        // Packs non empty bitmaps.
+        int mask = 0;
+
+        for (int bitmap = 0; bitmap < BITMAPS; ++bitmap) {
+            if (bitmaps[bitmap] != null)
+                mask |= 1 << bitmap;
+        }
+
+        long[] bits = new long[Integer.bitCount(mask) * words];
+        int offset = 0;
+
+        for (int bitmap = 0; bitmap < BITMAPS; ++bitmap) {
+            if (bitmaps[bitmap] != null) {
+                System.arraycopy(bitmaps[bitmap], 0, bits, offset, words);
+                offset += words;
+            }
+        }
+
+        Bitmaps added = new Bitmaps(mask, words, bits);
+
+        synchronized (this) {
+            if (classOrdinal >= this.classes.length)
+                this.classes = Arrays.copyOf(this.classes, Math.max(classOrdinal + 1, this.classes.length * 2));
+
+            this.count(this.classes[classOrdinal], -1);
+            this.classes[classOrdinal] = added;
+            this.count(added, 1);
+        }
+    }
+
+    /**
+     * Removes the flags of class {@code classOrdinal} and its members from the index.
+     *
+     * @param classOrdinal Ordinal of the class.
+     */
+    public synchronized void remove(int classOrdinal) {
+        if (classOrdinal < this.classes.length) {
+            this.count(this.classes[classOrdinal], -1);
+            this.classes[classOrdinal] = null;
+        }
+    }
+
+    /**
+     * Gets the ids of the elements of {@code type} (or of the kind of {@code type}: class, field,
+     * method or constructor) that have all flags of {@code modifiers} and
+     * none of the flags of {@code excludedModifiers}.
+     *
+     * @param type              Type of elements, for example {@code IMethodElement.class}, or
+     *                          {@code IMetaElement.class} for all elements.
+     * @param modifiers         Required flags.
+     * @param excludedModifiers Excluded flags.
+     * @return Sorted ids of matching elements.
+     * @throws IllegalArgumentException If a flag is not in {@link #INDEXED_MODIFIERS}.
+     */
+    public synchronized long[] find(Class<?> type, int modifiers, int excludedModifiers) {
+        ModifierIndex.checkIndexed(modifiers, excludedModifiers);
+
+        int kinds = ModifierIndex.kinds(type);
+
+        if (kinds == 0)
+            return EMPTY;
+
+        long[] ids = new long[16];
+        int size = 0;
+
+        for (int classOrdinal = 0; classOrdinal < this.classes.length; ++classOrdinal) {
+            Bitmaps bitmaps = this.classes[classOrdinal];
+
+            // Classes without an element of the kinds, or without a required flag, are skipped.
+            if (bitmaps == null || (bitmaps.mask & kinds) == 0 || (bitmaps.mask & modifiers) != modifiers)
+                continue;
+
+            for (int word = 0; word < bitmaps.words; ++word) {
+                long bits = bitmaps.match(word, kinds, modifiers, excludedModifiers);
+
+                while (bits != 0) {
+                    int bit = Long.numberOfTrailingZeros(bits);
+
+                    if (size == ids.length)
+                        ids = Arrays.copyOf(ids, size * 2);
+
+                    ids[size++] = ((long) classOrdinal << 32) | ((word << 6) + bit);
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Returns true if the element with id {@code id} is of {@code type}, has all flags of {@code
+     * modifiers} and none of the flags of {@code excludedModifiers}, see {@link #find(Class, int,
+     * int)}.
+     *
+     * @param id                Id of the element.
+     * @param type              Type of elements.
+     * @param modifiers         Required flags.
+     * @param excludedModifiers Excluded flags.
+     * @return True if the element matches, false if {@code id} is not the id of an indexed element,
+     * for example {@link ElementIds#NONE}.
+     * @throws IllegalArgumentException If a flag is not in {@link #INDEXED_MODIFIERS}.
+     */
+    public synchronized boolean matches(long id, Class<?> type, int modifiers, int excludedModifiers) {
+        ModifierIndex.checkIndexed(modifiers, excludedModifiers);
+
+        int classOrdinal = ElementIds.getClassOrdinal(id);
+        Bitmaps bitmaps = classOrdinal >= 0 && classOrdinal < this.classes.length ? this.classes[classOrdinal] : null;
+        int position = (int) id;
+
+        if (bitmaps == null || position >= bitmaps.words << 6)
+            return false;
+
+        return (bitmaps.match(position >>> 6, ModifierIndex.kinds(type), modifiers, excludedModifiers) & (1L << position)) != 0;
+    }
+
+    /**
+     * Estimates the amount of elements {@link #find(Class, int, int)} would find, without
+     * visiting classes. The estimate is never lower than the actual amount.
+     *
+     * @param type              Type of elements.
+     * @param modifiers         Required flags.
+     * @param excludedModifiers Excluded flags.
+     * @return Estimated amount of matching elements.
+     * @throws IllegalArgumentException If a flag is not in {@link #INDEXED_MODIFIERS}.
+     */
+    public synchronized long estimate(Class<?> type, int modifiers, int excludedModifiers) {
+        ModifierIndex.checkIndexed(modifiers, excludedModifiers);
+
+        int kinds = ModifierIndex.kinds(type);
+        long estimate = 0;
+
+        for (int kind = CLASS; kind < BITMAPS; ++kind) {
+            if ((kinds & (1 << kind)) != 0)
+                estimate += this.counts[kind];
+        }
+
+        for (int flag = 0; flag < FLAGS; ++flag) {
+            if ((modifiers & (1 << flag)) != 0)
+                estimate = Math.min(estimate, this.counts[flag]);
+        }
+
+        return estimate;
+    }
+
+    public synchronized long estimateSize() {
+        long size = ObjectSizes.sizeOfArray(Object.class, this.classes.length) + ObjectSizes.sizeOfArray(long.class, BITMAPS);
+
+        for (Bitmaps bitmaps : this.classes) {
+            if (bitmaps != null)
+                size += ObjectSizes.sizeOf(bitmaps) + ObjectSizes.sizeOfArray(long.class, bitmaps.bits.length);
+        }
+
+        return size;
+    }
+
+    private static void checkIndexed(int modifiers, int excludedModifiers) {
+        int unindexed = (modifiers | excludedModifiers) & ~INDEXED_MODIFIERS;
+
+        if (unindexed != 0)
+            throw new IllegalArgumentException("Modifiers 0x" + Integer.toHexString(unindexed) + " are not indexed!");
+    }
+
+    private void count(Bitmaps bitmaps, int sign) {
+        if (bitmaps == null)
+            return;
+
+        int offset = 0;
+
+        for (int bitmap = 0; bitmap < BITMAPS; ++bitmap) {
+            if ((bitmaps.mask & (1 << bitmap)) != 0) {
+                for (int word = 0; word < bitmaps.words; ++word)
+                    this.counts[bitmap] += sign * Long.bitCount(bitmaps.bits[offset + word]);
+
+                offset += bitmaps.words;
+            }
+        }
+    }
+
+    private static void set(long[][] bitmaps, int words, int position, IMetaElement<?> element) {
+        int kind;
+
+        if (element instanceof IClassElement)
+            kind = CLASS;
+        else if (element instanceof IFieldElement)
+            kind = FIELD;
+        else if (element instanceof IMethodElement)
+            kind = METHOD;
+        else if (element instanceof IConstructorElement)
+            kind = CONSTRUCTOR;
+        else
+            return;
+
+        int flags = (element.getModifiers() & INDEXED_MODIFIERS) | (1 << kind);
+
+        for (int bitmap = 0; bitmap < BITMAPS; ++bitmap) {
+            if ((flags & (1 << bitmap)) != 0) {
+                if (bitmaps[bitmap] == null)
+                    bitmaps[bitmap] = new long[words];
+
+                bitmaps[bitmap][position >>> 6] |= 1L << position;
+            }
+        }
+    }
+
+    /**
+     * Gets the kinds elements of {@code type} may be of.
+     */
+    private static int kinds(Class<?> type) {
+        int kinds = 0;
+        Class<?>[] kindTypes = {IClassElement.class, IFieldElement.class, IMethodElement.class, IConstructorElement.class};
+
+        for (int i = 0; i < kindTypes.length; ++i) {
+            if (type.isAssignableFrom(kindTypes[i]) || kindTypes[i].isAssignableFrom(type))
+                kinds |= 1 << (CLASS + i);
+        }
+
+        return kinds;
+    }
+
+    /**
+     * Non empty bitmaps of a class, packed in bitmap order.
+     */
+    private static final class Bitmaps {
+        private final int mask;
+        private final int words;
+        private final long[] bits;
+
+        Bitmaps(int mask, int words, long[] bits) {
+            this.mask = mask;
+            this.words = words;
+            this.bits = bits;
+        }
+
+        long match(int word, int kinds, int modifiers, int excludedModifiers) {
+            long bits = 0;
+
+            for (int kind = CLASS; kind < BITMAPS; ++kind) {
+                if ((kinds & (1 << kind)) != 0)
+                    bits |= this.word(kind, word);
+            }
+
+            for (int flag = 0; flag < FLAGS && bits != 0; ++flag) {
+                int bit = 1 << flag;
+
+                if ((modifiers & bit) != 0)
+                    bits &= this.word(flag, word);
+                else if ((excludedModifiers & bit) != 0)
+                    bits &= ~this.word(flag, word);
+            }
+
+            return bits;
+        }
+
+        private long word(int bitmap, int word) {
+            int bit = 1 << bitmap;
+
+            if ((this.mask & bit) == 0)
+                return 0;
+
+            return this.bits[Integer.bitCount(this.mask & (bit - 1)) * this.words + word];
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.index;
+
+import com.github.projectsandstone.asmmeta.util.ObjectSizes;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sorted index of the binary names of indexed classes, answers prefix and package queries in
+ * {@code O(log n + results)} through live views that are read lazily in name order.
+ */
+public final class PackageIndex {
+
+    // Estimated size of the node and of the index levels of an entry of a skip list.
+    private static final int ENTRY_SIZE = 24 + 16;
+
+    private final ConcurrentSkipListSet<String> names = new ConcurrentSkipListSet<>();
+
+    public void add(String name) {
+        this.names.add(name);
+    }
+
+    public void remove(String name) {
+        this.names.remove(name);
+    }
+
+    public boolean contains(String name) {
+        return this.names.contains(name);
+    }
+
+    public int size() {
+        return this.names.size();
+    }
+
+    /**
+     * Gets the names that start with {@code prefix}, for example {@code com.acme.plugins.} for all
+     * classes of package {@code com.acme.plugins} and its sub packages.
+     *
+     * @param prefix Prefix of the names.
+     * @return Unmodifiable live view of the names that start with {@code prefix}, in name order.
+     */
+    public NavigableSet<String> getNames(String prefix) {
+        NavigableSet<String> names = prefix.isEmpty()
+                ? this.names
+                : this.names.subSet(prefix, true, PackageIndex.successor(prefix), false);
+
+        return Collections.unmodifiableNavigableSet(names);
+    }
+
+    /**
+     * Gets the names of the classes of package {@code packageName}, sub packages are skipped
+     * without visiting their classes.
+     *
+     * @param packageName Name of the package, for example {@code com.acme.plugins}, or an empty
+     *                    string for the default package.
+     * @param subPackages True to include the classes of sub packages.
+     * @return Lazy stream of the names of the classes of the package, in name order.
+     */
+    public Stream<String> getNames(String packageName, boolean subPackages) {
+        String prefix = packageName.isEmpty() ? "" : packageName + ".";
+
+        if (subPackages)
+            return this.getNames(prefix).stream();
+
+        Iterator<String> iterator = new PackageIterator(this.names, prefix);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    public long estimateSize() {
+        return ObjectSizes.sizeOf(this.names) + (long) ENTRY_SIZE * this.names.size();
+    }
+
+    /**
+     * Gets the smallest string greater than all strings that start with {@code prefix}.
+     */
+    private static String successor(String prefix) {
+        int last = prefix.length() - 1;
+
+        // Names never contain Character.MAX_VALUE.
+        return prefix.substring(0, last) + (char) Math.min(prefix.charAt(last) + 1, Character.MAX_VALUE);
+    }
+
+    private static final class PackageIterator implements Iterator<String> {
+        private final NavigableSet<String> names;
+        private final String prefix;
+        private String next;
+
+        PackageIterator(NavigableSet<String> names, String prefix) {
+            this.names = names;
+            this.prefix = prefix;
+            this.next = this.find(names.ceiling(prefix));
+        }
+
+        private String find(String name) {
+            while (name != null && name.startsWith(this.prefix)) {
+                int dot = name.indexOf('.', this.prefix.length());
+
+                if (dot == -1)
+                    return name;
+
+                // Skips the whole sub package.
+                name = this.names.ceiling(PackageIndex.successor(name.substring(0, dot + 1)));
+            }
+
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public String next() {
+            String next = this.next;
+
+            if (next == null)
+                throw new NoSuchElementException();
+
+            this.next = this.find(this.names.higher(next));
+
+            return next;
+        }
+    }
+}
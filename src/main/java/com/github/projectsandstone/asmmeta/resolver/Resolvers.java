@@ -37,6 +37,11 @@ import java.util.function.Function;
 
 public interface Resolvers {
 
+    /**
+     * Shared instance of {@link Default} resolvers.
+     */
+    Resolvers DEFAULT = new Default();
+
     Function<IMetaElement<Annotation>, Annotation> getAnnotationResolver();
 
     Function<IMetaElement<Constructor<?>>, Constructor<?>> getConstructorResolver();
@@ -0,0 +1,189 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.resolver;
+
+import com.github.projectsandstone.asmmeta.element.IClassElement;
+import com.github.projectsandstone.asmmeta.element.IMetaElement;
+
+import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Resolvers whose results are cached weakly by elements ({@link IMetaElement#getResolvedInstance()}),
+ * so an index does not keep the class loaders of resolved classes alive.
+ *
+ * Resolved members, enum constants and annotations are anchored to the class that declares them
+ * (through a {@link ClassValue}), so they stay cached while the class is loaded and are released
+ * together with its class loader. Classes are kept alive by their class loader and need no anchor.
+ *
+ * Use with {@link com.github.projectsandstone.asmmeta.VisitorFactory#createVisitor(int,
+ * org.objectweb.asm.ClassVisitor, Resolvers)} or {@link com.github.projectsandstone.asmmeta.snapshot.IndexSnapshot#open(byte[],
+ * Resolvers)}.
+ */
+public final class WeakResolvers implements Resolvers {
+
+    private static final ClassValue<ConcurrentMap<Object, Object>> ANCHORS = new ClassValue<ConcurrentMap<Object, Object>>() {
+        @Override
+        protected ConcurrentMap<Object, Object> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Resolvers resolvers;
+    private final Function<IMetaElement<Annotation>, Annotation> annotationResolver;
+    private final Function<IMetaElement<Constructor<?>>, Constructor<?>> constructorResolver;
+    private final Function<IMetaElement<Class<?>>, Class<?>> classResolver;
+    private final Function<IMetaElement<Enum<?>>, Enum<?>> enumResolver;
+    private final Function<IMetaElement<Field>, Field> fieldResolver;
+    private final Function<IMetaElement<Method>, Method> methodResolver;
+
+    private WeakResolvers(Resolvers resolvers) {
+        this.resolvers = resolvers;
+        this.annotationResolver = new WeakResolver<>(resolvers.getAnnotationResolver());
+        this.constructorResolver = new WeakResolver<>(resolvers.getConstructorResolver());
+        this.classResolver = new WeakResolver<>(resolvers.getClassResolver());
+        this.enumResolver = new WeakResolver<>(resolvers.getEnumResolver());
+        this.fieldResolver = new WeakResolver<>(resolvers.getFieldResolver());
+        this.methodResolver = new WeakResolver<>(resolvers.getMethodResolver());
+    }
+
+    /**
+     * Creates resolvers that resolve with {@code resolvers} and whose results are cached weakly.
+     *
+     * @param resolvers Resolvers.
+     * @return Weakly cached resolvers.
+     */
+    public static Resolvers of(Resolvers resolvers) {
+        return resolvers instanceof WeakResolvers ? resolvers : new WeakResolvers(resolvers);
+    }
+
+    /**
+     * Returns true if elements must cache the results of {@code resolver} weakly.
+     *
+     * @param resolver Resolver.
+     * @return True if elements must cache the results of {@code resolver} weakly.
+     */
+    public static boolean isWeak(Function<?, ?> resolver) {
+        return resolver instanceof WeakResolver<?>;
+    }
+
+    /**
+     * Creates the weak cache of {@code resolved}, anchoring it to the class of {@code element}.
+     *
+     * @param element  Element.
+     * @param resolved Instance resolved by {@code element}.
+     * @param <T>      Type of resolved instance.
+     * @return Weak cache of {@code resolved}, or of an equal instance anchored before.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> WeakReference<T> cache(IMetaElement<?> element, T resolved) {
+        Class<?> anchor = WeakResolvers.getAnchor(element, resolved);
+
+        if (anchor != null) {
+            Object anchored = ANCHORS.get(anchor).putIfAbsent(resolved, resolved);
+
+            if (anchored != null)
+                resolved = (T) anchored;
+        }
+
+        return new WeakReference<>(resolved);
+    }
+
+    private static Class<?> getAnchor(IMetaElement<?> element, Object resolved) {
+        if (resolved instanceof Class<?>)
+            return null;
+
+        if (resolved instanceof Member)
+            return ((Member) resolved).getDeclaringClass();
+
+        if (resolved instanceof Enum<?>)
+            return ((Enum<?>) resolved).getDeclaringClass();
+
+        // Annotations are anchored to the class they are declared in.
+        IMetaElement<?> enclosing = element.getEnclosingElement();
+
+        while (enclosing != null && !(enclosing instanceof IClassElement))
+            enclosing = enclosing.getEnclosingElement();
+
+        return enclosing == null ? null : ((IClassElement) enclosing).getResolvedInstance();
+    }
+
+    public Resolvers getResolvers() {
+        return this.resolvers;
+    }
+
+    @Override
+    public Function<IMetaElement<Annotation>, Annotation> getAnnotationResolver() {
+        return this.annotationResolver;
+    }
+
+    @Override
+    public Function<IMetaElement<Constructor<?>>, Constructor<?>> getConstructorResolver() {
+        return this.constructorResolver;
+    }
+
+    @Override
+    public Function<IMetaElement<Class<?>>, Class<?>> getClassResolver() {
+        return this.classResolver;
+    }
+
+    @Override
+    public Function<IMetaElement<Enum<?>>, Enum<?>> getEnumResolver() {
+        return this.enumResolver;
+    }
+
+    @Override
+    public Function<IMetaElement<Field>, Field> getFieldResolver() {
+        return this.fieldResolver;
+    }
+
+    @Override
+    public Function<IMetaElement<Method>, Method> getMethodResolver() {
+        return this.methodResolver;
+    }
+
+    private static final class WeakResolver<T> implements Function<IMetaElement<T>, T> {
+        private final Function<IMetaElement<T>, T> resolver;
+
+        WeakResolver(Function<IMetaElement<T>, T> resolver) {
+            this.resolver = resolver;
+        }
+
+        @Override
+        public T apply(IMetaElement<T> element) {
+            return this.resolver.apply(element);
+        }
+    }
+}
@@ -0,0 +1,584 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.snapshot;
+
+import com.github.projectsandstone.asmmeta.ASMMeta;
+import com.github.projectsandstone.asmmeta.data.MetaData;
+import com.github.projectsandstone.asmmeta.element.AnnotationElement;
+import com.github.projectsandstone.asmmeta.element.ClassElement;
+import com.github.projectsandstone.asmmeta.element.ConstructorElement;
+import com.github.projectsandstone.asmmeta.element.EnumElement;
+import com.github.projectsandstone.asmmeta.element.FieldElement;
+import com.github.projectsandstone.asmmeta.element.IClassElement;
+import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.element.MetaElement;
+import com.github.projectsandstone.asmmeta.element.MethodElement;
+import com.github.projectsandstone.asmmeta.resolver.Resolvers;
+import com.github.projectsandstone.asmmeta.util.IOUtils;
+import com.github.projectsandstone.asmmeta.util.ObjectSizes;
+import com.github.projectsandstone.asmmeta.util.SymbolTable;
+import com.github.projectsandstone.asmmeta.value.KeyedValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveArrayValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveValue;
+import com.github.projectsandstone.asmmeta.value.Value;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of indexed classes.
+ *
+ * A snapshot holds a string table, a directory of classes and the encoded class trees. Classes are
+ * decoded on demand, so opening a snapshot only costs the string table and the directory.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * int    magic
+ * u2     version
+ * u2     flags
+ * int    string count, followed by strings in modified UTF-8
+ * int    class count, followed by (name id, offset, length, crc32) per class
+ * int    crc32 of everything above
+ * int    data length, followed by class data
+ * </pre>
+ */
+public final class IndexSnapshot {
+
+    public static final int MAGIC = 0x414D534E;
+    public static final int VERSION = 2;
+
+    /**
+     * Location of indexes generated at compile time.
+     */
+    public static final String RESOURCE = "META-INF/asmmeta/index.bin";
+
+    static final int CLASS = 1;
+    static final int FIELD = 2;
+    static final int METHOD = 3;
+    static final int CONSTRUCTOR = 4;
+
+    private static final String[] NO_INTERFACES = new String[0];
+
+    private final byte[] data;
+    private final int dataOffset;
+    private final String[] strings;
+    private final Map<String, int[]> directory;
+    private final Resolvers resolvers;
+
+    private IndexSnapshot(byte[] data, int dataOffset, String[] strings, Map<String, int[]> directory, Resolvers resolvers) {
+        this.data = data;
+        this.dataOffset = dataOffset;
+        this.strings = strings;
+        this.directory = directory;
+        this.resolvers = resolvers;
+    }
+
+    /**
+     * Writes all classes indexed by {@code asmMeta} to {@code out}. Lazy classes are materialized.
+     *
+     * @param asmMeta ASMMeta to write.
+     * @param out     Output stream, not closed.
+     * @throws IOException If {@code out} fails.
+     */
+    public static void write(ASMMeta asmMeta, OutputStream out) throws IOException {
+        List<IClassElement> classes = new ArrayList<>();
+
+        for (IMetaElement<?> element : asmMeta.getAllIndexexElements().values()) {
+            if (element instanceof IClassElement)
+                classes.add((IClassElement) element);
+        }
+
+        IndexSnapshot.write(classes, out);
+    }
+
+    /**
+     * Writes {@code classes} to {@code out}.
+     *
+     * @param classes Classes to write.
+     * @param out     Output stream, not closed.
+     * @throws IOException If {@code out} fails.
+     */
+    public static void write(Collection<? extends IClassElement> classes, OutputStream out) throws IOException {
+        SnapshotWriter writer = new SnapshotWriter();
+
+        for (IClassElement classElement : classes)
+            writer.add(classElement);
+
+        writer.writeTo(out);
+    }
+
+    /**
+     * Reads a snapshot from {@code in}.
+     *
+     * @param in Input stream, not closed.
+     * @return Opened snapshot.
+     * @throws IOException If {@code in} fails or the snapshot is malformed.
+     */
+    public static IndexSnapshot read(InputStream in) throws IOException {
+        return IndexSnapshot.open(IOUtils.readFully(in, 8192), Resolvers.DEFAULT);
+    }
+
+    /**
+     * Opens a snapshot, decoding only the string table and the class directory.
+     *
+     * @param bytes     Snapshot bytes, must not be modified afterwards.
+     * @param resolvers Resolvers of decoded elements.
+     * @return Opened snapshot.
+     * @throws IOException If the snapshot is malformed or the checksum does not match.
+     */
+    public static IndexSnapshot open(byte[] bytes, Resolvers resolvers) throws IOException {
+        try {
+            Cursor cursor = new Cursor(bytes, 0);
+
+            if (cursor.readInt() != MAGIC)
+                throw new IOException("Not an index snapshot.");
+
+            int version = cursor.readShort();
+
+            // Version 2 added primitive arrays, version 1 snapshots are still readable.
+            if (version < 1 || version > VERSION)
+                throw new IOException("Unsupported snapshot version: " + version + ".");
+
+            cursor.readShort();
+
+            String[] strings = new String[checkCount(cursor.readInt())];
+
+            for (int i = 0; i < strings.length; ++i)
+                strings[i] = cursor.readUTF();
+
+            int classes = checkCount(cursor.readInt());
+            Map<String, int[]> directory = new HashMap<>(Math.max(16, (int) (classes / .75f) + 1));
+
+            for (int i = 0; i < classes; ++i) {
+                String name = strings[cursor.readInt()];
+                directory.put(name, new int[]{cursor.readInt(), cursor.readInt(), cursor.readInt()});
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, cursor.pos);
+
+            if (cursor.readInt() != (int) crc.getValue())
+                throw new IOException("Snapshot checksum mismatch.");
+
+            int length = cursor.readInt();
+
+            if (length < 0 || length > bytes.length - cursor.pos)
+                throw new IOException("Truncated snapshot.");
+
+            return new IndexSnapshot(bytes, cursor.pos, strings, directory, resolvers);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed snapshot.", e);
+        }
+    }
+
+    private static int checkCount(int count) throws IOException {
+        if (count < 0)
+            throw new IOException("Malformed snapshot.");
+
+        return count;
+    }
+
+    /**
+     * Replaces the strings of this snapshot with their canonical instances in {@code symbolTable},
+     * so decoded elements share names and descriptors with the rest of an index.
+     *
+     * @param symbolTable Symbol table.
+     */
+    public void internStrings(SymbolTable symbolTable) {
+        symbolTable.internAll(this.strings);
+    }
+
+    /**
+     * Gets names of classes in this snapshot.
+     *
+     * @return Names of classes in this snapshot.
+     */
+    public Set<String> getClassNames() {
+        return Collections.unmodifiableSet(this.directory.keySet());
+    }
+
+    /**
+     * Estimates the heap used by this snapshot: the encoded classes, the string table and the
+     * directory of classes, excluding the strings.
+     *
+     * @return Estimated size of this snapshot.
+     */
+    public long estimateSize() {
+        int classes = this.directory.size();
+
+        return ObjectSizes.sizeOfArray(byte.class, this.data.length)
+                + ObjectSizes.sizeOfArray(String.class, this.strings.length)
+                + (ObjectSizes.MAP_ENTRY + ObjectSizes.sizeOfArray(int.class, 3)) * (long) classes
+                + ObjectSizes.sizeOfTable(classes);
+    }
+
+    /**
+     * Returns true if this snapshot contains class {@code name}.
+     *
+     * @param name Name of class.
+     * @return True if this snapshot contains class {@code name}.
+     */
+    public boolean contains(String name) {
+        return this.directory.containsKey(name);
+    }
+
+    /**
+     * Decodes class {@code name}.
+     *
+     * @param name Name of class.
+     * @return Decoded class or null if this snapshot does not contain class {@code name}.
+     * @throws IOException If the class data is malformed or the checksum does not match.
+     */
+    public IClassElement decode(String name) throws IOException {
+        int[] entry = this.directory.get(name);
+
+        if (entry == null)
+            return null;
+
+        int offset = entry[0];
+        int length = entry[1];
+
+        if (offset < 0 || length < 0 || offset > this.data.length - this.dataOffset - length)
+            throw new IOException("Malformed snapshot entry '" + name + "'.");
+
+        CRC32 crc = new CRC32();
+        crc.update(this.data, this.dataOffset + offset, length);
+
+        if (entry[2] != (int) crc.getValue())
+            throw new IOException("Checksum mismatch of snapshot entry '" + name + "'.");
+
+        try {
+            IMetaElement<?> element = this.readElement(new Cursor(this.data, this.dataOffset + offset), null);
+
+            if (!(element instanceof IClassElement))
+                throw new IOException("Malformed snapshot entry '" + name + "'.");
+
+            return (IClassElement) element;
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Malformed snapshot entry '" + name + "'.", e);
+        }
+    }
+
+    /**
+     * Decodes all classes and adds them to {@code asmMeta}.
+     *
+     * @param asmMeta Target.
+     * @throws IOException If the class data is malformed.
+     */
+    public void loadInto(ASMMeta asmMeta) throws IOException {
+        for (String name : this.directory.keySet())
+            asmMeta.index(this.decode(name));
+    }
+
+    private IMetaElement<?> readElement(Cursor cursor, IMetaElement<?> enclosing) {
+        int kind = cursor.readByte();
+        int modifiers = cursor.readVarInt();
+        String name = this.nullableString(cursor);
+        String desc = this.nullableString(cursor);
+
+        MetaElement<?> element;
+
+        switch (kind) {
+            case CLASS: {
+                String superClass = this.nullableString(cursor);
+                int count = cursor.readVarInt();
+                String[] interfaces = count == 0 ? NO_INTERFACES : new String[count];
+
+                for (int i = 0; i < count; ++i)
+                    interfaces[i] = this.string(cursor);
+
+                element = new ClassElement(enclosing, modifiers, name, desc, new MetaData(), this.resolvers.getClassResolver(), superClass, interfaces);
+                break;
+            }
+            case FIELD:
+                element = new FieldElement(enclosing, modifiers, name, desc, new MetaData(), this.resolvers.getFieldResolver());
+                break;
+            case METHOD:
+                element = new MethodElement(enclosing, modifiers, name, desc, new MetaData(), this.resolvers.getMethodResolver());
+                break;
+            case CONSTRUCTOR:
+                element = new ConstructorElement(enclosing, modifiers, name, desc, new MetaData(), this.resolvers.getConstructorResolver());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown element kind: " + kind + ".");
+        }
+
+        this.readAnnotations(cursor, element);
+
+        int children = cursor.readVarInt();
+
+        element.ensureChildCapacity(children);
+
+        for (int i = 0; i < children; ++i)
+            element.getChildElements().add(this.readElement(cursor, element));
+
+        element.immutate();
+
+        return element;
+    }
+
+    private void readAnnotations(Cursor cursor, MetaElement<?> element) {
+        int count = cursor.readVarInt();
+
+        for (int i = 0; i < count; ++i)
+            element.getMetaData().getAnnotationList().add(this.readAnnotation(cursor, element));
+    }
+
+    private AnnotationElement readAnnotation(Cursor cursor, IMetaElement<?> enclosing) {
+        int modifiers = cursor.readVarInt();
+        String name = this.nullableString(cursor);
+        String desc = this.nullableString(cursor);
+
+        AnnotationElement annotationElement = new AnnotationElement(enclosing, modifiers, name, desc, MetaData.EMPTY, this.resolvers.getAnnotationResolver());
+
+        this.readValues(cursor, annotationElement, annotationElement.getValues());
+
+        annotationElement.immutate();
+
+        return annotationElement;
+    }
+
+    private void readValues(Cursor cursor, AnnotationElement owner, List<Value<?>> values) {
+        int count = cursor.readVarInt();
+
+        for (int i = 0; i < count; ++i) {
+            String key = cursor.readByte() != 0 ? this.string(cursor) : null;
+            Object value = this.readValue(cursor, owner);
+
+            if (key == null)
+                values.add(new Value<>(value));
+            else if (PrimitiveValue.isPrimitive(value))
+                values.add(new PrimitiveValue(key, value));
+            else if (PrimitiveArrayValue.isPrimitiveArray(value))
+                values.add(new PrimitiveArrayValue(key, value));
+            else
+                values.add(new KeyedValue<>(key, value));
+        }
+    }
+
+    private Object readValue(Cursor cursor, AnnotationElement owner) {
+        int tag = cursor.readByte();
+
+        switch (tag) {
+            case 'Z':
+                return cursor.readByte() != 0;
+            case 'B':
+                return (byte) cursor.readByte();
+            case 'C':
+                return (char) cursor.readVarInt();
+            case 'S':
+                return (short) unZigZag(cursor.readVarLong());
+            case 'I':
+                return (int) unZigZag(cursor.readVarLong());
+            case 'J':
+                return unZigZag(cursor.readVarLong());
+            case 'F':
+                return Float.intBitsToFloat(cursor.readInt());
+            case 'D':
+                return Double.longBitsToDouble(((long) cursor.readInt() << 32) | (cursor.readInt() & 0xFFFFFFFFL));
+            case 's':
+                return this.string(cursor);
+            case '@':
+                return this.readAnnotation(cursor, owner);
+            case 'e': {
+                int modifiers = cursor.readVarInt();
+                String name = this.nullableString(cursor);
+                String desc = this.nullableString(cursor);
+                EnumElement enumElement = new EnumElement(owner, modifiers, name, desc, new MetaData(), this.resolvers.getEnumResolver());
+                enumElement.immutate();
+                return enumElement;
+            }
+            case 'c': {
+                ClassElement classElement = new ClassElement(owner, 0, this.string(cursor), "", new MetaData(), this.resolvers.getClassResolver(), null, NO_INTERFACES);
+                classElement.immutate();
+                return classElement;
+            }
+            case '[': {
+                List<Value<?>> list = new ArrayList<>();
+                this.readValues(cursor, owner, list);
+                return list;
+            }
+            case 'a':
+                return this.readPrimitiveArray(cursor);
+            default:
+                throw new IllegalArgumentException("Unknown value tag: " + tag + ".");
+        }
+    }
+
+    private Object readPrimitiveArray(Cursor cursor) {
+        int type = cursor.readByte();
+        int length = cursor.readVarInt();
+
+        if (length < 0 || length > cursor.bytes.length - cursor.pos)
+            throw new IllegalArgumentException("Malformed array length: " + length + ".");
+
+        switch (type) {
+            case 'Z': {
+                boolean[] array = new boolean[length];
+                for (int i = 0; i < length; ++i)
+                    array[i] = cursor.readByte() != 0;
+                return array;
+            }
+            case 'B': {
+                byte[] array = new byte[length];
+                System.arraycopy(cursor.bytes, cursor.pos, array, 0, length);
+                cursor.pos += length;
+                return array;
+            }
+            case 'C': {
+                char[] array = new char[length];
+                for (int i = 0; i < length; ++i)
+                    array[i] = (char) cursor.readVarInt();
+                return array;
+            }
+            case 'S': {
+                short[] array = new short[length];
+                for (int i = 0; i < length; ++i)
+                    array[i] = (short) unZigZag(cursor.readVarLong());
+                return array;
+            }
+            case 'I': {
+                int[] array = new int[length];
+                for (int i = 0; i < length; ++i)
+                    array[i] = (int) unZigZag(cursor.readVarLong());
+                return array;
+            }
+            case 'J': {
+                long[] array = new long[length];
+                for (int i = 0; i < length; ++i)
+                    array[i] = unZigZag(cursor.readVarLong());
+                return array;
+            }
+            case 'F': {
+                float[] array = new float[length];
+                for (int i = 0; i < length; ++i)
+                    array[i] = Float.intBitsToFloat(cursor.readInt());
+                return array;
+            }
+            case 'D': {
+                double[] array = new double[length];
+                for (int i = 0; i < length; ++i)
+                    array[i] = Double.longBitsToDouble(((long) cursor.readInt() << 32) | (cursor.readInt() & 0xFFFFFFFFL));
+                return array;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown array type: " + type + ".");
+        }
+    }
+
+    private String string(Cursor cursor) {
+        return this.strings[cursor.readVarInt()];
+    }
+
+    private String nullableString(Cursor cursor) {
+        int id = cursor.readVarInt();
+
+        return id == 0 ? null : this.strings[id - 1];
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Cursor {
+        private final byte[] bytes;
+        private int pos;
+
+        Cursor(byte[] bytes, int pos) {
+            this.bytes = bytes;
+            this.pos = pos;
+        }
+
+        int readByte() {
+            return this.bytes[this.pos++];
+        }
+
+        int readShort() {
+            return ((this.bytes[this.pos++] & 0xFF) << 8) | (this.bytes[this.pos++] & 0xFF);
+        }
+
+        int readInt() {
+            return (this.readShort() << 16) | this.readShort();
+        }
+
+        int readVarInt() {
+            return (int) this.readVarLong();
+        }
+
+        long readVarLong() {
+            long value = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = this.bytes[this.pos++];
+                value |= (long) (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+
+            throw new IllegalArgumentException("Malformed varint.");
+        }
+
+        String readUTF() throws UTFDataFormatException {
+            int length = this.readShort();
+            int end = this.pos + length;
+
+            if (end > this.bytes.length)
+                throw new ArrayIndexOutOfBoundsException(end);
+
+            char[] chars = new char[length];
+            int count = 0;
+
+            while (this.pos < end) {
+                int c = this.bytes[this.pos++] & 0xFF;
+
+                if (c < 0x80) {
+                    chars[count++] = (char) c;
+                } else if ((c & 0xE0) == 0xC0 && this.pos < end) {
+                    chars[count++] = (char) (((c & 0x1F) << 6) | (this.bytes[this.pos++] & 0x3F));
+                } else if ((c & 0xF0) == 0xE0 && this.pos + 1 < end) {
+                    chars[count++] = (char) (((c & 0x0F) << 12) | ((this.bytes[this.pos++] & 0x3F) << 6) | (this.bytes[this.pos++] & 0x3F));
+                } else {
+                    throw new UTFDataFormatException("Malformed string at " + this.pos + ".");
+                }
+            }
+
+            return new String(chars, 0, count);
+        }
+    }
+}
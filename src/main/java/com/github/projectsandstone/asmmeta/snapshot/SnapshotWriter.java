@@ -0,0 +1,369 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.snapshot;
+
+import com.github.jonathanxd.iutils.description.DescriptionUtil;
+import com.github.projectsandstone.asmmeta.element.IAnnotationElement;
+import com.github.projectsandstone.asmmeta.element.IClassElement;
+import com.github.projectsandstone.asmmeta.element.IConstructorElement;
+import com.github.projectsandstone.asmmeta.element.IEnumElement;
+import com.github.projectsandstone.asmmeta.element.IFieldElement;
+import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.element.IMethodElement;
+import com.github.projectsandstone.asmmeta.value.KeyedValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveArrayValue;
+import com.github.projectsandstone.asmmeta.value.Value;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes classes in the {@link IndexSnapshot} format.
+ */
+final class SnapshotWriter {
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final List<int[]> directory = new ArrayList<>();
+    private byte[] data = new byte[8192];
+    private int length;
+
+    void add(IClassElement element) {
+        String key = DescriptionUtil.internalToName(element.getName());
+        int start = this.length;
+
+        this.writeElement(element);
+
+        CRC32 crc = new CRC32();
+        crc.update(this.data, start, this.length - start);
+
+        this.directory.add(new int[]{this.string(key), start, this.length - start, (int) crc.getValue()});
+    }
+
+    void writeTo(OutputStream outputStream) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new ChecksumOutputStream(outputStream, crc));
+
+        out.writeInt(IndexSnapshot.MAGIC);
+        out.writeShort(IndexSnapshot.VERSION);
+        out.writeShort(0);
+
+        out.writeInt(this.strings.size());
+
+        for (String string : this.strings)
+            out.writeUTF(string);
+
+        out.writeInt(this.directory.size());
+
+        for (int[] entry : this.directory) {
+            for (int i : entry)
+                out.writeInt(i);
+        }
+
+        // Metadata checksum, class data has a checksum per class
+        out.writeInt((int) crc.getValue());
+
+        out.writeInt(this.length);
+        outputStream.write(this.data, 0, this.length);
+        outputStream.flush();
+    }
+
+    private void writeElement(IMetaElement<?> element) {
+        if (element instanceof IClassElement) {
+            IClassElement classElement = (IClassElement) element;
+
+            this.writeByte(IndexSnapshot.CLASS);
+            this.writeHeader(element);
+            this.writeNullableString(classElement.getSuperClass());
+
+            String[] interfaces = classElement.getInterfaces();
+
+            this.writeVarInt(interfaces == null ? 0 : interfaces.length);
+
+            if (interfaces != null) {
+                for (String anInterface : interfaces)
+                    this.writeString(anInterface);
+            }
+        } else if (element instanceof IFieldElement) {
+            this.writeByte(IndexSnapshot.FIELD);
+            this.writeHeader(element);
+        } else if (element instanceof IMethodElement) {
+            this.writeByte(IndexSnapshot.METHOD);
+            this.writeHeader(element);
+        } else if (element instanceof IConstructorElement) {
+            this.writeByte(IndexSnapshot.CONSTRUCTOR);
+            this.writeHeader(element);
+        } else {
+            throw new IllegalArgumentException("Unsupported element: '" + element + "'.");
+        }
+
+        this.writeAnnotations(element);
+
+        List<IMetaElement<?>> childElements = element.getChildElements();
+
+        this.writeVarInt(childElements.size());
+
+        for (IMetaElement<?> childElement : childElements)
+            this.writeElement(childElement);
+    }
+
+    private void writeHeader(IMetaElement<?> element) {
+        this.writeVarInt(element.getModifiers());
+        this.writeNullableString(element.getName());
+        this.writeNullableString(element.getDesc());
+    }
+
+    private void writeAnnotations(IMetaElement<?> element) {
+        List<? extends IMetaElement<Annotation>> annotations = element.getMetaData().getAnnotationList();
+
+        this.writeVarInt(annotations.size());
+
+        for (IMetaElement<Annotation> annotation : annotations)
+            this.writeAnnotation(annotation);
+    }
+
+    private void writeAnnotation(IMetaElement<Annotation> annotation) {
+        this.writeHeader(annotation);
+
+        List<Value<?>> values = annotation instanceof IAnnotationElement
+                ? ((IAnnotationElement) annotation).getValues()
+                : new ArrayList<>();
+
+        this.writeValues(values);
+    }
+
+    private void writeValues(List<Value<?>> values) {
+        this.writeVarInt(values.size());
+
+        for (Value<?> value : values) {
+            if (value instanceof KeyedValue<?, ?>) {
+                this.writeByte(1);
+                this.writeString(String.valueOf(((KeyedValue<?, ?>) value).getKey()));
+            } else {
+                this.writeByte(0);
+            }
+
+            this.writeValue(value instanceof PrimitiveArrayValue ? ((PrimitiveArrayValue) value).getArray() : value.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeValue(Object value) {
+        if (value instanceof Boolean) {
+            this.writeByte('Z');
+            this.writeByte((Boolean) value ? 1 : 0);
+        } else if (value instanceof Byte) {
+            this.writeByte('B');
+            this.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            this.writeByte('C');
+            this.writeVarInt((Character) value);
+        } else if (value instanceof Short) {
+            this.writeByte('S');
+            this.writeVarLong(zigZag((Short) value));
+        } else if (value instanceof Integer) {
+            this.writeByte('I');
+            this.writeVarLong(zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            this.writeByte('J');
+            this.writeVarLong(zigZag((Long) value));
+        } else if (value instanceof Float) {
+            this.writeByte('F');
+            this.writeFixed(Float.floatToRawIntBits((Float) value), 4);
+        } else if (value instanceof Double) {
+            this.writeByte('D');
+            this.writeFixed(Double.doubleToRawLongBits((Double) value), 8);
+        } else if (value instanceof String) {
+            this.writeByte('s');
+            this.writeString((String) value);
+        } else if (value instanceof IAnnotationElement) {
+            this.writeByte('@');
+            this.writeAnnotation((IAnnotationElement) value);
+        } else if (value instanceof IEnumElement) {
+            this.writeByte('e');
+            this.writeHeader((IEnumElement) value);
+        } else if (value instanceof IClassElement) {
+            this.writeByte('c');
+            this.writeString(((IClassElement) value).getName());
+        } else if (value instanceof List<?>) {
+            this.writeByte('[');
+            this.writeValues((List<Value<?>>) value);
+        } else if (PrimitiveArrayValue.isPrimitiveArray(value)) {
+            this.writePrimitiveArray(value);
+        } else {
+            throw new IllegalArgumentException("Unsupported annotation value: '" + value + "'.");
+        }
+    }
+
+    private void writePrimitiveArray(Object array) {
+        this.writeByte('a');
+
+        if (array instanceof boolean[]) {
+            boolean[] values = (boolean[]) array;
+            this.writeByte('Z');
+            this.writeVarInt(values.length);
+            for (boolean value : values)
+                this.writeByte(value ? 1 : 0);
+        } else if (array instanceof byte[]) {
+            byte[] values = (byte[]) array;
+            this.writeByte('B');
+            this.writeVarInt(values.length);
+            this.ensure(values.length);
+            System.arraycopy(values, 0, this.data, this.length, values.length);
+            this.length += values.length;
+        } else if (array instanceof char[]) {
+            char[] values = (char[]) array;
+            this.writeByte('C');
+            this.writeVarInt(values.length);
+            for (char value : values)
+                this.writeVarInt(value);
+        } else if (array instanceof short[]) {
+            short[] values = (short[]) array;
+            this.writeByte('S');
+            this.writeVarInt(values.length);
+            for (short value : values)
+                this.writeVarLong(zigZag(value));
+        } else if (array instanceof int[]) {
+            int[] values = (int[]) array;
+            this.writeByte('I');
+            this.writeVarInt(values.length);
+            for (int value : values)
+                this.writeVarLong(zigZag(value));
+        } else if (array instanceof long[]) {
+            long[] values = (long[]) array;
+            this.writeByte('J');
+            this.writeVarInt(values.length);
+            for (long value : values)
+                this.writeVarLong(zigZag(value));
+        } else if (array instanceof float[]) {
+            float[] values = (float[]) array;
+            this.writeByte('F');
+            this.writeVarInt(values.length);
+            for (float value : values)
+                this.writeFixed(Float.floatToRawIntBits(value), 4);
+        } else {
+            double[] values = (double[]) array;
+            this.writeByte('D');
+            this.writeVarInt(values.length);
+            for (double value : values)
+                this.writeFixed(Double.doubleToRawLongBits(value), 8);
+        }
+    }
+
+    private int string(String string) {
+        Integer id = this.stringIds.get(string);
+
+        if (id == null) {
+            id = this.strings.size();
+            this.stringIds.put(string, id);
+            this.strings.add(string);
+        }
+
+        return id;
+    }
+
+    private void writeString(String string) {
+        this.writeVarInt(this.string(string));
+    }
+
+    private void writeNullableString(String string) {
+        // 0 is null, ids are shifted by one
+        this.writeVarInt(string == null ? 0 : this.string(string) + 1);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void ensure(int amount) {
+        if (this.length + amount > this.data.length)
+            this.data = Arrays.copyOf(this.data, Math.max(this.length + amount, this.data.length * 2));
+    }
+
+    private void writeByte(int value) {
+        this.ensure(1);
+        this.data[this.length++] = (byte) value;
+    }
+
+    private void writeFixed(long value, int bytes) {
+        this.ensure(bytes);
+
+        for (int i = bytes - 1; i >= 0; --i)
+            this.data[this.length++] = (byte) (value >>> (i * 8));
+    }
+
+    private void writeVarInt(int value) {
+        this.writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    private void writeVarLong(long value) {
+        this.ensure(10);
+
+        while ((value & ~0x7FL) != 0) {
+            this.data[this.length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        this.data[this.length++] = (byte) value;
+    }
+
+    private static final class ChecksumOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final CRC32 crc;
+
+        ChecksumOutputStream(OutputStream out, CRC32 crc) {
+            this.out = out;
+            this.crc = crc;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.crc.update(b);
+            this.out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.crc.update(b, off, len);
+            this.out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+        }
+    }
+}
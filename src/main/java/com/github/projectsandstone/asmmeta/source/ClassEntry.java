@@ -0,0 +1,87 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.source;
+
+import java.io.IOException;
+
+/**
+ * A class file found in a {@link ClassSource}.
+ */
+public interface ClassEntry {
+
+    /**
+     * Gets the path of the entry inside of its source, for example {@code com/acme/Foo.class}.
+     *
+     * @return Path of the entry inside of its source.
+     */
+    String getName();
+
+    /**
+     * Gets the size of the class bytes, or {@code -1} if unknown.
+     *
+     * @return Size of the class bytes, or {@code -1} if unknown.
+     */
+    long getSize();
+
+    /**
+     * Gets the last modification time in milliseconds since the epoch, or {@code -1} if unknown.
+     *
+     * @return Last modification time in milliseconds since the epoch, or {@code -1} if unknown.
+     */
+    long getLastModified();
+
+    /**
+     * Returns true if this entry can still be read after its {@link ClassSource} is closed.
+     *
+     * @return True if this entry can be read after its source is closed.
+     */
+    default boolean isDetached() {
+        return false;
+    }
+
+    /**
+     * Reads the class bytes of this entry.
+     *
+     * @return Class bytes.
+     * @throws IOException If the entry cannot be read.
+     */
+    byte[] read() throws IOException;
+
+    /**
+     * Reads the class bytes of this entry into {@code consumer}. Implementations may hand
+     * pooled buffers to {@code consumer} instead of allocating a new array for every entry.
+     *
+     * @param consumer Consumer of class bytes.
+     * @throws IOException If the entry cannot be read.
+     */
+    default void read(ClassBytesConsumer consumer) throws IOException {
+        byte[] bytes = this.read();
+
+        consumer.accept(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.source;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipException;
+
+public final class ClassSources {
+
+    private ClassSources() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Opens a {@link ClassSource} for a jar (or zip) file or a class directory.
+     *
+     * Jar files are memory mapped ({@link MappedJarClassSource}), unless they are not supported
+     * by the mapped reader (such as ZIP64 archives), in this case {@link JarClassSource} is used.
+     *
+     * @param path Jar file or class directory.
+     * @return Class source of {@code path}.
+     * @throws IOException If {@code path} cannot be opened.
+     */
+    public static ClassSource of(Path path) throws IOException {
+        if (Files.isDirectory(path))
+            return new DirectoryClassSource(path);
+
+        try {
+            return new MappedJarClassSource(path);
+        } catch (ZipException e) {
+            return new JarClassSource(path);
+        }
+    }
+
+    /**
+     * Returns true if the entry {@code name} is a class that should be indexed.
+     *
+     * Module descriptors and entries under {@code META-INF} (such as multi-release versions)
+     * are ignored.
+     *
+     * @param name Entry name.
+     * @return True if the entry {@code name} is a class that should be indexed.
+     */
+    public static boolean isClassEntry(String name) {
+        return name.endsWith(".class")
+                && !name.startsWith("META-INF/")
+                && !name.endsWith("module-info.class");
+    }
+}
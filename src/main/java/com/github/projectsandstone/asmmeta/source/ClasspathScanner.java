@@ -0,0 +1,321 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.source;
+
+import com.github.projectsandstone.asmmeta.ASMMeta;
+import com.github.projectsandstone.asmmeta.asm.AnnotationPrefilter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps an {@link ASMMeta} in sync with a list of jars and class directories.
+ *
+ * Every scan records size, modification time and a CRC32 of the content of each class. Following
+ * scans only read classes whose size or modification time changed, and only index them again if
+ * the content changed. Classes that disappeared are removed from the index. Unchanged jars are
+ * skipped without being opened.
+ *
+ * Like a classpath, when the same class is found in more than one root, the first root wins.
+ *
+ * Classes rejected by the {@link ASMMeta#getPrefilter() prefilter} of the index are tracked as
+ * well, the prefilter is expected to stay the same between scans.
+ */
+public class ClasspathScanner {
+
+    private final ASMMeta asmMeta;
+    private final List<Path> roots;
+    private final Map<Path, RootState> states = new HashMap<>();
+
+    public ClasspathScanner(ASMMeta asmMeta, List<Path> roots) {
+        this.asmMeta = asmMeta;
+        this.roots = Collections.unmodifiableList(new ArrayList<>(roots));
+    }
+
+    public ASMMeta getAsmMeta() {
+        return this.asmMeta;
+    }
+
+    public List<Path> getRoots() {
+        return this.roots;
+    }
+
+    /**
+     * Scans all roots and applies the changes to the index.
+     *
+     * @return Changes applied to the index.
+     * @throws IOException If a root cannot be read.
+     */
+    public synchronized ScanResult scan() throws IOException {
+        Scan scan = new Scan(this.asmMeta.getPrefilter());
+
+        for (Path root : this.roots) {
+            RootState state = this.scanRoot(root, this.states.get(root), scan);
+
+            if (state == null)
+                this.states.remove(root);
+            else
+                this.states.put(root, state);
+        }
+
+        Set<String> removed = new HashSet<>();
+
+        for (String className : scan.rejected) {
+            if (this.asmMeta.remove(className))
+                removed.add(className);
+        }
+
+        for (String className : scan.dropped) {
+            // Classes still provided by another root were indexed again from that root.
+            if (!scan.claimed.contains(className) && this.asmMeta.remove(className))
+                removed.add(className);
+        }
+
+        return new ScanResult(scan.added, scan.changed, removed, scan.unchanged.get());
+    }
+
+    private RootState scanRoot(Path root, RootState state, Scan scan) throws IOException {
+        if (!Files.exists(root)) {
+            if (state != null)
+                scan.drop(state.records.values());
+
+            return null;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class);
+        long size = attributes.isDirectory() ? -1 : attributes.size();
+        long lastModified = attributes.isDirectory() ? -1 : attributes.lastModifiedTime().toMillis();
+
+        if (state != null && size != -1 && state.size == size && state.lastModified == lastModified && this.claimUnchanged(state, scan))
+            return state;
+
+        RootState next = new RootState(size, lastModified);
+        Map<String, Record> previous = state == null ? Collections.emptyMap() : new HashMap<>(state.records);
+
+        try (ClassSource source = ClassSources.of(root)) {
+            List<ClassEntry> pending = new ArrayList<>();
+
+            for (ClassEntry entry : source.getEntries()) {
+                Record old = previous.remove(entry.getName());
+                Record record = new Record(ClasspathScanner.toClassName(entry.getName()), entry.getSize(), entry.getLastModified());
+
+                next.records.put(entry.getName(), record);
+
+                if (!scan.claimed.add(record.className)) {
+                    // Shadowed by a previous root
+                    if (old != null)
+                        record.crc = old.crc;
+
+                    continue;
+                }
+
+                if (old != null && old.owner && record.size != -1 && record.size == old.size
+                        && record.lastModified != -1 && record.lastModified == old.lastModified) {
+                    record.crc = old.crc;
+                    record.owner = true;
+                    scan.unchanged.incrementAndGet();
+                    continue;
+                }
+
+                pending.add(new PendingEntry(entry, record, old, scan));
+            }
+
+            scan.drop(previous.values());
+
+            this.asmMeta.indexAll(new ClassSource() {
+                @Override
+                public List<ClassEntry> getEntries() {
+                    return pending;
+                }
+
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public String getName() {
+                    return source.getName();
+                }
+
+                @Override
+                public String toString() {
+                    return source.toString();
+                }
+            });
+        }
+
+        return next;
+    }
+
+    private boolean claimUnchanged(RootState state, Scan scan) {
+        for (Record record : state.records.values()) {
+            // A class that was shadowed is now visible, it must be read again.
+            if (!record.owner && !scan.claimed.contains(record.className))
+                return false;
+        }
+
+        for (Record record : state.records.values()) {
+            if (scan.claimed.add(record.className))
+                scan.unchanged.incrementAndGet();
+            else
+                record.owner = false;
+        }
+
+        return true;
+    }
+
+    private static String toClassName(String entryName) {
+        return entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.');
+    }
+
+    private static final class Scan {
+        private final AnnotationPrefilter prefilter;
+        private final Set<String> claimed = new HashSet<>();
+        private final Set<String> added = ConcurrentHashMap.newKeySet();
+        private final Set<String> changed = ConcurrentHashMap.newKeySet();
+        private final Set<String> dropped = new HashSet<>();
+        private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger unchanged = new AtomicInteger();
+
+        Scan(AnnotationPrefilter prefilter) {
+            this.prefilter = prefilter;
+        }
+
+        void drop(Iterable<Record> records) {
+            for (Record record : records) {
+                if (record.owner)
+                    this.dropped.add(record.className);
+            }
+        }
+    }
+
+    private static final class RootState {
+        private final long size;
+        private final long lastModified;
+        private final Map<String, Record> records = new HashMap<>();
+
+        RootState(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final class Record {
+        private final String className;
+        private final long size;
+        private final long lastModified;
+        private long crc = -1;
+        private boolean owner;
+
+        Record(String className, long size, long lastModified) {
+            this.className = className;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Entry that is only forwarded to the index if its content changed.
+     */
+    private static final class PendingEntry implements ClassEntry {
+        private final ClassEntry entry;
+        private final Record record;
+        private final Record old;
+        private final Scan scan;
+
+        PendingEntry(ClassEntry entry, Record record, Record old, Scan scan) {
+            this.entry = entry;
+            this.record = record;
+            this.old = old;
+            this.scan = scan;
+        }
+
+        @Override
+        public String getName() {
+            return this.entry.getName();
+        }
+
+        @Override
+        public long getSize() {
+            return this.entry.getSize();
+        }
+
+        @Override
+        public long getLastModified() {
+            return this.entry.getLastModified();
+        }
+
+        @Override
+        public byte[] read() throws IOException {
+            return this.entry.read();
+        }
+
+        @Override
+        public void read(ClassBytesConsumer consumer) throws IOException {
+            this.entry.read((bytes, offset, length) -> {
+                CRC32 crc32 = new CRC32();
+                crc32.update(bytes, offset, length);
+
+                Record old = this.old;
+                boolean wasOwner = old != null && old.owner;
+
+                this.record.crc = crc32.getValue();
+                this.record.owner = true;
+
+                if (wasOwner && old.crc == this.record.crc) {
+                    this.scan.unchanged.incrementAndGet();
+                    return;
+                }
+
+                AnnotationPrefilter prefilter = this.scan.prefilter;
+
+                if (prefilter != null && !prefilter.test(bytes, offset, length)) {
+                    // Previous content may have been indexed
+                    this.scan.rejected.add(this.record.className);
+                    return;
+                }
+
+                consumer.accept(bytes, offset, length);
+
+                (wasOwner ? this.scan.changed : this.scan.added).add(this.record.className);
+            });
+        }
+    }
+}
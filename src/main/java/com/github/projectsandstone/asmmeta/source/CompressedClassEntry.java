@@ -0,0 +1,150 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.source;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * {@link ClassEntry} holding a deflated copy of class bytes, used to keep classes around in a
+ * compact form.
+ */
+public final class CompressedClassEntry implements ClassEntry {
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[16384]);
+
+    private final String name;
+    private final byte[] deflated;
+    private final int size;
+
+    private CompressedClassEntry(String name, byte[] deflated, int size) {
+        this.name = name;
+        this.deflated = deflated;
+        this.size = size;
+    }
+
+    /**
+     * Creates an entry with a deflated copy of the class in range {@code [offset, offset +
+     * length)} of {@code bytes}.
+     *
+     * @param name   Name of the entry.
+     * @param bytes  Array containing the class bytes.
+     * @param offset Offset of the class in {@code bytes}.
+     * @param length Length of the class.
+     * @return Entry holding a deflated copy of the class.
+     */
+    public static CompressedClassEntry of(String name, byte[] bytes, int offset, int length) {
+        Deflater deflater = DEFLATER.get();
+        byte[] buffer = BUFFER.get();
+        int deflatedLength = 0;
+
+        deflater.reset();
+        deflater.setInput(bytes, offset, length);
+        deflater.finish();
+
+        while (!deflater.finished()) {
+            if (deflatedLength == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                BUFFER.set(buffer);
+            }
+
+            deflatedLength += deflater.deflate(buffer, deflatedLength, buffer.length - deflatedLength);
+        }
+
+        return new CompressedClassEntry(name, Arrays.copyOf(buffer, deflatedLength), length);
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public long getSize() {
+        return this.size;
+    }
+
+    @Override
+    public long getLastModified() {
+        return -1;
+    }
+
+    @Override
+    public boolean isDetached() {
+        return true;
+    }
+
+    /**
+     * Gets the size of the deflated copy.
+     *
+     * @return Size of the deflated copy.
+     */
+    public int getCompressedSize() {
+        return this.deflated.length;
+    }
+
+    @Override
+    public byte[] read() throws IOException {
+        byte[] bytes = new byte[this.size];
+        Inflater inflater = new Inflater(true);
+
+        try {
+            inflater.setInput(this.deflated);
+
+            int length = 0;
+
+            while (length < this.size && !inflater.finished()) {
+                int inflated = inflater.inflate(bytes, length, this.size - length);
+
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+
+                length += inflated;
+            }
+
+            if (length != this.size)
+                throw new ZipException("Size mismatch of '" + this.name + "', expected " + this.size + " bytes, found " + length + ".");
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid deflated data of '" + this.name + "': " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedClassEntry[name=" + this.name + ", size=" + this.size + ", compressedSize=" + this.deflated.length + "]";
+    }
+}
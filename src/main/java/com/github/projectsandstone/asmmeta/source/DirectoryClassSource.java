@@ -0,0 +1,126 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.source;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ClassSource} of a class directory, entries are named relative to the directory.
+ */
+public class DirectoryClassSource implements ClassSource {
+
+    private final Path root;
+
+    public DirectoryClassSource(Path root) {
+        this.root = root;
+    }
+
+    public Path getRoot() {
+        return this.root;
+    }
+
+    @Override
+    public List<ClassEntry> getEntries() throws IOException {
+        List<ClassEntry> entries = new ArrayList<>();
+
+        // Attributes are provided by the walk, so listing does not need a stat per file.
+        Files.walkFileTree(this.root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String name = DirectoryClassSource.this.root.relativize(file).toString().replace('\\', '/');
+
+                if (attrs.isRegularFile() && ClassSources.isClassEntry(name))
+                    entries.add(new Entry(file, name, attrs.size(), attrs.lastModifiedTime().toMillis()));
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return entries;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String getName() {
+        return this.root.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryClassSource[root=" + this.root + "]";
+    }
+
+    private static final class Entry implements ClassEntry {
+        private final Path path;
+        private final String name;
+        private final long size;
+        private final long lastModified;
+
+        Entry(Path path, String name, long size, long lastModified) {
+            this.path = path;
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public long getSize() {
+            return this.size;
+        }
+
+        @Override
+        public long getLastModified() {
+            return this.lastModified;
+        }
+
+        @Override
+        public boolean isDetached() {
+            return true;
+        }
+
+        @Override
+        public byte[] read() throws IOException {
+            return Files.readAllBytes(this.path);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.source;
+
+import com.github.projectsandstone.asmmeta.util.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * {@link ClassSource} of a jar (or zip) file backed by {@link ZipFile}.
+ */
+public class JarClassSource implements ClassSource {
+
+    private final Path path;
+    private final ZipFile zipFile;
+
+    public JarClassSource(Path path) throws IOException {
+        this.path = path;
+        this.zipFile = new ZipFile(path.toFile());
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    @Override
+    public List<ClassEntry> getEntries() {
+        List<ClassEntry> entries = new ArrayList<>(this.zipFile.size());
+
+        Enumeration<? extends ZipEntry> zipEntries = this.zipFile.entries();
+
+        while (zipEntries.hasMoreElements()) {
+            ZipEntry zipEntry = zipEntries.nextElement();
+
+            if (!zipEntry.isDirectory() && ClassSources.isClassEntry(zipEntry.getName()))
+                entries.add(new Entry(zipEntry));
+        }
+
+        return entries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.zipFile.close();
+    }
+
+    @Override
+    public String getName() {
+        return this.path.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "JarClassSource[path=" + this.path + "]";
+    }
+
+    private final class Entry implements ClassEntry {
+        private final ZipEntry zipEntry;
+
+        Entry(ZipEntry zipEntry) {
+            this.zipEntry = zipEntry;
+        }
+
+        @Override
+        public String getName() {
+            return this.zipEntry.getName();
+        }
+
+        @Override
+        public long getSize() {
+            return this.zipEntry.getSize();
+        }
+
+        @Override
+        public long getLastModified() {
+            return this.zipEntry.getTime();
+        }
+
+        @Override
+        public byte[] read() throws IOException {
+            try (InputStream inputStream = JarClassSource.this.zipFile.getInputStream(this.zipEntry)) {
+                return IOUtils.readFully(inputStream, (int) this.zipEntry.getSize());
+            }
+        }
+    }
+}
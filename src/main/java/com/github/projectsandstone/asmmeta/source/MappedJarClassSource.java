@@ -0,0 +1,362 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.source;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * {@link ClassSource} of a jar (or zip) file mapped in memory with {@link FileChannel#map}.
+ *
+ * The central directory is parsed directly from the mapped file and entries are read into pooled
+ * buffers (see {@link ClassEntry#read(ClassBytesConsumer)}), so reading an entry does not allocate
+ * nor issue a system call. STORED entries are copied once into a pooled buffer (because {@link
+ * org.objectweb.asm.ClassReader} only reads arrays) and DEFLATED entries are inflated into a pooled
+ * buffer by a pooled {@link Inflater}.
+ *
+ * ZIP64 archives are not supported, {@link ClassSources#of(Path)} falls back to {@link
+ * JarClassSource} for them.
+ */
+public class MappedJarClassSource implements ClassSource {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final List<ClassEntry> entries;
+    private final ConcurrentLinkedQueue<Buffers> pool = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Maps {@code path} and reads its central directory.
+     *
+     * @param path Jar file.
+     * @throws ZipException If the archive is invalid or not supported.
+     * @throws IOException  If the file cannot be mapped.
+     */
+    public MappedJarClassSource(Path path) throws IOException {
+        this.path = path;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE)
+                throw new ZipException("Cannot map '" + path + "', file is larger than 2GB.");
+
+            // The mapping stays valid after the channel is closed.
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.entries = Collections.unmodifiableList(this.readEntries());
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    @Override
+    public List<ClassEntry> getEntries() {
+        return this.entries;
+    }
+
+    private List<ClassEntry> readEntries() throws ZipException {
+        MappedByteBuffer buffer = this.buffer;
+        int end = this.findEnd();
+
+        int count = buffer.getShort(end + 10) & 0xFFFF;
+        long centralOffset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+
+        if (count == 0xFFFF || centralOffset == 0xFFFFFFFFL)
+            throw new ZipException("ZIP64 archives are not supported: '" + this.path + "'.");
+
+        List<ClassEntry> entries = new ArrayList<>(count);
+        // Offsets are checked as longs, corrupt archives must not overflow them.
+        long offset = centralOffset;
+
+        for (int i = 0; i < count; ++i) {
+            if (offset + CENTRAL_HEADER_SIZE > buffer.limit() || buffer.getInt((int) offset) != CENTRAL_HEADER_SIGNATURE)
+                throw new ZipException("Invalid central directory header at " + offset + " of '" + this.path + "'.");
+
+            int header = (int) offset;
+
+            int flags = buffer.getShort(header + 8) & 0xFFFF;
+            int method = buffer.getShort(header + 10) & 0xFFFF;
+            int dosTime = buffer.getInt(header + 12);
+            int compressedSize = buffer.getInt(header + 20);
+            int size = buffer.getInt(header + 24);
+            int nameLength = buffer.getShort(header + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(header + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(header + 32) & 0xFFFF;
+            int localOffset = buffer.getInt(header + 42);
+
+            if (offset + CENTRAL_HEADER_SIZE + nameLength > buffer.limit())
+                throw new ZipException("Truncated central directory header at " + offset + " of '" + this.path + "'.");
+
+            String name = this.readName(header + CENTRAL_HEADER_SIZE, nameLength);
+
+            if (!name.endsWith("/") && ClassSources.isClassEntry(name)) {
+                if (compressedSize < 0 || size < 0 || localOffset < 0)
+                    throw new ZipException("ZIP64 entries are not supported: '" + name + "' of '" + this.path + "'.");
+
+                if ((flags & 1) != 0)
+                    throw new ZipException("Encrypted entries are not supported: '" + name + "' of '" + this.path + "'.");
+
+                entries.add(new Entry(name, method, dosTime, compressedSize, size, localOffset));
+            }
+
+            offset += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        return entries;
+    }
+
+    private int findEnd() throws ZipException {
+        int limit = this.buffer.limit();
+        int min = Math.max(0, limit - END_SIZE - 0xFFFF);
+
+        for (int i = limit - END_SIZE; i >= min; --i) {
+            if (this.buffer.getInt(i) == END_SIGNATURE)
+                return i;
+        }
+
+        throw new ZipException("End of central directory not found in '" + this.path + "'.");
+    }
+
+    private String readName(int offset, int length) {
+        byte[] name = new byte[length];
+
+        for (int i = 0; i < length; ++i)
+            name[i] = this.buffer.get(offset + i);
+
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private Buffers acquire() {
+        Buffers buffers = this.pool.poll();
+
+        return buffers != null ? buffers : new Buffers(this.buffer);
+    }
+
+    private void release(Buffers buffers) {
+        buffers.inflater.reset();
+        this.pool.offer(buffers);
+    }
+
+    /**
+     * Releases pooled inflaters. The mapping itself is released when this source is garbage
+     * collected.
+     */
+    @Override
+    public void close() {
+        Buffers buffers;
+
+        while ((buffers = this.pool.poll()) != null)
+            buffers.inflater.end();
+    }
+
+    @Override
+    public String getName() {
+        return this.path.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "MappedJarClassSource[path=" + this.path + "]";
+    }
+
+    private static final class Buffers {
+        private final ByteBuffer view;
+        private final Inflater inflater = new Inflater(true);
+        private byte[] input = new byte[8192];
+        private byte[] output = new byte[16384];
+
+        Buffers(ByteBuffer buffer) {
+            this.view = buffer.duplicate();
+        }
+
+        byte[] input(int size) {
+            if (this.input.length < size)
+                this.input = new byte[Math.max(size, this.input.length * 2)];
+
+            return this.input;
+        }
+
+        byte[] output(int size) {
+            if (this.output.length < size)
+                this.output = new byte[Math.max(size, this.output.length * 2)];
+
+            return this.output;
+        }
+    }
+
+    private final class Entry implements ClassEntry {
+        private final String name;
+        private final int method;
+        private final int dosTime;
+        private final int compressedSize;
+        private final int size;
+        private final int localOffset;
+
+        Entry(String name, int method, int dosTime, int compressedSize, int size, int localOffset) {
+            this.name = name;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localOffset = localOffset;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public long getSize() {
+            return this.size;
+        }
+
+        @Override
+        public long getLastModified() {
+            int time = this.dosTime;
+
+            try {
+                LocalDateTime dateTime = LocalDateTime.of(
+                        ((time >> 25) & 0x7F) + 1980,
+                        (time >> 21) & 0x0F,
+                        (time >> 16) & 0x1F,
+                        (time >> 11) & 0x1F,
+                        (time >> 5) & 0x3F,
+                        (time << 1) & 0x3E);
+
+                return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (DateTimeException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public byte[] read() throws IOException {
+            byte[][] result = new byte[1][];
+
+            this.read((bytes, offset, length) -> result[0] = Arrays.copyOfRange(bytes, offset, offset + length));
+
+            return result[0];
+        }
+
+        @Override
+        public void read(ClassBytesConsumer consumer) throws IOException {
+            Buffers buffers = MappedJarClassSource.this.acquire();
+
+            try {
+                consumer.accept(this.readInto(buffers), 0, this.size);
+            } finally {
+                MappedJarClassSource.this.release(buffers);
+            }
+        }
+
+        private byte[] readInto(Buffers buffers) throws IOException {
+            MappedByteBuffer buffer = MappedJarClassSource.this.buffer;
+            int local = this.localOffset;
+
+            if ((long) local + LOCAL_HEADER_SIZE > buffer.limit() || buffer.getInt(local) != LOCAL_HEADER_SIGNATURE)
+                throw new ZipException("Invalid local header of '" + this.name + "' in '" + MappedJarClassSource.this.path + "'.");
+
+            long dataOffset = (long) local + LOCAL_HEADER_SIZE
+                    + (buffer.getShort(local + 26) & 0xFFFF)
+                    + (buffer.getShort(local + 28) & 0xFFFF);
+
+            if (dataOffset + this.compressedSize > buffer.limit() || (this.method == STORED && dataOffset + this.size > buffer.limit()))
+                throw new ZipException("Truncated entry '" + this.name + "' in '" + MappedJarClassSource.this.path + "'.");
+
+            ByteBuffer view = buffers.view;
+            view.position((int) dataOffset);
+
+            if (this.method == STORED) {
+                byte[] output = buffers.output(this.size);
+                view.get(output, 0, this.size);
+                return output;
+            }
+
+            if (this.method != DEFLATED)
+                throw new ZipException("Unsupported compression method " + this.method + " of '" + this.name + "' in '" + MappedJarClassSource.this.path + "'.");
+
+            byte[] input = buffers.input(this.compressedSize);
+            byte[] output = buffers.output(this.size);
+
+            view.get(input, 0, this.compressedSize);
+
+            Inflater inflater = buffers.inflater;
+            inflater.setInput(input, 0, this.compressedSize);
+
+            try {
+                int length = 0;
+
+                while (length < this.size) {
+                    int inflated = inflater.inflate(output, length, this.size - length);
+
+                    if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                        break;
+
+                    length += inflated;
+                }
+
+                if (length != this.size)
+                    throw new ZipException("Size mismatch of '" + this.name + "' in '" + MappedJarClassSource.this.path + "', expected " + this.size + " bytes, found " + length + ".");
+            } catch (DataFormatException e) {
+                throw new ZipException("Invalid deflated data of '" + this.name + "' in '" + MappedJarClassSource.this.path + "': " + e.getMessage());
+            }
+
+            return output;
+        }
+    }
+}
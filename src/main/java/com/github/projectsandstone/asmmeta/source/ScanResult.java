@@ -0,0 +1,79 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.source;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Changes applied to the index by a {@link ClasspathScanner#scan() scan}, classes are identified by
+ * their binary name.
+ */
+public final class ScanResult {
+
+    private final Set<String> added;
+    private final Set<String> changed;
+    private final Set<String> removed;
+    private final int unchanged;
+
+    public ScanResult(Set<String> added, Set<String> changed, Set<String> removed, int unchanged) {
+        this.added = Collections.unmodifiableSet(added);
+        this.changed = Collections.unmodifiableSet(changed);
+        this.removed = Collections.unmodifiableSet(removed);
+        this.unchanged = unchanged;
+    }
+
+    public Set<String> getAdded() {
+        return this.added;
+    }
+
+    public Set<String> getChanged() {
+        return this.changed;
+    }
+
+    public Set<String> getRemoved() {
+        return this.removed;
+    }
+
+    /**
+     * Gets the amount of classes that were not read again.
+     *
+     * @return Amount of classes that were not read again.
+     */
+    public int getUnchanged() {
+        return this.unchanged;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanResult[added=" + this.added.size()
+                + ", changed=" + this.changed.size()
+                + ", removed=" + this.removed.size()
+                + ", unchanged=" + this.unchanged + "]";
+    }
+}
@@ -0,0 +1,744 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.store;
+
+import com.github.projectsandstone.asmmeta.MemoryFootprint;
+import com.github.projectsandstone.asmmeta.data.IMetaData;
+import com.github.projectsandstone.asmmeta.data.MetaData;
+import com.github.projectsandstone.asmmeta.element.AnnotationElement;
+import com.github.projectsandstone.asmmeta.element.ClassElement;
+import com.github.projectsandstone.asmmeta.element.EnumElement;
+import com.github.projectsandstone.asmmeta.element.IAnnotationElement;
+import com.github.projectsandstone.asmmeta.element.IClassElement;
+import com.github.projectsandstone.asmmeta.element.IConstructorElement;
+import com.github.projectsandstone.asmmeta.element.IEnumElement;
+import com.github.projectsandstone.asmmeta.element.IFieldElement;
+import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.element.IMethodElement;
+import com.github.projectsandstone.asmmeta.element.MetaElement;
+import com.github.projectsandstone.asmmeta.resolver.Resolvers;
+import com.github.projectsandstone.asmmeta.util.ObjectSizes;
+import com.github.projectsandstone.asmmeta.util.SymbolTable;
+import com.github.projectsandstone.asmmeta.value.KeyedValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveArrayValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveValue;
+import com.github.projectsandstone.asmmeta.value.Value;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Store that keeps elements column-wise: each element is a row, and kinds, modifiers, name ids,
+ * descriptor ids, parents and child/sibling links are stored in {@code int} arrays. Elements
+ * returned by this store are flyweight views over a row, created on demand.
+ *
+ * Annotations are rows as well, their values are kept in a compact form and materialized as
+ * {@link AnnotationElement}s when requested through {@link IMetaElement#getMetaData()}.
+ *
+ * Views do not cache resolved instances. Rows of removed or replaced classes are not reclaimed.
+ *
+ * All members of a class are written when it is stored, so {@link
+ * com.github.projectsandstone.asmmeta.element.LazyClassElement lazy classes} are read when
+ * stored, and {@link com.github.projectsandstone.asmmeta.ASMMeta#setLazy(boolean) lazy
+ * reading} is rejected for indexes using this store. As rows are not reclaimed, {@link
+ * com.github.projectsandstone.asmmeta.ASMMeta#setMaxResidentClasses(int) bounded indexes} are
+ * rejected as well.
+ */
+public class ColumnarElementStore implements ElementStore {
+
+    private static final int CLASS = 0;
+    private static final int FIELD = 1;
+    private static final int METHOD = 2;
+    private static final int CONSTRUCTOR = 3;
+    private static final int ANNOTATION = 4;
+    private static final int NONE = -1;
+
+    private static final MemoryFootprint.Kind[] KINDS = {MemoryFootprint.Kind.CLASSES, MemoryFootprint.Kind.FIELDS,
+            MemoryFootprint.Kind.METHODS, MemoryFootprint.Kind.CONSTRUCTORS, MemoryFootprint.Kind.ANNOTATIONS};
+
+    // Bytes of a row in the int columns, from kinds to extras.
+    private static final int ROW_SIZE = 9 * 4;
+
+    private final SymbolTable symbolTable;
+    private final Resolvers resolvers;
+    private final Map<String, Integer> roots = new ConcurrentHashMap<>();
+    private final Map<String, IMetaElement<?>> view = Collections.unmodifiableMap(new RootMap());
+
+    // Replaced when grown, rows are written before their class is published in roots.
+    private volatile Columns columns = new Columns(1024, 256, 64);
+    private int rows;
+    private int classInfoSize;
+    private int valuesSize;
+
+    public ColumnarElementStore() {
+        this(new SymbolTable(), Resolvers.DEFAULT);
+    }
+
+    public ColumnarElementStore(SymbolTable symbolTable, Resolvers resolvers) {
+        this.symbolTable = symbolTable;
+        this.resolvers = resolvers;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable() {
+        return this.symbolTable;
+    }
+
+    /**
+     * Gets the amount of rows, including rows of removed classes.
+     *
+     * @return Amount of rows.
+     */
+    public synchronized int getRowCount() {
+        return this.rows;
+    }
+
+    @Override
+    public IMetaElement<?> get(String name) {
+        Integer row = this.roots.get(name);
+
+        return row == null ? null : this.view(row);
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return this.roots.containsKey(name);
+    }
+
+    @Override
+    public synchronized IMetaElement<?> put(String name, IClassElement element) {
+        int row = this.write(element, NONE);
+
+        this.roots.put(name, row);
+
+        return this.view(row);
+    }
+
+    @Override
+    public synchronized IMetaElement<?> putIfAbsent(String name, IClassElement element) {
+        Integer row = this.roots.get(name);
+
+        if (row == null) {
+            row = this.write(element, NONE);
+            this.roots.put(name, row);
+        }
+
+        return this.view(row);
+    }
+
+    @Override
+    public boolean remove(String name) {
+        return this.roots.remove(name) != null;
+    }
+
+    @Override
+    public Map<String, IMetaElement<?>> asMap() {
+        return this.view;
+    }
+
+    /**
+     * Adds rows to the footprint of the kind of their element, strings are kept by the symbol
+     * table and not counted here. Rows of removed or replaced classes and unused capacity are
+     * counted as {@link MemoryFootprint.Kind#INDEX index} structures.
+     */
+    @Override
+    public synchronized void measure(MemoryFootprint.Builder footprint, Function<String, String> sources) {
+        Columns columns = this.columns;
+        Map<Integer, String> names = new HashMap<>();
+
+        for (Map.Entry<String, Integer> root : this.roots.entrySet())
+            names.put(root.getValue(), root.getKey());
+
+        // Parents are written before their children.
+        String[] rowSources = new String[this.rows];
+
+        for (int row = 0; row < this.rows; ++row) {
+            int parent = columns.parents[row];
+            String name = parent == NONE ? names.get(row) : null;
+            String source = parent != NONE ? rowSources[parent] : name != null ? sources.apply(name) : null;
+            MemoryFootprint.Kind kind = source == null ? MemoryFootprint.Kind.INDEX : KINDS[columns.kinds[row]];
+
+            rowSources[row] = source;
+
+            if (source == null)
+                source = MemoryFootprint.INDEX_SOURCE;
+
+            footprint.add(kind, source, ROW_SIZE, kind == MemoryFootprint.Kind.INDEX ? 0 : 1);
+
+            if (columns.kinds[row] == CLASS)
+                footprint.add(kind, source, 4L * (2 + columns.classInfo[columns.extras[row] + 1]), 0);
+            else if (columns.kinds[row] == ANNOTATION)
+                footprint.addValue(columns.values[columns.extras[row]], source);
+        }
+
+        long unused = (long) ROW_SIZE * (columns.kinds.length - this.rows)
+                + 4L * (columns.classInfo.length - this.classInfoSize)
+                + ObjectSizes.ARRAY_HEADER * 11 + ObjectSizes.sizeOfArray(Object[].class, columns.values.length);
+
+        footprint.add(MemoryFootprint.Kind.INDEX, MemoryFootprint.INDEX_SOURCE,
+                unused + ObjectSizes.MAP_ENTRY * (long) this.roots.size() + ObjectSizes.sizeOfTable(this.roots.size()), 0);
+    }
+
+    // Writing
+
+    private int write(IMetaElement<?> element, int parent) {
+        int kind;
+
+        if (element instanceof IClassElement)
+            kind = CLASS;
+        else if (element instanceof IFieldElement)
+            kind = FIELD;
+        else if (element instanceof IMethodElement)
+            kind = METHOD;
+        else if (element instanceof IConstructorElement)
+            kind = CONSTRUCTOR;
+        else
+            throw new IllegalArgumentException("Unsupported element: '" + element + "'.");
+
+        int row = this.append(element, kind, parent);
+
+        // Writing may grow the columns, values are computed before reading this.columns.
+        if (kind == CLASS) {
+            int classInfo = this.writeClassInfo((IClassElement) element);
+            this.columns.extras[row] = classInfo;
+        }
+
+        int firstAnnotation = this.writeAnnotations(element.getMetaData().getAnnotationList(), row);
+        this.columns.firstAnnotations[row] = firstAnnotation;
+
+        int previous = NONE;
+
+        for (IMetaElement<?> child : element.getChildElements()) {
+            int childRow = this.write(child, row);
+
+            if (previous == NONE)
+                this.columns.firstChildren[row] = childRow;
+            else
+                this.columns.nextSiblings[previous] = childRow;
+
+            previous = childRow;
+        }
+
+        return row;
+    }
+
+    private int append(IMetaElement<?> element, int kind, int parent) {
+        if (this.rows == this.columns.kinds.length)
+            this.columns = this.columns.growRows();
+
+        Columns columns = this.columns;
+        int row = this.rows++;
+
+        columns.kinds[row] = kind;
+        columns.modifiers[row] = element.getModifiers();
+        columns.names[row] = this.id(element.getName());
+        columns.descs[row] = this.id(element.getDesc());
+        columns.parents[row] = parent;
+        columns.firstChildren[row] = NONE;
+        columns.nextSiblings[row] = NONE;
+        columns.firstAnnotations[row] = NONE;
+        columns.extras[row] = NONE;
+
+        return row;
+    }
+
+    private int id(String string) {
+        return string == null ? NONE : this.symbolTable.id(string);
+    }
+
+    private int writeClassInfo(IClassElement element) {
+        String[] interfaces = element.getInterfaces();
+        int count = interfaces == null ? 0 : interfaces.length;
+
+        while (this.classInfoSize + 2 + count > this.columns.classInfo.length)
+            this.columns = this.columns.growClassInfo();
+
+        int[] classInfo = this.columns.classInfo;
+        int offset = this.classInfoSize;
+
+        classInfo[offset] = this.id(element.getSuperClass());
+        classInfo[offset + 1] = count;
+
+        for (int i = 0; i < count; ++i)
+            classInfo[offset + 2 + i] = this.id(interfaces[i]);
+
+        this.classInfoSize += 2 + count;
+
+        return offset;
+    }
+
+    private int writeAnnotations(List<? extends IMetaElement<Annotation>> annotations, int parent) {
+        int first = NONE;
+        int previous = NONE;
+
+        for (IMetaElement<Annotation> annotation : annotations) {
+            int row = this.writeAnnotation(annotation, parent);
+
+            if (previous == NONE)
+                first = row;
+            else
+                this.columns.nextSiblings[previous] = row;
+
+            previous = row;
+        }
+
+        return first;
+    }
+
+    private int writeAnnotation(IMetaElement<Annotation> annotation, int parent) {
+        int row = this.append(annotation, ANNOTATION, parent);
+
+        int firstAnnotation = this.writeAnnotations(annotation.getMetaData().getAnnotationList(), row);
+        this.columns.firstAnnotations[row] = firstAnnotation;
+
+        if (annotation instanceof IAnnotationElement) {
+            Object[] values = this.encodeValues(((IAnnotationElement) annotation).getValues(), row);
+
+            if (this.valuesSize == this.columns.values.length)
+                this.columns = this.columns.growValues();
+
+            this.columns.values[this.valuesSize] = values;
+            this.columns.extras[row] = this.valuesSize++;
+        }
+
+        return row;
+    }
+
+    private Object[] encodeValues(List<Value<?>> values, int owner) {
+        // Pairs of interned key (null for array entries) and encoded value
+        Object[] encoded = new Object[values.size() * 2];
+
+        for (int i = 0; i < values.size(); ++i) {
+            Value<?> value = values.get(i);
+
+            if (value instanceof KeyedValue<?, ?>)
+                encoded[i * 2] = this.symbolTable.intern(String.valueOf(((KeyedValue<?, ?>) value).getKey()));
+
+            // Primitive arrays are kept as the original arrays.
+            encoded[i * 2 + 1] = value instanceof PrimitiveArrayValue
+                    ? ((PrimitiveArrayValue) value).getArray()
+                    : this.encodeValue(value.getValue(), owner);
+        }
+
+        return encoded;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object encodeValue(Object value, int owner) {
+        if (value instanceof IAnnotationElement)
+            return new AnnotationRef(this.writeAnnotation((IAnnotationElement) value, owner));
+
+        if (value instanceof IEnumElement)
+            return new EnumRef(this.symbolTable.intern(((IEnumElement) value).getName()), this.symbolTable.intern(((IEnumElement) value).getDesc()));
+
+        if (value instanceof IClassElement)
+            return new ClassRef(this.symbolTable.intern(((IClassElement) value).getName()));
+
+        if (value instanceof List<?>)
+            return this.encodeValues((List<Value<?>>) value, owner);
+
+        return value;
+    }
+
+    // Reading
+
+    private String symbol(int id) {
+        return id == NONE ? null : this.symbolTable.get(id);
+    }
+
+    private IMetaElement<?> view(int row) {
+        switch (this.columns.kinds[row]) {
+            case CLASS:
+                return new ClassView(row);
+            case FIELD:
+                return new FieldView(row);
+            case METHOD:
+                return new MethodView(row);
+            case CONSTRUCTOR:
+                return new ConstructorView(row);
+            default:
+                throw new IllegalStateException("Row " + row + " is not an element.");
+        }
+    }
+
+    private List<MetaElement<Annotation>> annotations(int first, IMetaElement<?> enclosing) {
+        if (first == NONE)
+            return Collections.emptyList();
+
+        List<MetaElement<Annotation>> annotations = new ArrayList<>();
+
+        for (int row = first; row != NONE; row = this.columns.nextSiblings[row])
+            annotations.add(this.annotation(row, enclosing));
+
+        return Collections.unmodifiableList(annotations);
+    }
+
+    private AnnotationElement annotation(int row, IMetaElement<?> enclosing) {
+        Columns columns = this.columns;
+
+        AnnotationElement annotationElement = new AnnotationElement(enclosing,
+                columns.modifiers[row],
+                this.symbol(columns.names[row]),
+                this.symbol(columns.descs[row]),
+                new MetaData(),
+                this.resolvers.getAnnotationResolver());
+
+        annotationElement.getMetaData().getAnnotationList().addAll(this.annotations(columns.firstAnnotations[row], annotationElement));
+
+        if (columns.extras[row] != NONE)
+            this.decodeValues(columns.values[columns.extras[row]], annotationElement, annotationElement.getValues());
+
+        annotationElement.immutate();
+
+        return annotationElement;
+    }
+
+    private void decodeValues(Object[] encoded, AnnotationElement owner, List<Value<?>> values) {
+        for (int i = 0; i < encoded.length; i += 2) {
+            String key = (String) encoded[i];
+            Object value = this.decodeValue(encoded[i + 1], owner);
+
+            if (key == null)
+                values.add(new Value<>(value));
+            else if (PrimitiveValue.isPrimitive(value))
+                values.add(new PrimitiveValue(key, value));
+            else if (PrimitiveArrayValue.isPrimitiveArray(value))
+                values.add(new PrimitiveArrayValue(key, value));
+            else
+                values.add(new KeyedValue<>(key, value));
+        }
+    }
+
+    private Object decodeValue(Object encoded, AnnotationElement owner) {
+        if (encoded instanceof AnnotationRef)
+            return this.annotation(((AnnotationRef) encoded).row, owner);
+
+        if (encoded instanceof ClassRef) {
+            ClassElement classElement = new ClassElement(owner, 0, ((ClassRef) encoded).name, "", new MetaData(),
+                    this.resolvers.getClassResolver(), null, new String[0]);
+            classElement.immutate();
+            return classElement;
+        }
+
+        if (encoded instanceof EnumRef) {
+            EnumElement enumElement = new EnumElement(owner, 0, ((EnumRef) encoded).name, ((EnumRef) encoded).desc, new MetaData(),
+                    this.resolvers.getEnumResolver());
+            enumElement.immutate();
+            return enumElement;
+        }
+
+        if (encoded instanceof Object[]) {
+            List<Value<?>> list = new ArrayList<>();
+            this.decodeValues((Object[]) encoded, owner, list);
+            return list;
+        }
+
+        return encoded;
+    }
+
+    private static final class Columns {
+        private final int[] kinds;
+        private final int[] modifiers;
+        private final int[] names;
+        private final int[] descs;
+        private final int[] parents;
+        private final int[] firstChildren;
+        private final int[] nextSiblings;
+        private final int[] firstAnnotations;
+        // Class rows: offset in classInfo, annotation rows: index in values.
+        private final int[] extras;
+        // Per class: super class id, interface count, interface ids.
+        private final int[] classInfo;
+        private final Object[][] values;
+
+        Columns(int rows, int classInfo, int values) {
+            this(new int[rows], new int[rows], new int[rows], new int[rows], new int[rows], new int[rows],
+                    new int[rows], new int[rows], new int[rows], new int[classInfo], new Object[values][]);
+        }
+
+        private Columns(int[] kinds, int[] modifiers, int[] names, int[] descs, int[] parents, int[] firstChildren,
+                        int[] nextSiblings, int[] firstAnnotations, int[] extras, int[] classInfo, Object[][] values) {
+            this.kinds = kinds;
+            this.modifiers = modifiers;
+            this.names = names;
+            this.descs = descs;
+            this.parents = parents;
+            this.firstChildren = firstChildren;
+            this.nextSiblings = nextSiblings;
+            this.firstAnnotations = firstAnnotations;
+            this.extras = extras;
+            this.classInfo = classInfo;
+            this.values = values;
+        }
+
+        Columns growRows() {
+            int rows = this.kinds.length * 2;
+
+            return new Columns(Arrays.copyOf(this.kinds, rows), Arrays.copyOf(this.modifiers, rows),
+                    Arrays.copyOf(this.names, rows), Arrays.copyOf(this.descs, rows), Arrays.copyOf(this.parents, rows),
+                    Arrays.copyOf(this.firstChildren, rows), Arrays.copyOf(this.nextSiblings, rows),
+                    Arrays.copyOf(this.firstAnnotations, rows), Arrays.copyOf(this.extras, rows), this.classInfo, this.values);
+        }
+
+        Columns growClassInfo() {
+            return new Columns(this.kinds, this.modifiers, this.names, this.descs, this.parents, this.firstChildren,
+                    this.nextSiblings, this.firstAnnotations, this.extras, Arrays.copyOf(this.classInfo, this.classInfo.length * 2),
+                    this.values);
+        }
+
+        Columns growValues() {
+            return new Columns(this.kinds, this.modifiers, this.names, this.descs, this.parents, this.firstChildren,
+                    this.nextSiblings, this.firstAnnotations, this.extras, this.classInfo,
+                    Arrays.copyOf(this.values, this.values.length * 2));
+        }
+    }
+
+    private static final class AnnotationRef {
+        private final int row;
+
+        AnnotationRef(int row) {
+            this.row = row;
+        }
+    }
+
+    private static final class ClassRef {
+        private final String name;
+
+        ClassRef(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class EnumRef {
+        private final String name;
+        private final String desc;
+
+        EnumRef(String name, String desc) {
+            this.name = name;
+            this.desc = desc;
+        }
+    }
+
+    private abstract class View<T> implements IMetaElement<T>, IMetaData {
+        final int row;
+        private final Function<IMetaElement<T>, T> resolver;
+
+        View(int row, Function<IMetaElement<T>, T> resolver) {
+            this.row = row;
+            this.resolver = resolver;
+        }
+
+        @Override
+        public IMetaElement<?> getEnclosingElement() {
+            int parent = ColumnarElementStore.this.columns.parents[this.row];
+
+            return parent == NONE ? null : ColumnarElementStore.this.view(parent);
+        }
+
+        @Override
+        public int getModifiers() {
+            return ColumnarElementStore.this.columns.modifiers[this.row];
+        }
+
+        @Override
+        public String getDesc() {
+            return ColumnarElementStore.this.symbol(ColumnarElementStore.this.columns.descs[this.row]);
+        }
+
+        @Override
+        public String getName() {
+            return ColumnarElementStore.this.symbol(ColumnarElementStore.this.columns.names[this.row]);
+        }
+
+        @Override
+        public IMetaData getMetaData() {
+            return this;
+        }
+
+        @Override
+        public List<MetaElement<Annotation>> getAnnotationList() {
+            return ColumnarElementStore.this.annotations(ColumnarElementStore.this.columns.firstAnnotations[this.row], this);
+        }
+
+        @Override
+        public List<IMetaElement<?>> getChildElements() {
+            Columns columns = ColumnarElementStore.this.columns;
+            int first = columns.firstChildren[this.row];
+
+            if (first == NONE)
+                return Collections.emptyList();
+
+            List<IMetaElement<?>> children = new ArrayList<>();
+
+            for (int child = first; child != NONE; child = columns.nextSiblings[child])
+                children.add(ColumnarElementStore.this.view(child));
+
+            return Collections.unmodifiableList(children);
+        }
+
+        @Override
+        public T resolve() {
+            return this.resolver.apply(this);
+        }
+
+        @Override
+        public T getResolvedInstance() {
+            return this.resolve();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof View<?>
+                    && ((View<?>) obj).row == this.row
+                    && ((View<?>) obj).getStore() == this.getStore();
+        }
+
+        private ColumnarElementStore getStore() {
+            return ColumnarElementStore.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.row;
+        }
+
+        @Override
+        public String toString() {
+            IMetaElement<?> enclosing = this.getEnclosingElement();
+
+            return this.getClass().getSimpleName() + "[enclosing=" + (enclosing == null ? "null" : enclosing.getName())
+                    + ", modifiers=" + this.getModifiers()
+                    + ", name=" + this.getName()
+                    + ", desc=" + this.getDesc() + "]";
+        }
+    }
+
+    private final class ClassView extends View<Class<?>> implements IClassElement {
+        ClassView(int row) {
+            super(row, ColumnarElementStore.this.resolvers.getClassResolver());
+        }
+
+        @Override
+        public String getSuperClass() {
+            Columns columns = ColumnarElementStore.this.columns;
+
+            return ColumnarElementStore.this.symbol(columns.classInfo[columns.extras[this.row]]);
+        }
+
+        @Override
+        public String[] getInterfaces() {
+            Columns columns = ColumnarElementStore.this.columns;
+            int offset = columns.extras[this.row];
+            String[] interfaces = new String[columns.classInfo[offset + 1]];
+
+            for (int i = 0; i < interfaces.length; ++i)
+                interfaces[i] = ColumnarElementStore.this.symbol(columns.classInfo[offset + 2 + i]);
+
+            return interfaces;
+        }
+    }
+
+    private final class FieldView extends View<Field> implements IFieldElement {
+        FieldView(int row) {
+            super(row, ColumnarElementStore.this.resolvers.getFieldResolver());
+        }
+    }
+
+    private final class MethodView extends View<Method> implements IMethodElement {
+        MethodView(int row) {
+            super(row, ColumnarElementStore.this.resolvers.getMethodResolver());
+        }
+    }
+
+    private final class ConstructorView extends View<Constructor<?>> implements IConstructorElement {
+        ConstructorView(int row) {
+            super(row, ColumnarElementStore.this.resolvers.getConstructorResolver());
+        }
+    }
+
+    private final class RootMap extends AbstractMap<String, IMetaElement<?>> {
+
+        @Override
+        public IMetaElement<?> get(Object key) {
+            return key instanceof String ? ColumnarElementStore.this.get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return ColumnarElementStore.this.roots.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return ColumnarElementStore.this.roots.size();
+        }
+
+        @Override
+        public Set<Entry<String, IMetaElement<?>>> entrySet() {
+            return new AbstractSet<Entry<String, IMetaElement<?>>>() {
+                @Override
+                public Iterator<Entry<String, IMetaElement<?>>> iterator() {
+                    Iterator<Entry<String, Integer>> iterator = ColumnarElementStore.this.roots.entrySet().iterator();
+
+                    return new Iterator<Entry<String, IMetaElement<?>>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, IMetaElement<?>> next() {
+                            Entry<String, Integer> entry = iterator.next();
+
+                            return new SimpleImmutableEntry<>(entry.getKey(), ColumnarElementStore.this.view(entry.getValue()));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ColumnarElementStore.this.roots.size();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.store;
+
+import com.github.projectsandstone.asmmeta.MemoryFootprint;
+import com.github.projectsandstone.asmmeta.element.IClassElement;
+import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.util.ObjectSizes;
+import com.github.projectsandstone.asmmeta.util.SymbolTable;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Storage of the classes of an {@link com.github.projectsandstone.asmmeta.ASMMeta index}, keyed by
+ * binary name. Implementations must be thread-safe.
+ */
+public interface ElementStore {
+
+    /**
+     * Gets the table that interns names and descriptors of stored elements.
+     *
+     * @return Symbol table of this store.
+     */
+    SymbolTable getSymbolTable();
+
+    /**
+     * Gets class {@code name}.
+     *
+     * @param name Binary name of the class.
+     * @return Class {@code name}, or null if not stored.
+     */
+    IMetaElement<?> get(String name);
+
+    /**
+     * Returns true if class {@code name} is stored.
+     *
+     * @param name Binary name of the class.
+     * @return True if class {@code name} is stored.
+     */
+    boolean contains(String name);
+
+    /**
+     * Stores {@code element} as class {@code name}, replacing the previous class.
+     *
+     * @param name    Binary name of the class.
+     * @param element Class.
+     * @return Stored class, as returned by {@link #get(String)}.
+     */
+    IMetaElement<?> put(String name, IClassElement element);
+
+    /**
+     * Stores {@code element} as class {@code name} if no class is stored with this name.
+     *
+     * @param name    Binary name of the class.
+     * @param element Class.
+     * @return Stored class, {@code element} if it was stored.
+     */
+    IMetaElement<?> putIfAbsent(String name, IClassElement element);
+
+    /**
+     * Removes class {@code name}.
+     *
+     * @param name Binary name of the class.
+     * @return True if the class was stored.
+     */
+    boolean remove(String name);
+
+    /**
+     * Gets an unmodifiable view of all stored classes.
+     *
+     * @return Unmodifiable view of all stored classes.
+     */
+    Map<String, IMetaElement<?>> asMap();
+
+    /**
+     * Adds the estimated heap retained by this store to {@code footprint}. By default, stored
+     * element trees are walked and the map of classes is counted as a concurrent hash map.
+     *
+     * @param footprint Footprint to add to.
+     * @param sources   Function that gives the source of a stored class from its name.
+     */
+    default void measure(MemoryFootprint.Builder footprint, Function<String, String> sources) {
+        Map<String, IMetaElement<?>> classes = this.asMap();
+
+        for (Map.Entry<String, IMetaElement<?>> entry : classes.entrySet())
+            footprint.addElement(entry.getValue(), sources.apply(entry.getKey()));
+
+        footprint.add(MemoryFootprint.Kind.INDEX, MemoryFootprint.INDEX_SOURCE,
+                ObjectSizes.MAP_ENTRY * (long) classes.size() + ObjectSizes.sizeOfTable(classes.size()), 0);
+    }
+}
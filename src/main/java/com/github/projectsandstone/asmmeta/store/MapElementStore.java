@@ -0,0 +1,93 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.store;
+
+import com.github.projectsandstone.asmmeta.element.IClassElement;
+import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.util.SymbolTable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Default store, keeps element trees as they were read.
+ */
+public class MapElementStore implements ElementStore {
+
+    private final SymbolTable symbolTable;
+    private final Map<String, IMetaElement<?>> index = new ConcurrentHashMap<>();
+    private final Map<String, IMetaElement<?>> unmodIndex = Collections.unmodifiableMap(this.index);
+
+    public MapElementStore() {
+        this(new SymbolTable());
+    }
+
+    public MapElementStore(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable() {
+        return this.symbolTable;
+    }
+
+    @Override
+    public IMetaElement<?> get(String name) {
+        return this.index.get(name);
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return this.index.containsKey(name);
+    }
+
+    @Override
+    public IMetaElement<?> put(String name, IClassElement element) {
+        this.index.put(name, element);
+
+        return element;
+    }
+
+    @Override
+    public IMetaElement<?> putIfAbsent(String name, IClassElement element) {
+        IMetaElement<?> previous = this.index.putIfAbsent(name, element);
+
+        return previous != null ? previous : element;
+    }
+
+    @Override
+    public boolean remove(String name) {
+        return this.index.remove(name) != null;
+    }
+
+    @Override
+    public Map<String, IMetaElement<?>> asMap() {
+        return this.unmodIndex;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.util;
+
+/**
+ * Numeric ids of indexed elements, see {@link com.github.projectsandstone.asmmeta.ASMMeta#getId}.
+ *
+ * An id packs the ordinal of the class in the high 32 bits and the ordinal of the member (its
+ * position in {@link com.github.projectsandstone.asmmeta.element.IMetaElement#getChildElements()
+ * the children of the class}) plus one in the low 32 bits, so the id of a class has its low bits
+ * clear and ids of the members of a class follow the id of the class.
+ */
+public final class ElementIds {
+
+    /**
+     * Id of elements that are not indexed.
+     */
+    public static final long NONE = -1L;
+
+    private ElementIds() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Gets the id of the member {@code memberOrdinal} of class {@code classOrdinal}.
+     *
+     * @param classOrdinal  Ordinal of the class.
+     * @param memberOrdinal Ordinal of the member, or -1 for the class itself.
+     * @return Id of the member.
+     */
+    public static long of(int classOrdinal, int memberOrdinal) {
+        if (classOrdinal < 0 || memberOrdinal < -1)
+            throw new IllegalArgumentException("Invalid ordinals: " + classOrdinal + ", " + memberOrdinal + ".");
+
+        return ((long) classOrdinal << 32) | (memberOrdinal + 1);
+    }
+
+    /**
+     * Gets the id of class {@code classOrdinal}.
+     *
+     * @param classOrdinal Ordinal of the class.
+     * @return Id of the class.
+     */
+    public static long ofClass(int classOrdinal) {
+        return ElementIds.of(classOrdinal, -1);
+    }
+
+    public static int getClassOrdinal(long id) {
+        return (int) (id >>> 32);
+    }
+
+    /**
+     * Gets the member ordinal of {@code id}.
+     *
+     * @param id Id.
+     * @return Ordinal of the member, or -1 if {@code id} is the id of a class.
+     */
+    public static int getMemberOrdinal(long id) {
+        return (int) id - 1;
+    }
+
+    public static boolean isClass(long id) {
+        return (int) id == 0;
+    }
+
+    /**
+     * Gets the id of the class that declares the member {@code id}.
+     *
+     * @param id Id.
+     * @return Id of the class.
+     */
+    public static long getClassId(long id) {
+        return id & 0xFFFFFFFF00000000L;
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.util;
+
+import com.github.projectsandstone.asmmeta.value.KeyedValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveArrayValue;
+import com.github.projectsandstone.asmmeta.value.Value;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list backed by an exact-size array.
+ *
+ * {@link #freeze(List)} converts the growable lists of element trees to the smallest immutable
+ * form: a shared empty list, a singleton list or a {@code FrozenList}. The bytes saved by freezing
+ * are estimated for a 64-bit JVM with compressed oops ({@link #estimateSavedBytes(List)}), from
+ * the capacity of lists created by {@link #withCapacity(int)} or from the default {@link
+ * ArrayList} growth policy.
+ */
+public final class FrozenList<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final Class<?> SINGLETON_LIST = Collections.singletonList(null).getClass();
+    private static final int DEFAULT_CAPACITY = 10;
+
+    private final Object[] elements;
+
+    private FrozenList(Object[] elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * Freezes {@code list}. Frozen lists are returned as is.
+     *
+     * @param list List to freeze.
+     * @param <E>  Element type.
+     * @return Immutable copy of {@code list}.
+     */
+    public static <E> List<E> freeze(List<E> list) {
+        if (FrozenList.isFrozen(list))
+            return list;
+
+        int size = list.size();
+        List<E> frozen;
+
+        if (size == 0)
+            frozen = Collections.emptyList();
+        else if (size == 1)
+            frozen = Collections.singletonList(list.get(0));
+        else
+            frozen = new FrozenList<>(list.toArray());
+
+        return frozen;
+    }
+
+    /**
+     * Creates a growable list that keeps track of its capacity, so the bytes saved by freezing it
+     * are estimated from its actual capacity.
+     *
+     * @param capacity Initial capacity.
+     * @param <E>      Element type.
+     * @return Empty growable list.
+     */
+    public static <E> List<E> withCapacity(int capacity) {
+        return new PresizedList<>(capacity);
+    }
+
+    /**
+     * Estimates the bytes that {@link #freeze(List) freezing} {@code list} saves, nested lists
+     * are not counted.
+     *
+     * @param list List to freeze.
+     * @return Estimated amount of bytes saved, {@code 0} for frozen lists.
+     */
+    public static long estimateSavedBytes(List<?> list) {
+        if (FrozenList.isFrozen(list))
+            return 0;
+
+        return FrozenList.estimateSize(list) - FrozenList.estimateFrozenSize(list.size());
+    }
+
+    /**
+     * Freezes annotation {@code values} and the arrays they contain.
+     *
+     * @param values Values to freeze.
+     * @return Immutable copy of {@code values}.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Value<?>> freezeValues(List<Value<?>> values) {
+        if (FrozenList.isFrozen(values))
+            return values;
+
+        for (int i = 0; i < values.size(); ++i) {
+            Value<?> value = values.get(i);
+
+            if (value instanceof PrimitiveArrayValue)
+                continue;
+
+            if (value.getValue() instanceof List<?> && !FrozenList.isFrozen((List<?>) value.getValue())) {
+                List<Value<?>> array = FrozenList.freezeValues((List<Value<?>>) value.getValue());
+
+                values.set(i, value instanceof KeyedValue<?, ?>
+                        ? new KeyedValue<>(((KeyedValue<?, ?>) value).getKey(), array)
+                        : new Value<>(array));
+            }
+        }
+
+        return FrozenList.freeze(values);
+    }
+
+    private static boolean isFrozen(List<?> list) {
+        return list instanceof FrozenList<?> || list == Collections.emptyList() || list.getClass() == SINGLETON_LIST;
+    }
+
+    private static long estimateSize(List<?> list) {
+        if (list instanceof PresizedList<?>)
+            return 24 + estimateArraySize(((PresizedList<?>) list).capacity);
+
+        int size = list.size();
+        int capacity = size == 0 ? 0 : FrozenList.grow(DEFAULT_CAPACITY, size);
+
+        if (!(list instanceof ArrayList<?>)) {
+            // Unmodifiable wrapper of an array list
+            return 24 + 24 + estimateArraySize(capacity);
+        }
+
+        return 24 + estimateArraySize(capacity);
+    }
+
+    private static long estimateArraySize(int capacity) {
+        return capacity == 0 ? 0 : align(16 + 4L * capacity);
+    }
+
+    // Same policy as ArrayList: grows by half of the capacity, or to the required capacity.
+    private static int grow(int capacity, int required) {
+        while (capacity < required)
+            capacity = Math.max(capacity + (capacity >> 1), capacity + 1);
+
+        return capacity;
+    }
+
+    private static long estimateFrozenSize(int size) {
+        if (size == 0)
+            return 0;
+
+        if (size == 1)
+            return 16;
+
+        return 16 + align(16 + 4L * size);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E get(int index) {
+        return (E) this.elements[index];
+    }
+
+    @Override
+    public int size() {
+        return this.elements.length;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return this.elements.clone();
+    }
+
+    private static final class PresizedList<E> extends ArrayList<E> {
+        private static final long serialVersionUID = 1L;
+
+        private int capacity;
+
+        PresizedList(int capacity) {
+            super(capacity);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void ensureCapacity(int minCapacity) {
+            super.ensureCapacity(minCapacity);
+
+            if (minCapacity > this.capacity)
+                this.capacity = Math.max(this.capacity + (this.capacity >> 1), minCapacity);
+        }
+
+        @Override
+        public boolean add(E e) {
+            this.capacity = FrozenList.grow(this.capacity, this.size() + 1);
+
+            return super.add(e);
+        }
+
+        @Override
+        public void add(int index, E element) {
+            this.capacity = FrozenList.grow(this.capacity, this.size() + 1);
+
+            super.add(index, element);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class IOUtils {
+
+    /**
+     * Reads all bytes of {@code inputStream}.
+     *
+     * @param inputStream Input stream to read.
+     * @param sizeHint    Expected size, or a negative value if unknown.
+     * @return All bytes of {@code inputStream}.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static byte[] readFully(InputStream inputStream, int sizeHint) throws IOException {
+        byte[] buffer = new byte[sizeHint >= 0 ? sizeHint : 4096];
+        int length = 0;
+
+        while (true) {
+            if (length == buffer.length) {
+                // Probe for end of stream before growing, sizeHint is usually exact.
+                int read = inputStream.read();
+
+                if (read == -1)
+                    return buffer;
+
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, 4096));
+                buffer[length++] = (byte) read;
+            }
+
+            int read = inputStream.read(buffer, length, buffer.length - length);
+
+            if (read == -1)
+                return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+
+            length += read;
+        }
+    }
+
+}
@@ -0,0 +1,315 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.util;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+/**
+ * Open addressing map from {@code long} keys to objects, keys are not boxed.
+ *
+ * Keys and values are kept in two parallel arrays probed linearly. Reads are optimistic and do not
+ * lock unless they race with a write, writes are serialized.
+ *
+ * @param <V> Value type.
+ */
+public final class LongObjectMap<V> {
+
+    private static final float LOAD_FACTOR = 0.5F;
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Table table;
+    private int size;
+
+    public LongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * Creates a map that holds {@code expectedSize} entries without growing.
+     *
+     * @param expectedSize Expected amount of entries.
+     */
+    public LongObjectMap(int expectedSize) {
+        this.table = new Table(LongObjectMap.capacity(expectedSize));
+    }
+
+    /**
+     * Gets the value of {@code key}.
+     *
+     * @param key Key.
+     * @return Value of {@code key}, or null if there is no value for {@code key}.
+     */
+    public V get(long key) {
+        long stamp = this.lock.tryOptimisticRead();
+
+        if (stamp != 0L) {
+            V value = this.table.get(key);
+
+            if (this.lock.validate(stamp))
+                return value;
+        }
+
+        stamp = this.lock.readLock();
+
+        try {
+            return this.table.get(key);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return this.get(key) != null;
+    }
+
+    /**
+     * Associates {@code value} with {@code key}.
+     *
+     * @param key   Key.
+     * @param value Value, not null.
+     * @return Previous value of {@code key}, or null if there was no value for {@code key}.
+     */
+    public V put(long key, V value) {
+        return this.insert(key, value, true);
+    }
+
+    /**
+     * Gets the value of {@code key}, computing and storing it with {@code function} if there is no
+     * value for {@code key}. {@code function} is called without holding the lock, so it may run
+     * more than once for the same key.
+     *
+     * @param key      Key.
+     * @param function Function that computes the value, may return null to store nothing.
+     * @return Current value of {@code key}, or null if {@code function} returned null.
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> function) {
+        V value = this.get(key);
+
+        if (value != null)
+            return value;
+
+        value = function.apply(key);
+
+        if (value == null)
+            return null;
+
+        V existing = this.insert(key, value, false);
+
+        return existing != null ? existing : value;
+    }
+
+    /**
+     * Removes the value of {@code key}.
+     *
+     * @param key Key.
+     * @return Removed value, or null if there was no value for {@code key}.
+     */
+    public V remove(long key) {
+        long stamp = this.lock.writeLock();
+
+        try {
+            Table table = this.table;
+            int slot = table.find(key);
+
+            @SuppressWarnings("unchecked")
+            V old = (V) table.values[slot];
+
+            if (old == null)
+                return null;
+
+            table.delete(slot);
+            --this.size;
+
+            return old;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = this.lock.writeLock();
+
+        try {
+            this.table = new Table(this.table.keys.length);
+            this.size = 0;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = this.lock.readLock();
+
+        try {
+            return this.size;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Estimates the heap used by this map, excluding the values.
+     *
+     * @return Estimated size of this map.
+     */
+    public long estimateSize() {
+        Table table = this.table;
+
+        return ObjectSizes.sizeOfArray(long.class, table.keys.length) + ObjectSizes.sizeOfArray(Object.class, table.values.length);
+    }
+
+    private V insert(long key, V value, boolean replace) {
+        if (value == null)
+            throw new NullPointerException("Value cannot be null.");
+
+        long stamp = this.lock.writeLock();
+
+        try {
+            Table table = this.table;
+            int slot = table.find(key);
+
+            @SuppressWarnings("unchecked")
+            V old = (V) table.values[slot];
+
+            if (old != null) {
+                if (replace)
+                    table.values[slot] = value;
+
+                return old;
+            }
+
+            if (this.size + 1 > table.keys.length * LOAD_FACTOR) {
+                this.table = table = table.resize(table.keys.length * 2);
+                slot = table.find(key);
+            }
+
+            table.keys[slot] = key;
+            table.values[slot] = value;
+            ++this.size;
+
+            return null;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    private static int capacity(int expectedSize) {
+        int capacity = 16;
+
+        while (capacity * LOAD_FACTOR < expectedSize)
+            capacity <<= 1;
+
+        return capacity;
+    }
+
+    private static int mix(long key) {
+        // Murmur3 finalizer, ids differ mostly in their high bits.
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+
+        return (int) key;
+    }
+
+    private static final class Table {
+        // A slot is used when its value is not null.
+        private final long[] keys;
+        private final Object[] values;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+        }
+
+        @SuppressWarnings("unchecked")
+        <V> V get(long key) {
+            long[] keys = this.keys;
+            Object[] values = this.values;
+            int mask = keys.length - 1;
+            int slot = LongObjectMap.mix(key) & mask;
+
+            // Bounded, a racing optimistic read may see a table without free slots.
+            for (int i = 0; i < keys.length; ++i) {
+                Object value = values[slot];
+
+                if (value == null)
+                    return null;
+
+                if (keys[slot] == key)
+                    return (V) value;
+
+                slot = (slot + 1) & mask;
+            }
+
+            return null;
+        }
+
+        int find(long key) {
+            int mask = this.keys.length - 1;
+            int slot = LongObjectMap.mix(key) & mask;
+
+            while (this.values[slot] != null && this.keys[slot] != key)
+                slot = (slot + 1) & mask;
+
+            return slot;
+        }
+
+        void delete(int slot) {
+            int mask = this.keys.length - 1;
+
+            // Shifts back the following entries of the run, so lookups need no tombstones.
+            for (int next = (slot + 1) & mask; this.values[next] != null; next = (next + 1) & mask) {
+                int home = LongObjectMap.mix(this.keys[next]) & mask;
+
+                if (((next - home) & mask) >= ((next - slot) & mask)) {
+                    this.keys[slot] = this.keys[next];
+                    this.values[slot] = this.values[next];
+                    slot = next;
+                }
+            }
+
+            this.keys[slot] = 0L;
+            this.values[slot] = null;
+        }
+
+        Table resize(int capacity) {
+            Table table = new Table(capacity);
+
+            for (int i = 0; i < this.keys.length; ++i) {
+                if (this.values[i] != null) {
+                    int slot = table.find(this.keys[i]);
+                    table.keys[slot] = this.keys[i];
+                    table.values[slot] = this.values[i];
+                }
+            }
+
+            return table;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Estimates heap sizes of objects for a 64-bit JVM with compressed oops: 12 bytes of object
+ * header, 16 bytes of array header, 4 bytes per reference and sizes aligned to 8 bytes. Field
+ * packing is not modelled, so shallow sizes may be slightly overestimated.
+ */
+public final class ObjectSizes {
+
+    public static final int OBJECT_HEADER = 12;
+    public static final int ARRAY_HEADER = 16;
+    public static final int REFERENCE = 4;
+
+    /**
+     * Estimated size of an entry of a {@link java.util.concurrent.ConcurrentHashMap}: the node and
+     * its slot in the table.
+     */
+    public static final int MAP_ENTRY = 32 + 2 * REFERENCE;
+
+    private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version").startsWith("1.");
+
+    private static final ClassValue<Long> SHALLOW_SIZES = new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            long size = OBJECT_HEADER;
+
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()))
+                        size += ObjectSizes.sizeOfType(field.getType());
+                }
+            }
+
+            return ObjectSizes.align(size);
+        }
+    };
+
+    private ObjectSizes() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Estimates the shallow size of {@code object}.
+     *
+     * @param object Object or array.
+     * @return Estimated shallow size of {@code object}.
+     */
+    public static long sizeOf(Object object) {
+        Class<?> type = object.getClass();
+
+        if (type.isArray())
+            return ObjectSizes.sizeOfArray(type.getComponentType(), Array.getLength(object));
+
+        return SHALLOW_SIZES.get(type);
+    }
+
+    /**
+     * Estimates the size of {@code string} including its character array.
+     *
+     * @param string String.
+     * @return Estimated size of {@code string}.
+     */
+    public static long sizeOfString(String string) {
+        int length = string.length();
+        boolean latin1 = COMPACT_STRINGS;
+
+        for (int i = 0; latin1 && i < length; ++i)
+            latin1 = string.charAt(i) < 256;
+
+        return SHALLOW_SIZES.get(String.class) + ObjectSizes.align(ARRAY_HEADER + (latin1 ? length : 2L * length));
+    }
+
+    public static long sizeOfArray(Class<?> componentType, int length) {
+        return ObjectSizes.align(ARRAY_HEADER + ObjectSizes.sizeOfType(componentType) * (long) length);
+    }
+
+    /**
+     * Estimates the size of the table of a hash map holding {@code size} entries, excluding its
+     * entries.
+     *
+     * @param size Amount of entries.
+     * @return Estimated size of the table.
+     */
+    public static long sizeOfTable(int size) {
+        int capacity = 16;
+
+        while (capacity * 3L / 4 < size)
+            capacity <<= 1;
+
+        return ObjectSizes.align(ARRAY_HEADER + REFERENCE * (long) capacity);
+    }
+
+    public static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static int sizeOfType(Class<?> type) {
+        if (!type.isPrimitive())
+            return REFERENCE;
+
+        if (type == long.class || type == double.class)
+            return 8;
+
+        if (type == int.class || type == float.class)
+            return 4;
+
+        if (type == short.class || type == char.class)
+            return 2;
+
+        return 1;
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of symbols (names and descriptors) shared by all elements of an index. Each distinct
+ * string is stored once and identified by an int id, ids are assigned in insertion order starting
+ * at 0.
+ *
+ * Symbols are never removed, the table grows with the amount of distinct names.
+ */
+public final class SymbolTable {
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] symbols = new String[256];
+    private int size;
+
+    /**
+     * Returns the canonical instance of {@code string}.
+     *
+     * @param string String to intern, may be null.
+     * @return Canonical instance of {@code string}, or null if {@code string} is null.
+     */
+    public String intern(String string) {
+        if (string == null)
+            return null;
+
+        // The id is resolved first, adding a symbol may grow the array.
+        int id = this.id(string);
+
+        return this.symbols[id];
+    }
+
+    /**
+     * Interns all {@code strings} in place.
+     *
+     * @param strings Strings to intern.
+     * @return {@code strings}.
+     */
+    public String[] internAll(String[] strings) {
+        if (strings != null) {
+            for (int i = 0; i < strings.length; ++i)
+                strings[i] = this.intern(strings[i]);
+        }
+
+        return strings;
+    }
+
+    /**
+     * Gets the id of {@code string}, adding it to this table if needed.
+     *
+     * @param string Symbol.
+     * @return Id of {@code string}.
+     */
+    public int id(String string) {
+        Integer id = this.ids.get(string);
+
+        return id != null ? id : this.add(string);
+    }
+
+    /**
+     * Gets the id of {@code string} without adding it to this table.
+     *
+     * @param string Symbol.
+     * @return Id of {@code string}, or -1 if {@code string} is not in this table.
+     */
+    public int find(String string) {
+        Integer id = this.ids.get(string);
+
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Gets the symbol with id {@code id}.
+     *
+     * @param id Id of the symbol.
+     * @return Symbol with id {@code id}.
+     */
+    public String get(int id) {
+        String[] symbols = this.symbols;
+
+        if (id < 0 || id >= symbols.length || symbols[id] == null)
+            throw new IllegalArgumentException("Unknown symbol id: " + id + ".");
+
+        return symbols[id];
+    }
+
+    /**
+     * Gets the amount of symbols.
+     *
+     * @return Amount of symbols.
+     */
+    public int size() {
+        return this.ids.size();
+    }
+
+    /**
+     * Estimates the heap used by this table, excluding the symbols.
+     *
+     * @return Estimated size of this table.
+     */
+    public long estimateSize() {
+        int size = this.size();
+
+        return ObjectSizes.sizeOfArray(String.class, this.symbols.length)
+                + (ObjectSizes.MAP_ENTRY + ObjectSizes.sizeOf(Integer.valueOf(Integer.MAX_VALUE))) * (long) size
+                + ObjectSizes.sizeOfTable(size);
+    }
+
+    private synchronized int add(String string) {
+        Integer id = this.ids.get(string);
+
+        if (id != null)
+            return id;
+
+        String[] symbols = this.symbols;
+
+        if (this.size == symbols.length)
+            this.symbols = symbols = Arrays.copyOf(symbols, symbols.length * 2);
+
+        int newId = this.size++;
+
+        // The symbol is stored before its id is published.
+        symbols[newId] = string;
+        this.ids.put(string, newId);
+
+        return newId;
+    }
+}
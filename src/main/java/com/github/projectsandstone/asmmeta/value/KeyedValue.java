@@ -27,6 +27,8 @@
  */
 package com.github.projectsandstone.asmmeta.value;
 
+import java.util.Objects;
+
 public class KeyedValue<K, V> extends Value<V> {
 
     private final K key;
@@ -40,6 +42,16 @@ public class KeyedValue<K, V> extends Value<V> {
         return this.key;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        return super.equals(obj) && Objects.equals(((KeyedValue<?, ?>) obj).getKey(), this.getKey());
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hashCode(this.getKey()) + super.hashCode();
+    }
+
     @Override
     public String toString() {
         return this.getClass().getSimpleName()+"[key="+this.getKey()+", value="+this.getValue()+"]";
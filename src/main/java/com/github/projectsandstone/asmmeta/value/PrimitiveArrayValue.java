@@ -0,0 +1,124 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.value;
+
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Keyed annotation value holding a primitive array ({@code int[]}, {@code byte[]}, ...) as is.
+ *
+ * {@link #getValue()} is a list view of the array, each access creates the {@link Value} of the
+ * element, so the array is not expanded into one object per element.
+ */
+public class PrimitiveArrayValue extends KeyedValue<String, List<Value<?>>> {
+
+    private final Object array;
+
+    /**
+     * Creates a primitive array value.
+     *
+     * @param key   Key of the value.
+     * @param array Primitive array, not copied and must not be modified.
+     * @throws IllegalArgumentException If {@code array} is not a primitive array.
+     */
+    public PrimitiveArrayValue(String key, Object array) {
+        super(key, new ArrayView(array));
+
+        if (!PrimitiveArrayValue.isPrimitiveArray(array))
+            throw new IllegalArgumentException("Not a primitive array: '" + array + "'.");
+
+        this.array = array;
+    }
+
+    /**
+     * Returns true if {@code value} is a primitive array.
+     *
+     * @param value Value.
+     * @return True if {@code value} is a primitive array.
+     */
+    public static boolean isPrimitiveArray(Object value) {
+        return value != null && value.getClass().isArray() && value.getClass().getComponentType().isPrimitive();
+    }
+
+    /**
+     * Gets the array. The array must not be modified.
+     *
+     * @return Array.
+     */
+    public Object getArray() {
+        return this.array;
+    }
+
+    /**
+     * Gets the component type of the array.
+     *
+     * @return Component type of the array.
+     */
+    public Class<?> getComponentType() {
+        return this.array.getClass().getComponentType();
+    }
+
+    public int getLength() {
+        return Array.getLength(this.array);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof PrimitiveArrayValue
+                && Objects.equals(((PrimitiveArrayValue) obj).getKey(), this.getKey())
+                && Objects.deepEquals(((PrimitiveArrayValue) obj).array, this.array);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hashCode(this.getKey()) + Arrays.deepHashCode(new Object[]{this.array});
+    }
+
+    private static final class ArrayView extends AbstractList<Value<?>> implements RandomAccess {
+        private final Object array;
+
+        ArrayView(Object array) {
+            this.array = array;
+        }
+
+        @Override
+        public Value<?> get(int index) {
+            return new Value<>(Array.get(this.array, index));
+        }
+
+        @Override
+        public int size() {
+            return Array.getLength(this.array);
+        }
+    }
+}
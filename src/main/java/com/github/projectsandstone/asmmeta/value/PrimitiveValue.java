@@ -0,0 +1,157 @@
+/**
+ *      ASMMeta - Index information about classes and elements.
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2016 Sandstone <https://github.com/ProjectSandstone/ASMMeta/>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.github.projectsandstone.asmmeta.value;
+
+/**
+ * Keyed annotation value of a primitive type, stored unboxed. {@link #getValue()} boxes the value.
+ */
+public class PrimitiveValue extends KeyedValue<String, Object> {
+
+    private final char type;
+    private final long bits;
+
+    /**
+     * Creates a primitive value.
+     *
+     * @param key   Key of the value.
+     * @param value Boxed primitive value.
+     * @throws IllegalArgumentException If {@code value} is not a boxed primitive.
+     */
+    public PrimitiveValue(String key, Object value) {
+        super(key, null);
+
+        if (value instanceof Integer) {
+            this.type = 'I';
+            this.bits = (Integer) value;
+        } else if (value instanceof Long) {
+            this.type = 'J';
+            this.bits = (Long) value;
+        } else if (value instanceof Boolean) {
+            this.type = 'Z';
+            this.bits = (Boolean) value ? 1 : 0;
+        } else if (value instanceof Byte) {
+            this.type = 'B';
+            this.bits = (Byte) value;
+        } else if (value instanceof Character) {
+            this.type = 'C';
+            this.bits = (Character) value;
+        } else if (value instanceof Short) {
+            this.type = 'S';
+            this.bits = (Short) value;
+        } else if (value instanceof Float) {
+            this.type = 'F';
+            this.bits = Float.floatToRawIntBits((Float) value);
+        } else if (value instanceof Double) {
+            this.type = 'D';
+            this.bits = Double.doubleToRawLongBits((Double) value);
+        } else {
+            throw new IllegalArgumentException("Not a primitive value: '" + value + "'.");
+        }
+    }
+
+    /**
+     * Returns true if {@code value} can be stored in a {@link PrimitiveValue}.
+     *
+     * @param value Value.
+     * @return True if {@code value} is a boxed primitive.
+     */
+    public static boolean isPrimitive(Object value) {
+        return value instanceof Integer
+                || value instanceof Long
+                || value instanceof Boolean
+                || value instanceof Byte
+                || value instanceof Character
+                || value instanceof Short
+                || value instanceof Float
+                || value instanceof Double;
+    }
+
+    /**
+     * Gets the descriptor of the primitive type.
+     *
+     * @return Descriptor of the primitive type.
+     */
+    public char getType() {
+        return this.type;
+    }
+
+    @Override
+    public Object getValue() {
+        switch (this.type) {
+            case 'I': return this.getInt();
+            case 'J': return this.getLong();
+            case 'Z': return this.getBoolean();
+            case 'B': return this.getByte();
+            case 'C': return this.getChar();
+            case 'S': return this.getShort();
+            case 'F': return this.getFloat();
+            default: return this.getDouble();
+        }
+    }
+
+    public boolean getBoolean() {
+        return this.bits != 0;
+    }
+
+    public byte getByte() {
+        return (byte) this.getLong();
+    }
+
+    public char getChar() {
+        return (char) this.getLong();
+    }
+
+    public short getShort() {
+        return (short) this.getLong();
+    }
+
+    public int getInt() {
+        return (int) this.getLong();
+    }
+
+    public long getLong() {
+        if (this.type == 'F' || this.type == 'D')
+            return (long) this.getDouble();
+
+        return this.bits;
+    }
+
+    public float getFloat() {
+        return (float) this.getDouble();
+    }
+
+    public double getDouble() {
+        if (this.type == 'D')
+            return Double.longBitsToDouble(this.bits);
+
+        if (this.type == 'F')
+            return Float.intBitsToFloat((int) this.bits);
+
+        return this.bits;
+    }
+}
@@ -27,6 +27,8 @@
  */
 package com.github.projectsandstone.asmmeta.value;
 
+import java.util.Objects;
+
 public class Value<V> {
 
     private final V value;
@@ -39,6 +41,18 @@ public class Value<V> {
         return this.value;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        return obj != null
+                && obj.getClass() == this.getClass()
+                && Objects.equals(((Value<?>) obj).getValue(), this.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(this.getValue());
+    }
+
     @Override
     public String toString() {
         return this.getClass().getSimpleName()+"[value="+this.getValue()+"]";
@@ -27,15 +27,77 @@
  */
 package com.github.projectsandstone.asmmeta;
 
+import com.github.jonathanxd.iutils.description.DescriptionUtil;
+import com.github.projectsandstone.asmmeta.asm.AnnotationPrefilter;
+import com.github.projectsandstone.asmmeta.data.MetaData;
+import com.github.projectsandstone.asmmeta.element.ClassElement;
+import com.github.projectsandstone.asmmeta.element.IAnnotationElement;
+import com.github.projectsandstone.asmmeta.element.IClassElement;
 import com.github.projectsandstone.asmmeta.element.IMetaElement;
+import com.github.projectsandstone.asmmeta.element.IMethodElement;
+import com.github.projectsandstone.asmmeta.element.LazyClassElement;
+import com.github.projectsandstone.asmmeta.index.HierarchyIndex;
+import com.github.projectsandstone.asmmeta.index.ModifierIndex;
+import com.github.projectsandstone.asmmeta.index.PackageIndex;
+import com.github.projectsandstone.asmmeta.resolver.Resolvers;
+import com.github.projectsandstone.asmmeta.resolver.WeakResolvers;
+import com.github.projectsandstone.asmmeta.snapshot.IndexSnapshot;
+import com.github.projectsandstone.asmmeta.source.ClassSource;
+import com.github.projectsandstone.asmmeta.source.ClassSources;
+import com.github.projectsandstone.asmmeta.source.ClasspathScanner;
+import com.github.projectsandstone.asmmeta.source.MappedJarClassSource;
+import com.github.projectsandstone.asmmeta.source.ScanResult;
+import com.github.projectsandstone.asmmeta.store.ColumnarElementStore;
+import com.github.projectsandstone.asmmeta.store.ElementStore;
+import com.github.projectsandstone.asmmeta.store.MapElementStore;
+import com.github.projectsandstone.asmmeta.util.ElementIds;
+import com.github.projectsandstone.asmmeta.util.FrozenList;
+import com.github.projectsandstone.asmmeta.util.LongObjectMap;
+import com.github.projectsandstone.asmmeta.util.ObjectSizes;
+import com.github.projectsandstone.asmmeta.util.SymbolTable;
+import com.github.projectsandstone.asmmeta.value.PrimitiveArrayValue;
+import com.github.projectsandstone.asmmeta.value.PrimitiveValue;
+import com.github.projectsandstone.asmmeta.value.Value;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
 
 public class ASMMetaTest {
     @Test
@@ -59,4 +121,988 @@ public class ASMMetaTest {
         }
     }
 
+    @Test
+    public void indexAll() throws Exception {
+        ASMMeta asmMeta = new ASMMeta(4);
+
+        IndexingStats stats = asmMeta.indexAll(Paths.get("build/classes/test"));
+
+        System.out.println(stats);
+
+        Assert.assertEquals(asmMeta.getAllIndexexElements().size(), stats.getClasses());
+        Assert.assertTrue(asmMeta.get("com.github.projectsandstone.asmmeta.MyTestClass").isPresent());
+        Assert.assertTrue(asmMeta.get("com.github.projectsandstone.asmmeta.readme.MyClass").isPresent());
+    }
+
+    @Test
+    public void stream() throws Exception {
+        ASMMeta asmMeta = new ASMMeta();
+        Set<String> names = ConcurrentHashMap.newKeySet();
+
+        try (ClassSource source = ClassSources.of(Paths.get("build/classes/test"))) {
+            IndexingStats stats = asmMeta.forEach(source, element -> names.add(element.getName()));
+
+            Assert.assertEquals(names.size(), stats.getClasses());
+            Assert.assertEquals(names, asmMeta.stream(source).map(IMetaElement::getName).collect(Collectors.toSet()));
+        }
+
+        Assert.assertTrue(names.contains("com/github/projectsandstone/asmmeta/MyTestClass"));
+        Assert.assertTrue(asmMeta.getAllIndexexElements().isEmpty());
+    }
+
+    @Test
+    public void prefilter() throws Exception {
+        ASMMeta asmMeta = new ASMMeta();
+
+        asmMeta.setPrefilter(AnnotationPrefilter.of(MyTestAnnotation.class));
+
+        IndexingStats stats = asmMeta.indexAll(Paths.get("build/classes/test"));
+
+        Assert.assertTrue(stats.getSkipped() > 0);
+        Assert.assertTrue(asmMeta.get("com.github.projectsandstone.asmmeta.MyTestClass").isPresent());
+        Assert.assertFalse(asmMeta.get("com.github.projectsandstone.asmmeta.readme.MyClass").isPresent());
+
+        Assert.assertFalse(asmMeta.tryIndex(Files.readAllBytes(Paths.get("build/classes/test/com/github/projectsandstone/asmmeta/readme/MyClass.class"))));
+        Assert.assertTrue(asmMeta.tryIndex(Files.readAllBytes(Paths.get("build/classes/test/com/github/projectsandstone/asmmeta/MyTestClass.class"))));
+    }
+
+    @Test
+    public void sparse() throws Exception {
+        ASMMeta asmMeta = new ASMMeta();
+
+        asmMeta.setVisitorFactory(() -> VisitorFactory.createSparseVisitor(Opcodes.ASM5,
+                Collections.singleton("Lcom/github/projectsandstone/asmmeta/MyTestAnnotation;")));
+
+        asmMeta.index(Files.readAllBytes(Paths.get("build/classes/test/com/github/projectsandstone/asmmeta/MyTestClass.class")));
+
+        List<IMetaElement<?>> childElements = asmMeta.get("com.github.projectsandstone.asmmeta.MyTestClass").get().getChildElements();
+
+        // Constructor is dropped
+        Assert.assertEquals(2, childElements.size());
+        Assert.assertEquals("name", childElements.get(0).getName());
+        Assert.assertEquals("a", childElements.get(1).getName());
+    }
+
+    @Test
+    public void lazy() throws Exception {
+        ASMMeta asmMeta = new ASMMeta();
+
+        asmMeta.setLazy(true);
+        asmMeta.index(Files.readAllBytes(Paths.get("build/classes/test/com/github/projectsandstone/asmmeta/MyTestClass.class")));
+
+        LazyClassElement element = (LazyClassElement) asmMeta.get("com.github.projectsandstone.asmmeta.MyTestClass").get();
+
+        Assert.assertFalse(element.isMaterialized());
+        Assert.assertEquals("java/lang/Object", element.getSuperClass());
+        Assert.assertEquals(3, element.getChildElements().size());
+        Assert.assertTrue(element.isMaterialized());
+        Assert.assertEquals(1, element.getChildElements().get(0).getMetaData().getAnnotationList().size());
+
+        // Members read before a failure are not kept.
+        int[] attempts = new int[1];
+        LazyClassElement failing = new LazyClassElement(null, 0, "Failing", "LFailing;", new MetaData(), null, null, new String[0], null,
+                (lazyElement, source) -> {
+                    lazyElement.getChildElements().add(element);
+
+                    if (attempts[0]++ == 0)
+                        throw new IOException("Truncated class.");
+                });
+
+        try {
+            failing.getChildElements();
+            Assert.fail("Failure of the member loader was ignored.");
+        } catch (UncheckedIOException expected) {
+        }
+
+        Assert.assertFalse(failing.isMaterialized());
+        Assert.assertEquals(1, failing.getChildElements().size());
+    }
+
+    @Test
+    public void indexMappedJar() throws Exception {
+        Path classes = Paths.get("build/classes/test");
+        Path jar = Files.createTempFile("asmmeta", ".jar");
+
+        try {
+            try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar));
+                 Stream<Path> walk = Files.walk(classes)) {
+                int i = 0;
+
+                for (Path path : (Iterable<Path>) walk.filter(Files::isRegularFile)::iterator) {
+                    byte[] bytes = Files.readAllBytes(path);
+                    ZipEntry entry = new ZipEntry(classes.relativize(path).toString().replace('\\', '/'));
+
+                    // Mix STORED and DEFLATED entries
+                    if (i++ % 2 == 0) {
+                        CRC32 crc = new CRC32();
+                        crc.update(bytes);
+                        entry.setMethod(ZipEntry.STORED);
+                        entry.setSize(bytes.length);
+                        entry.setCrc(crc.getValue());
+                    }
+
+                    out.putNextEntry(entry);
+                    out.write(bytes);
+                    out.closeEntry();
+                }
+            }
+
+            ASMMeta fromJar = new ASMMeta();
+            ASMMeta fromDirectory = new ASMMeta();
+
+            try (ClassSource source = new MappedJarClassSource(jar)) {
+                fromJar.indexAll(source);
+            }
+
+            fromDirectory.indexAll(classes);
+
+            Assert.assertEquals(fromDirectory.getAllIndexexElements().keySet(), fromJar.getAllIndexexElements().keySet());
+
+            // Corrupt offsets of the central directory are reported as invalid archives.
+            byte[] bytes = Files.readAllBytes(jar);
+            int end = bytes.length - 22;
+
+            for (int offset : new int[]{0x7FFFFFF0, 0xFFFFFFF0, bytes.length - 40}) {
+                for (int i = 0; i < 4; ++i)
+                    bytes[end + 16 + i] = (byte) (offset >>> (8 * i));
+
+                Files.write(jar, bytes);
+
+                try {
+                    new MappedJarClassSource(jar).close();
+                    Assert.fail("Corrupt central directory offset " + offset + " was accepted.");
+                } catch (ZipException expected) {
+                }
+            }
+        } finally {
+            Files.delete(jar);
+        }
+    }
+
+    @Test
+    public void incrementalScan() throws Exception {
+        Path classes = Paths.get("build/classes/test");
+        Path root = Files.createTempDirectory("asmmeta");
+
+        try {
+            try (Stream<Path> walk = Files.walk(classes)) {
+                for (Path path : (Iterable<Path>) walk::iterator) {
+                    Path target = root.resolve(classes.relativize(path).toString());
+
+                    if (Files.isDirectory(path))
+                        Files.createDirectories(target);
+                    else
+                        Files.copy(path, target, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+
+            ASMMeta asmMeta = new ASMMeta();
+            ClasspathScanner scanner = new ClasspathScanner(asmMeta, Collections.singletonList(root));
+
+            ScanResult first = scanner.scan();
+
+            Assert.assertEquals(asmMeta.getAllIndexexElements().keySet(), first.getAdded());
+
+            ScanResult second = scanner.scan();
+
+            Assert.assertTrue(second.getAdded().isEmpty());
+            Assert.assertTrue(second.getChanged().isEmpty());
+            Assert.assertEquals(first.getAdded().size(), second.getUnchanged());
+
+            Path myTestClass = root.resolve("com/github/projectsandstone/asmmeta/MyTestClass.class");
+
+            // Same content, new modification time: read again but not reindexed.
+            Files.setLastModifiedTime(myTestClass, FileTime.fromMillis(Files.getLastModifiedTime(myTestClass).toMillis() + 10000));
+
+            ScanResult touched = scanner.scan();
+
+            Assert.assertTrue(touched.getChanged().isEmpty());
+            Assert.assertEquals(first.getAdded().size(), touched.getUnchanged());
+
+            Files.delete(myTestClass);
+
+            ScanResult deleted = scanner.scan();
+
+            Assert.assertEquals(Collections.singleton("com.github.projectsandstone.asmmeta.MyTestClass"), deleted.getRemoved());
+            Assert.assertFalse(asmMeta.get("com.github.projectsandstone.asmmeta.MyTestClass").isPresent());
+        } finally {
+            try (Stream<Path> walk = Files.walk(root)) {
+                walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void snapshot() throws Exception {
+        ASMMeta asmMeta = new ASMMeta();
+
+        asmMeta.indexAll(Paths.get("build/classes/test"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        IndexSnapshot.write(asmMeta, out);
+
+        IndexSnapshot snapshot = IndexSnapshot.read(new ByteArrayInputStream(out.toByteArray()));
+
+        Assert.assertEquals(asmMeta.getAllIndexexElements().keySet(), snapshot.getClassNames());
+
+        ASMMeta loaded = new ASMMeta();
+
+        snapshot.loadInto(loaded);
+
+        asmMeta.getAllIndexexElements().forEach((name, element) ->
+                Assert.assertEquals(element.toString(), loaded.get(name).get().toString()));
+
+        byte[] corrupt = out.toByteArray();
+        corrupt[corrupt.length - 1] ^= 1;
+
+        try {
+            IndexSnapshot.open(corrupt, Resolvers.DEFAULT).loadInto(new ASMMeta());
+            Assert.fail("Corrupted snapshot was loaded.");
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Test
+    public void shards() throws Exception {
+        ASMMeta first = new ASMMeta();
+        ASMMeta second = new ASMMeta();
+
+        first.index(Files.readAllBytes(Paths.get("build/classes/test/com/github/projectsandstone/asmmeta/MyTestClass.class")));
+        second.indexAll(Paths.get("build/classes/test"));
+
+        ByteArrayOutputStream firstOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream secondOut = new ByteArrayOutputStream();
+
+        IndexSnapshot.write(first, firstOut);
+        IndexSnapshot.write(second, secondOut);
+
+        IndexSnapshot firstShard = IndexSnapshot.open(firstOut.toByteArray(), Resolvers.DEFAULT);
+        IndexSnapshot secondShard = IndexSnapshot.open(secondOut.toByteArray(), Resolvers.DEFAULT);
+
+        ASMMeta asmMeta = new ASMMeta();
+
+        asmMeta.index(Files.readAllBytes(Paths.get("build/classes/test/com/github/projectsandstone/asmmeta/readme/MyClass.class")));
+        IMetaElement<?> explicit = asmMeta.get("com.github.projectsandstone.asmmeta.readme.MyClass").get();
+
+        asmMeta.addIndex(firstShard);
+        asmMeta.addIndex(secondShard);
+
+        Assert.assertSame(explicit, asmMeta.get("com.github.projectsandstone.asmmeta.readme.MyClass").get());
+
+        IMetaElement<?> myTestClass = asmMeta.get("com.github.projectsandstone.asmmeta.MyTestClass").get();
+
+        Assert.assertSame(myTestClass, asmMeta.get("com.github.projectsandstone.asmmeta.MyTestClass").get());
+        Assert.assertEquals(second.getAllIndexexElements().keySet(), asmMeta.getAllIndexexElements().keySet());
+
+        Assert.assertTrue(asmMeta.remove("com.github.projectsandstone.asmmeta.MyTestClass"));
+        Assert.assertFalse(asmMeta.get("com.github.projectsandstone.asmmeta.MyTestClass").isPresent());
+    }
+
+    @Test
+    public void symbols() throws Exception {
+        ASMMeta asmMeta = new ASMMeta();
+
+        asmMeta.indexAll(Paths.get("build/classes/test"));
+
+        IClassElement myTestClass = (IClassElement) asmMeta.get("com.github.projectsandstone.asmmeta.MyTestClass").get();
+        IClassElement readmeClass = (IClassElement) asmMeta.get("com.github.projectsandstone.asmmeta.readme.MyClass").get();
+
+        Assert.assertSame(myTestClass.getSuperClass(), readmeClass.getSuperClass());
+        Assert.assertSame(myTestClass.getChildElements().get(0).getDesc(), readmeClass.getChildElements().get(0).getDesc());
+
+        SymbolTable symbolTable = asmMeta.getSymbolTable();
+        int id = symbolTable.id("java/lang/Object");
+
+        Assert.assertSame(myTestClass.getSuperClass(), symbolTable.get(id));
+        Assert.assertSame(myTestClass.getSuperClass(), symbolTable.intern(new String("java/lang/Object")));
+    }
+
+    @Test
+    public void columnarStore() throws Exception {
+        ASMMeta expected = new ASMMeta();
+        ColumnarElementStore store = new ColumnarElementStore();
+        ASMMeta columnar = new ASMMeta(2, store);
+
+        expected.indexAll(Paths.get("build/classes/test"));
+        columnar.indexAll(Paths.get("build/classes/test"));
+
+        Assert.assertEquals(expected.getAllIndexexElements().keySet(), columnar.getAllIndexexElements().keySet());
+
+        expected.getAllIndexexElements().forEach((name, element) -> {
+            IClassElement classElement = (IClassElement) element;
+            IClassElement view = (IClassElement) columnar.get(name).get();
+
+            Assert.assertEquals(classElement.getSuperClass(), view.getSuperClass());
+            Assert.assertArrayEquals(classElement.getInterfaces(), view.getInterfaces());
+            assertSameElement(classElement, view);
+            Assert.assertEquals(view, columnar.get(name).get());
+
+            for (int i = 0; i < classElement.getChildElements().size(); ++i) {
+                IMetaElement<?> child = view.getChildElements().get(i);
+
+                assertSameElement(classElement.getChildElements().get(i), child);
+                Assert.assertEquals(view, child.getEnclosingElement());
+            }
+        });
+
+        Assert.assertTrue(columnar.remove("com.github.projectsandstone.asmmeta.MyTestClass"));
+        Assert.assertFalse(columnar.get("com.github.projectsandstone.asmmeta.MyTestClass").isPresent());
+
+        try {
+            columnar.setLazy(true);
+            Assert.fail("Lazy reading accepted by a columnar store");
+        } catch (IllegalStateException e) {
+            Assert.assertFalse(columnar.isLazy());
+        }
+
+        // Evicted classes would leave their rows behind, so columnar indexes keep all their classes.
+        ColumnarElementStore unbounded = new ColumnarElementStore();
+        ASMMeta resident = new ASMMeta(1, unbounded);
+
+        try {
+            resident.setMaxResidentClasses(5);
+            Assert.fail("Bounded index accepted by a columnar store");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(Integer.MAX_VALUE, resident.getMaxResidentClasses());
+        }
+
+        resident.setMaxResidentClasses(Integer.MAX_VALUE);
+        resident.indexAll(Paths.get("build/classes/main"));
+
+        int rows = unbounded.getRowCount();
+
+        for (int cycle = 0; cycle < 3; ++cycle) {
+            resident.getAllIndexexElements().keySet().forEach(resident::get);
+            Assert.assertEquals(rows, unbounded.getRowCount());
+        }
+    }
+
+    @Test
+    public void freeze() throws Exception {
+        ASMMeta asmMeta = new ASMMeta();
+
+        Assert.assertEquals(0, asmMeta.getFreezeSavings());
+
+        asmMeta.indexAll(Paths.get("build/classes/test"));
+
+        System.out.println("Bytes saved by freezing: " + asmMeta.getFreezeSavings());
+
+        Assert.assertTrue(asmMeta.getFreezeSavings() > 0);
+
+        // Presized lists are estimated from their capacity: 24 bytes of list and 16 + 4 * 12 of array.
+        List<Object> presized = FrozenList.withCapacity(12);
+
+        for (int i = 0; i < 12; ++i)
+            presized.add(i);
+
+        Assert.assertEquals(24 + 64 - (16 + 64), FrozenList.estimateSavedBytes(presized));
+
+        presized.add(12);
+
+        Assert.assertEquals(24 + 88 - (16 + 72), FrozenList.estimateSavedBytes(presized));
+        Assert.assertEquals(24, FrozenList.estimateSavedBytes(new ArrayList<>()));
+        Assert.assertEquals(0, FrozenList.estimateSavedBytes(FrozenList.freeze(presized)));
+
+        IMetaElement<?> element = asmMeta.get("com.github.projectsandstone.asmmeta.ASMMetaTest").get();
+        List<IMetaElement<?>> children = element.getChildElements();
+
+        Assert.assertTrue(children instanceof FrozenList<?>);
+        Assert.assertSame(Collections.emptyList(), element.getMetaData().getAnnotationList());
+        Assert.assertSame(Collections.emptyList(), children.get(0).getChildElements());
+
+        try {
+            children.remove(0);
+            Assert.fail("Frozen list was modified.");
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+
+    @Test
+    public void sharedAnnotationPayloads() throws Exception {
+        ClassWriter cw = new ClassWriter(0);
+
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "test/Named", null, "java/lang/Object", null);
+
+        for (String[] field : new String[][]{{"a", "x"}, {"b", "x"}, {"c", "y"}}) {
+            FieldVisitor fv = cw.visitField(Opcodes.ACC_PUBLIC, field[0], "I", null, null);
+            AnnotationVisitor av = fv.visitAnnotation("Ltest/Name;", true);
+            av.visit("value", field[1]);
+            av.visitEnd();
+            fv.visitEnd();
+        }
+
+        cw.visitEnd();
+
+        ASMMeta asmMeta = new ASMMeta();
+
+        asmMeta.index(cw.toByteArray());
+
+        List<IMetaElement<?>> fields = asmMeta.get("test.Named").get().getChildElements();
+        IAnnotationElement a = (IAnnotationElement) fields.get(0).getMetaData().getAnnotationList().get(0);
+        IAnnotationElement b = (IAnnotationElement) fields.get(1).getMetaData().getAnnotationList().get(0);
+        IAnnotationElement c = (IAnnotationElement) fields.get(2).getMetaData().getAnnotationList().get(0);
+
+        Assert.assertSame(a.getValues(), b.getValues());
+        Assert.assertNotSame(a.getValues(), c.getValues());
+        Assert.assertSame(a.getMetaData(), b.getMetaData());
+        Assert.assertSame(fields.get(0), a.getEnclosingElement());
+        Assert.assertSame(fields.get(1), b.getEnclosingElement());
+        Assert.assertEquals(2, asmMeta.getAnnotationPayloads().size());
+    }
+
+    @Test
+    public void primitiveValues() throws Exception {
+        ClassWriter cw = new ClassWriter(0);
+
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "test/Primitives", null, "java/lang/Object", null);
+
+        AnnotationVisitor av = cw.visitAnnotation("Ltest/Values;", true);
+        av.visit("values", new int[]{1, 2, 3});
+        av.visit("size", 7L);
+        av.visit("name", "x");
+        av.visitEnd();
+
+        cw.visitEnd();
+
+        ASMMeta asmMeta = new ASMMeta();
+
+        asmMeta.index(cw.toByteArray());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IndexSnapshot.write(asmMeta, out);
+
+        ASMMeta snapshot = new ASMMeta();
+        snapshot.addIndex(IndexSnapshot.read(new ByteArrayInputStream(out.toByteArray())));
+
+        ASMMeta columnar = new ASMMeta(1, new ColumnarElementStore());
+        columnar.index(cw.toByteArray());
+
+        for (ASMMeta meta : new ASMMeta[]{asmMeta, snapshot, columnar}) {
+            IAnnotationElement annotation = (IAnnotationElement) meta.get("test.Primitives").get()
+                    .getMetaData().getAnnotationList().get(0);
+
+            Assert.assertTrue(annotation.getValue("values") instanceof PrimitiveArrayValue);
+            Assert.assertTrue(annotation.getValue("size") instanceof PrimitiveValue);
+            Assert.assertArrayEquals(new int[]{1, 2, 3}, annotation.getArray("values", int[].class));
+            Assert.assertEquals(7L, annotation.getLong("size", 0L));
+            Assert.assertEquals(7, annotation.getInt("size", 0));
+            Assert.assertEquals(-1, annotation.getInt("missing", -1));
+            Assert.assertEquals("x", annotation.getString("name", null));
+            Assert.assertEquals(2, ((Value<?>) ((List<?>) annotation.getValue("values").getValue()).get(1)).getValue());
+        }
+    }
+
+    @Test
+    public void elementIds() throws Exception {
+        ASMMeta asmMeta = new ASMMeta(1);
+
+        asmMeta.indexAll(Paths.get("build/classes/main"));
+
+        IMetaElement<?> asmMetaClass = asmMeta.get(ASMMeta.class.getName()).get();
+        long classId = asmMeta.getId(asmMetaClass);
+
+        Assert.assertTrue(ElementIds.isClass(classId));
+        Assert.assertSame(asmMetaClass, asmMeta.get(classId).get());
+
+        List<IMetaElement<?>> members = asmMetaClass.getChildElements();
+
+        for (int i = 0; i < members.size(); ++i) {
+            long id = asmMeta.getId(members.get(i));
+
+            Assert.assertEquals(classId, ElementIds.getClassId(id));
+            Assert.assertEquals(i, ElementIds.getMemberOrdinal(id));
+            Assert.assertSame(members.get(i), asmMeta.get(id).get());
+        }
+
+        Assert.assertFalse(asmMeta.get(ElementIds.of(ElementIds.getClassOrdinal(classId), members.size())).isPresent());
+
+        // Ids survive removal and reindexing.
+        asmMeta.remove(ASMMeta.class.getName());
+
+        Assert.assertFalse(asmMeta.get(classId).isPresent());
+
+        asmMeta.index(Files.readAllBytes(Paths.get("build/classes/main/com/github/projectsandstone/asmmeta/ASMMeta.class")));
+
+        Assert.assertEquals(classId, asmMeta.getId(asmMeta.get(ASMMeta.class.getName()).get()));
+        Assert.assertEquals(ElementIds.NONE, asmMeta.getId(asmMeta.read(Files.readAllBytes(Paths.get("build/classes/test/com/github/projectsandstone/asmmeta/ASMMetaTest.class")))));
+
+        // Classes of added indexes have ids before they are decoded.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IndexSnapshot.write(asmMeta, out);
+
+        ASMMeta snapshot = new ASMMeta();
+        snapshot.addIndex(IndexSnapshot.read(new ByteArrayInputStream(out.toByteArray())));
+
+        for (long id = 0; snapshot.get(id).isPresent(); id = ElementIds.ofClass(ElementIds.getClassOrdinal(id) + 1))
+            Assert.assertEquals(id, snapshot.getId(snapshot.get(id).get()));
+    }
+
+    @Test
+    public void bounded() throws Exception {
+        ASMMeta asmMeta = new ASMMeta(1);
+
+        asmMeta.setMaxResidentClasses(5);
+        asmMeta.indexAll(Paths.get("build/classes/main"));
+
+        ResidencyStats stats = asmMeta.getResidencyStats().get();
+
+        Assert.assertEquals(5, stats.getResident());
+        Assert.assertEquals(5, asmMeta.getAllIndexexElements().size());
+        Assert.assertTrue(stats.getEvictions() > 0);
+
+        ASMMeta unbounded = new ASMMeta(1);
+        unbounded.indexAll(Paths.get("build/classes/main"));
+
+        // Evicted classes are read again, from their file or their compressed bytes.
+        for (String name : unbounded.getAllIndexexElements().keySet())
+            Assert.assertEquals(unbounded.get(name).get().toString(), asmMeta.get(name).get().toString());
+
+        Assert.assertTrue(asmMeta.getResidencyStats().get().getMisses() >= unbounded.getAllIndexexElements().size() - 5);
+        Assert.assertEquals(5, asmMeta.getResidencyStats().get().getResident());
+
+        IMetaElement<?> element = asmMeta.get(ASMMeta.class.getName()).get();
+
+        Assert.assertSame(element, asmMeta.get(ASMMeta.class.getName()).get());
+        Assert.assertSame(element, asmMeta.get(asmMeta.getId(element)).get());
+        Assert.assertTrue(asmMeta.getResidencyStats().get().getHits() >= 2);
+
+        asmMeta.remove(ASMMeta.class.getName());
+
+        Assert.assertFalse(asmMeta.get(ASMMeta.class.getName()).isPresent());
+
+        // Classes of added indexes are decoded again.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IndexSnapshot.write(unbounded, out);
+
+        ASMMeta snapshot = new ASMMeta();
+        snapshot.setMaxResidentClasses(2);
+        snapshot.addIndex(IndexSnapshot.read(new ByteArrayInputStream(out.toByteArray())));
+
+        for (String name : unbounded.getAllIndexexElements().keySet())
+            Assert.assertEquals(unbounded.get(name).get().toString(), snapshot.get(name).get().toString());
+
+        for (String name : unbounded.getAllIndexexElements().keySet())
+            Assert.assertTrue(snapshot.get(name).isPresent());
+
+        Assert.assertEquals(2, snapshot.getResidencyStats().get().getResident());
+        Assert.assertEquals(unbounded.getAllIndexexElements().size(), snapshot.getResidencyStats().get().getMisses());
+
+        // Indexes keep the entries of evicted classes, decoding them again does not add entries.
+        int annotated = unbounded.getAnnotatedElements(FunctionalInterface.class).size();
+
+        Assert.assertTrue(annotated > 0);
+        Assert.assertEquals(annotated, snapshot.getAnnotatedIds("Ljava/lang/FunctionalInterface;").length);
+        Assert.assertEquals(annotated, snapshot.getAnnotatedElements(FunctionalInterface.class).size());
+    }
+
+    @Test
+    public void weakResolvers() throws Exception {
+        ClassWriter cw = new ClassWriter(0);
+
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "test/Plugin", null, "java/lang/Object", null);
+        cw.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "value", "I", null, null).visitEnd();
+        cw.visitEnd();
+
+        byte[] bytes = cw.toByteArray();
+        Class<?>[] loaded = new Class<?>[1];
+
+        Resolvers resolvers = WeakResolvers.of(new Resolvers.Default() {
+            @Override
+            public Function<IMetaElement<Class<?>>, Class<?>> getClassResolver() {
+                return element -> loaded[0];
+            }
+        });
+
+        ASMMeta asmMeta = new ASMMeta(1);
+
+        asmMeta.setVisitorFactory(() -> VisitorFactory.createVisitor(Opcodes.ASM5, null, resolvers));
+        asmMeta.index(bytes);
+
+        WeakReference<ClassLoader> loader = ASMMetaTest.definePlugin(bytes, loaded);
+        IMetaElement<?> pluginClass = asmMeta.get("test.Plugin").get();
+        IMetaElement<?> field = pluginClass.getChildElements().get(0);
+
+        Assert.assertSame(loaded[0], pluginClass.getResolvedInstance());
+
+        // Resolved fields are copies, the same instance is returned while it is anchored to its class.
+        int resolved = System.identityHashCode(field.getResolvedInstance());
+
+        System.gc();
+
+        Assert.assertEquals(resolved, System.identityHashCode(field.getResolvedInstance()));
+
+        loaded[0] = null;
+
+        for (int i = 0; i < 50 && loader.get() != null; ++i) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        Assert.assertNull(loader.get());
+        Assert.assertTrue(asmMeta.get("test.Plugin").isPresent());
+    }
+
+    private static WeakReference<ClassLoader> definePlugin(byte[] bytes, Class<?>[] loaded) {
+        ClassLoader loader = new ClassLoader(null) {
+            {
+                loaded[0] = this.defineClass("test.Plugin", bytes, 0, bytes.length);
+            }
+        };
+
+        return new WeakReference<>(loader);
+    }
+
+    @Test
+    public void memoryFootprint() throws Exception {
+        Path classes = Paths.get("build/classes/main");
+        ASMMeta asmMeta = new ASMMeta(1);
+        ASMMeta columnar = new ASMMeta(1, new ColumnarElementStore());
+
+        asmMeta.indexAll(classes);
+        columnar.indexAll(classes);
+
+        long methods = asmMeta.getAllIndexexElements().values().stream()
+                .flatMap(element -> element.getChildElements().stream())
+                .filter(element -> element instanceof IMethodElement)
+                .count();
+
+        for (ASMMeta meta : new ASMMeta[]{asmMeta, columnar}) {
+            MemoryFootprint footprint = meta.getMemoryFootprint();
+
+            Assert.assertEquals(asmMeta.getAllIndexexElements().size(), footprint.getCount(MemoryFootprint.Kind.CLASSES));
+            Assert.assertEquals(methods, footprint.getCount(MemoryFootprint.Kind.METHODS));
+            Assert.assertTrue(footprint.getBytes(MemoryFootprint.Kind.STRINGS) > 0);
+            Assert.assertTrue(footprint.getBytesBySource().get(classes.toString()) > 0);
+            Assert.assertEquals(footprint.getTotalBytes(), footprint.getBytesBySource().values().stream().mapToLong(Long::longValue).sum());
+        }
+
+        // Primitive values are counted unboxed.
+        PrimitiveValue primitive = new PrimitiveValue("value", 1L);
+        PrimitiveArrayValue array = new PrimitiveArrayValue("values", new int[]{1, 2});
+        MemoryFootprint.Builder builder = new MemoryFootprint.Builder();
+
+        builder.addValue(primitive, "test");
+        builder.addValue(array, "test");
+
+        Assert.assertEquals(ObjectSizes.sizeOf(primitive) + ObjectSizes.sizeOf(array) + ObjectSizes.sizeOf(array.getArray())
+                + ObjectSizes.sizeOf(array.getValue()), builder.build().getBytes(MemoryFootprint.Kind.VALUES));
+        Assert.assertEquals(2, builder.build().getCount(MemoryFootprint.Kind.VALUES));
+    }
+
+    @Test
+    public void annotationIndex() throws Exception {
+        Path classes = Paths.get("build/classes/test");
+        ASMMeta asmMeta = new ASMMeta(1);
+        ASMMeta lazy = new ASMMeta(1);
+
+        lazy.setLazy(true);
+        asmMeta.indexAll(classes);
+        lazy.indexAll(classes);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IndexSnapshot.write(asmMeta, out);
+
+        ASMMeta snapshot = new ASMMeta();
+        snapshot.addIndex(IndexSnapshot.read(new ByteArrayInputStream(out.toByteArray())));
+
+        List<IMetaElement<?>> annotated = asmMeta.getAnnotatedElements(MyTestAnnotation.class);
+
+        Assert.assertEquals(2, annotated.size());
+        Assert.assertEquals("name", annotated.get(0).getName());
+        Assert.assertEquals("a", annotated.get(1).getName());
+
+        for (ASMMeta meta : new ASMMeta[]{asmMeta, lazy, snapshot}) {
+            Assert.assertEquals(2, meta.getAnnotatedElements(MyTestAnnotation.class).size());
+
+            // Same elements as a scan of all classes.
+            for (IMetaElement<?> element : meta.getAllIndexexElements().values()) {
+                for (IMetaElement<?> annotatedElement : Stream.concat(Stream.of(element), element.getChildElements().stream()).collect(Collectors.toList())) {
+                    annotatedElement.getMetaData().getAnnotationList().forEach(annotation ->
+                            Assert.assertTrue(meta.getAnnotatedElements(annotation.getDesc()).contains(annotatedElement)));
+                }
+            }
+        }
+
+        asmMeta.remove(MyTestClass.class.getName());
+
+        Assert.assertTrue(asmMeta.getAnnotatedElements(MyTestAnnotation.class).isEmpty());
+
+        // Class indexed while it is decoded from an index: only the stored class is in the index.
+        ASMMeta[] racing = new ASMMeta[1];
+        ClassElement indexed = new ClassElement(null, Opcodes.ACC_PUBLIC, MyTestClass.class.getName().replace('.', '/'),
+                "", new MetaData(), Resolvers.DEFAULT.getClassResolver(), "java/lang/Object", new String[0]);
+
+        indexed.immutate();
+
+        racing[0] = new ASMMeta(1, new MapElementStore() {
+            @Override
+            public IMetaElement<?> putIfAbsent(String name, IClassElement element) {
+                if (name.equals(MyTestClass.class.getName()) && !this.contains(name))
+                    racing[0].index(indexed);
+
+                return super.putIfAbsent(name, element);
+            }
+        });
+
+        racing[0].addIndex(IndexSnapshot.read(new ByteArrayInputStream(out.toByteArray())));
+
+        Assert.assertSame(indexed, racing[0].get(MyTestClass.class.getName()).get());
+        Assert.assertEquals(0, racing[0].getAnnotatedIds("L" + MyTestAnnotation.class.getName().replace('.', '/') + ";").length);
+
+        // Classes decoded by many threads at once are indexed once: both threads decode the class
+        // before either stores it.
+        String desc = "L" + MyTestAnnotation.class.getName().replace('.', '/') + ";";
+        CyclicBarrier decoded = new CyclicBarrier(2);
+        ASMMeta concurrent = new ASMMeta(1, new MapElementStore() {
+            @Override
+            public IMetaElement<?> putIfAbsent(String name, IClassElement element) {
+                if (name.equals(MyTestClass.class.getName())) {
+                    try {
+                        decoded.await(10, TimeUnit.SECONDS);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                return super.putIfAbsent(name, element);
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        concurrent.addIndex(IndexSnapshot.read(new ByteArrayInputStream(out.toByteArray())));
+
+        try {
+            Future<?> first = executor.submit(() -> concurrent.get(MyTestClass.class.getName()));
+            Future<?> second = executor.submit(() -> concurrent.get(MyTestClass.class.getName()));
+
+            first.get();
+            second.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(snapshot.getAnnotationIndex().count(desc), concurrent.getAnnotationIndex().count(desc));
+        Assert.assertEquals(Collections.singletonList(MyTestClass.class.getName()),
+                concurrent.getHierarchyIndex().getDirectSubtypes("java.lang.Object").stream()
+                        .filter(MyTestClass.class.getName()::equals)
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void hierarchyIndex() throws Exception {
+        ASMMeta asmMeta = new ASMMeta();
+
+        asmMeta.indexAll(Paths.get("build/classes/main"));
+
+        HierarchyIndex hierarchy = asmMeta.getHierarchyIndex();
+        List<Class<?>> classes = asmMeta.getAllIndexexElements().keySet().stream()
+                .map(name -> {
+                    try {
+                        return Class.forName(name, false, ASMMetaTest.class.getClassLoader());
+                    } catch (ClassNotFoundException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .collect(Collectors.toList());
+
+        for (Class<?> supertype : classes) {
+            for (Class<?> subtype : classes) {
+                Assert.assertEquals(supertype.isAssignableFrom(subtype), hierarchy.isSubtype(subtype.getName(), supertype.getName()));
+                Assert.assertEquals(supertype != subtype && supertype.isAssignableFrom(subtype),
+                        hierarchy.getSubtypes(supertype.getName()).contains(subtype.getName()));
+            }
+        }
+
+        Assert.assertTrue(hierarchy.getSupertypes(LazyClassElement.class.getName()).containsAll(
+                Arrays.asList(IClassElement.class.getName(), IMetaElement.class.getName(), Object.class.getName())));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(MapElementStore.class.getName(), ColumnarElementStore.class.getName())),
+                new HashSet<>(hierarchy.getImplementations(ElementStore.class.getName())));
+
+        asmMeta.remove(LazyClassElement.class.getName());
+
+        Assert.assertFalse(hierarchy.getSubtypes(IClassElement.class.getName()).contains(LazyClassElement.class.getName()));
+        Assert.assertTrue(hierarchy.getSubtypes(IClassElement.class.getName()).contains(ClassElement.class.getName()));
+    }
+
+    @Test
+    public void packageIndex() throws Exception {
+        ASMMeta asmMeta = new ASMMeta();
+
+        asmMeta.indexAll(Paths.get("build/classes/main"));
+
+        String packageName = ASMMeta.class.getPackage().getName();
+        List<String> names = asmMeta.getAllIndexexElements().keySet().stream().sorted().collect(Collectors.toList());
+        PackageIndex packageIndex = asmMeta.getPackageIndex();
+
+        Assert.assertEquals(names.stream().filter(name -> name.startsWith(packageName + ".")).collect(Collectors.toList()),
+                packageIndex.getNames(packageName, true).collect(Collectors.toList()));
+        Assert.assertEquals(names.stream().filter(name -> name.lastIndexOf('.') == packageName.length()).collect(Collectors.toList()),
+                packageIndex.getNames(packageName, false).collect(Collectors.toList()));
+        Assert.assertEquals(names.stream().filter(name -> name.startsWith(packageName + ".st")).collect(Collectors.toList()),
+                new ArrayList<>(packageIndex.getNames(packageName + ".st")));
+        Assert.assertTrue(asmMeta.getClasses(packageName + ".store", false).anyMatch(element -> element.getName().endsWith("/ColumnarElementStore")));
+
+        // Names of added indexes are known before classes are decoded.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IndexSnapshot.write(asmMeta, out);
+
+        ASMMeta snapshot = new ASMMeta();
+        snapshot.addIndex(IndexSnapshot.read(new ByteArrayInputStream(out.toByteArray())));
+
+        Assert.assertEquals(names, new ArrayList<>(snapshot.getPackageIndex().getNames("")));
+        Assert.assertTrue(snapshot.getStore().asMap().isEmpty());
+
+        snapshot.remove(ASMMeta.class.getName());
+
+        Assert.assertFalse(snapshot.getPackageIndex().getNames(packageName, false).anyMatch(ASMMeta.class.getName()::equals));
+    }
+
+    @Test
+    public void query() throws Exception {
+        ASMMeta asmMeta = new ASMMeta();
+
+        asmMeta.indexAll(Paths.get("build/classes/main"));
+        asmMeta.indexAll(Paths.get("build/classes/test"));
+
+        QueryPlan<IMethodElement> annotated = asmMeta.plan(new Query.Builder<>(IMethodElement.class)
+                .annotatedWith(MyTestAnnotation.class)
+                .inPackage(ASMMeta.class.getPackage().getName(), false)
+                .withModifiers(Opcodes.ACC_PUBLIC)
+                .build());
+
+        Assert.assertTrue(annotated.explain(), annotated.explain().contains("source: annotation"));
+        Assert.assertEquals(Collections.singletonList("a"), annotated.stream().map(IMetaElement::getName).collect(Collectors.toList()));
+
+        QueryPlan<IMethodElement> implementations = asmMeta.plan(new Query.Builder<>(IMethodElement.class)
+                .inSubtypesOf(ElementStore.class.getName())
+                .withModifiers(Opcodes.ACC_PUBLIC)
+                .withoutModifiers(Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC)
+                .build());
+
+        Assert.assertTrue(implementations.explain(), implementations.explain().contains("source: subtypes of"));
+        Assert.assertEquals(asmMeta.getAllIndexexElements().values().stream()
+                        .filter(element -> asmMeta.getHierarchyIndex().isSubtype(DescriptionUtil.internalToName(element.getName()), ElementStore.class.getName()))
+                        .filter(element -> !element.getName().equals(ElementStore.class.getName().replace('.', '/')))
+                        .flatMap(element -> element.getChildElements().stream())
+                        .filter(element -> element instanceof IMethodElement)
+                        .filter(element -> (element.getModifiers() & (Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC)) == Opcodes.ACC_PUBLIC)
+                        .collect(Collectors.toSet()),
+                implementations.stream().collect(Collectors.toSet()));
+
+        String elementPackage = IMetaElement.class.getPackage().getName();
+        QueryPlan<IClassElement> classes = asmMeta.plan(new Query.Builder<>(IClassElement.class)
+                .inSubtypesOf(IMetaElement.class.getName())
+                .inPackage(elementPackage, false)
+                .withoutModifiers(Opcodes.ACC_INTERFACE)
+                .build());
+
+        Assert.assertEquals(asmMeta.getClasses(elementPackage, false)
+                        .filter(element -> (element.getModifiers() & Opcodes.ACC_INTERFACE) == 0)
+                        .filter(element -> asmMeta.getHierarchyIndex().isSubtype(DescriptionUtil.internalToName(element.getName()), IMetaElement.class.getName()))
+                        .collect(Collectors.toSet()),
+                classes.stream().collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void modifierIndex() throws Exception {
+        ASMMeta asmMeta = new ASMMeta();
+        ASMMeta lazy = new ASMMeta();
+
+        lazy.setLazy(true);
+        asmMeta.indexAll(Paths.get("build/classes/main"));
+        lazy.indexAll(Paths.get("build/classes/main"));
+
+        int excluded = Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE;
+        Set<IMetaElement<?>> expected = asmMeta.getAllIndexexElements().values().stream()
+                .flatMap(element -> element.getChildElements().stream())
+                .filter(element -> element instanceof IMethodElement)
+                .filter(element -> (element.getModifiers() & (Opcodes.ACC_PUBLIC | excluded)) == Opcodes.ACC_PUBLIC)
+                .collect(Collectors.toSet());
+
+        for (ASMMeta meta : new ASMMeta[]{asmMeta, lazy}) {
+            ModifierIndex modifierIndex = meta.getModifierIndex();
+            long[] ids = modifierIndex.find(IMethodElement.class, Opcodes.ACC_PUBLIC, excluded);
+
+            Assert.assertEquals(expected.size(), ids.length);
+            Assert.assertTrue(modifierIndex.estimate(IMethodElement.class, Opcodes.ACC_PUBLIC, excluded) >= ids.length);
+
+            for (long id : ids) {
+                IMetaElement<?> element = meta.get(id).get();
+
+                Assert.assertTrue(modifierIndex.matches(id, IMethodElement.class, Opcodes.ACC_PUBLIC, excluded));
+                Assert.assertTrue(element instanceof IMethodElement);
+                Assert.assertEquals(Opcodes.ACC_PUBLIC, element.getModifiers() & (Opcodes.ACC_PUBLIC | excluded));
+            }
+
+            Assert.assertFalse(modifierIndex.matches(ElementIds.NONE, IMethodElement.class, Opcodes.ACC_PUBLIC, 0));
+            Assert.assertFalse(modifierIndex.matches(Long.MIN_VALUE | 1, IMethodElement.class, Opcodes.ACC_PUBLIC, 0));
+        }
+
+        Assert.assertEquals(expected, new HashSet<>(LongStream.of(asmMeta.getModifierIndex().find(IMethodElement.class, Opcodes.ACC_PUBLIC, excluded))
+                .mapToObj(id -> asmMeta.get(id).get())
+                .collect(Collectors.toList())));
+
+        QueryPlan<IMethodElement> plan = asmMeta.plan(new Query.Builder<>(IMethodElement.class)
+                .withModifiers(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC)
+                .withoutModifiers(excluded)
+                .build());
+
+        Assert.assertTrue(plan.explain(), plan.explain().contains("source: modifiers"));
+        Assert.assertTrue(plan.stream().allMatch(element -> (element.getModifiers() & Opcodes.ACC_STATIC) != 0 && expected.contains(element)));
+
+        // Pseudo flags are not indexed: rejected by the index, checked on elements by queries.
+        try {
+            asmMeta.getModifierIndex().find(IMethodElement.class, Opcodes.ACC_PUBLIC, Opcodes.ACC_DEPRECATED);
+            Assert.fail("Unindexed modifier accepted");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("0x20000"));
+        }
+
+        Set<IMetaElement<?>> notDeprecated = expected.stream()
+                .filter(element -> (element.getModifiers() & Opcodes.ACC_DEPRECATED) == 0)
+                .collect(Collectors.toSet());
+
+        Assert.assertEquals(notDeprecated, asmMeta.query(new Query.Builder<>(IMethodElement.class)
+                .withModifiers(Opcodes.ACC_PUBLIC)
+                .withoutModifiers(excluded | Opcodes.ACC_DEPRECATED)
+                .build()).collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void longObjectMap() {
+        LongObjectMap<Long> map = new LongObjectMap<>();
+
+        for (long i = 0; i < 10000; ++i)
+            map.put(i << 32, i);
+
+        for (long i = 0; i < 10000; i += 2)
+            Assert.assertEquals(Long.valueOf(i), map.remove(i << 32));
+
+        Assert.assertEquals(5000, map.size());
+
+        for (long i = 0; i < 10000; ++i)
+            Assert.assertEquals(i % 2 == 0 ? null : Long.valueOf(i), map.get(i << 32));
+
+        Assert.assertEquals(Long.valueOf(1L), map.computeIfAbsent(1L << 32, key -> 2L));
+        Assert.assertEquals(Long.valueOf(2L), map.computeIfAbsent(2L << 32, key -> 2L));
+    }
+
+    private static void assertSameElement(IMetaElement<?> expected, IMetaElement<?> actual) {
+        Assert.assertEquals(expected.getClass().getInterfaces()[0], actual.getClass().getInterfaces()[0]);
+        Assert.assertEquals(expected.getModifiers(), actual.getModifiers());
+        Assert.assertEquals(expected.getName(), actual.getName());
+        Assert.assertEquals(expected.getDesc(), actual.getDesc());
+        Assert.assertEquals(expected.getChildElements().size(), actual.getChildElements().size());
+        Assert.assertEquals(expected.getMetaData().getAnnotationList().size(), actual.getMetaData().getAnnotationList().size());
+
+        for (int i = 0; i < expected.getMetaData().getAnnotationList().size(); ++i) {
+            IAnnotationElement annotation = (IAnnotationElement) expected.getMetaData().getAnnotationList().get(i);
+            IAnnotationElement actualAnnotation = (IAnnotationElement) actual.getMetaData().getAnnotationList().get(i);
+
+            Assert.assertEquals(annotation.getDesc(), actualAnnotation.getDesc());
+            Assert.assertEquals(annotation.getValues().toString(), actualAnnotation.getValues().toString());
+            Assert.assertEquals(actual, actualAnnotation.getEnclosingElement());
+        }
+    }
 }